@@ -0,0 +1,165 @@
+/*
+See the NOTICE file distributed with this work for additional
+information regarding copyright ownership
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.universAAL.maven.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.project.MavenProject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.universAAL.maven.BundleClassifier;
+import org.universAAL.maven.BundleInfo;
+import org.universAAL.maven.IndexingDependencyNodeVisitor;
+import org.universAAL.maven.LaunchOrderDependencyNodeVisitor;
+import org.universAAL.maven.QuietLog;
+import org.universAAL.maven.SyntheticRepository;
+import org.universAAL.maven.treebuilder.DependencyTreeBuilder;
+import org.universAAL.maven.treebuilder.MavenProjectDescriptor;
+import org.universAAL.maven.treebuilder.RootNode;
+
+/**
+ * Measures separately the three stages of creating an execution list:
+ * building of the dependency tree, indexing it and flattening it into launch
+ * order. Trees are built for synthetic graphs served by SyntheticRepository.
+ *
+ * Indexing and flattening are measured on a tree built once per trial.
+ * Bundle classification is shared between invocations of the flattening
+ * benchmark, so jars are inspected only during the first one and the
+ * measurement covers the walk itself.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TreeBuilderBenchmark {
+
+	private static final long SEED = 20140101L;
+
+	@Param({ "4", "8" })
+	public int depth;
+
+	@Param({ "10", "50" })
+	public int width;
+
+	@Param({ "0.0", "0.2" })
+	public double conflictDensity;
+
+	private File repositoryDir;
+
+	private SyntheticRepository repository;
+
+	private MavenProject rootProject;
+
+	private List<RootNode> rootNodes;
+
+	private IndexingDependencyNodeVisitor index;
+
+	private Map<String, BundleInfo> bundles = new ConcurrentHashMap<String, BundleInfo>();
+
+	private QuietLog log = new QuietLog();
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		repositoryDir = File.createTempFile("uaal-benchmark", "");
+		repositoryDir.delete();
+		repositoryDir.mkdirs();
+		repository = new SyntheticRepository(repositoryDir);
+		Artifact rootArtifact = repository.generate(depth, width, conflictDensity, SEED);
+		rootProject = repository.buildFromRepository(rootArtifact, new ArrayList(),
+				repository.getLocalRepository());
+		rootNodes = buildTree();
+		index = indexTree();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		delete(repositoryDir);
+	}
+
+	private static void delete(final File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	/**
+	 * Resolves the whole graph into a dependency tree.
+	 */
+	@Benchmark
+	public List<RootNode> buildTree() throws Exception {
+		DependencyTreeBuilder treeBuilder = new DependencyTreeBuilder(repository.getArtifactFactory(), repository,
+				repository.getLocalRepository(), false, false);
+		return treeBuilder.buildDependencyTree(repository.getLocalRepository(), repository.getArtifactFactory(),
+				repository, new MavenProjectDescriptor(rootProject, new ArrayList(), true));
+	}
+
+	/**
+	 * Indexes nodes of the tree by artifact.
+	 */
+	@Benchmark
+	public IndexingDependencyNodeVisitor indexTree() {
+		IndexingDependencyNodeVisitor visitor = new IndexingDependencyNodeVisitor(log);
+		for (RootNode rootNode : rootNodes) {
+			rootNode.rootNode.accept(visitor);
+		}
+		return visitor;
+	}
+
+	/**
+	 * Walks the indexed tree and creates the list of mvn urls in launch
+	 * order.
+	 */
+	@Benchmark
+	public List flattenLaunchOrder() {
+		LaunchOrderDependencyNodeVisitor visitor = new LaunchOrderDependencyNodeVisitor(log,
+				index.getNodesByArtifactId(), index.getVersionByArtifactId(), false,
+				repository.getLocalRepository(), repository, rootProject.getArtifact(), null);
+		BundleClassifier bundleClassifier = new BundleClassifier(log, repository, repository.getLocalRepository());
+		bundleClassifier.setReleasedBundles(bundles);
+		visitor.setBundleClassifier(bundleClassifier);
+		for (RootNode rootNode : rootNodes) {
+			visitor.setExcludedCoreArtifacts(rootNode.excludedCoreArtifacts);
+			rootNode.rootNode.accept(visitor);
+		}
+		return visitor.getMvnUrls();
+	}
+
+}
@@ -0,0 +1,170 @@
+/*
+See the NOTICE file distributed with this work for additional
+information regarding copyright ownership
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.universAAL.maven;
+
+import org.apache.maven.artifact.Artifact;
+
+/**
+ * Immutable key of an artifact in the dependency tree: groupId, artifactId and
+ * optionally version. It replaces stringified artifact representations as keys
+ * of maps and sets used by the visitors. Creating a key does not concatenate
+ * strings and its hash code is calculated only once, so lookups do not hash
+ * long strings again and again.
+ *
+ * Keys with and without version are never equal. String representation is the
+ * same as the one returned by FilteringVisitorSupport.stringify and
+ * stringifyNoVersion.
+ */
+public final class ArtifactKey implements Comparable<ArtifactKey> {
+
+	private final String groupId;
+
+	private final String artifactId;
+
+	/**
+	 * Version of the artifact, null in case of versionless key.
+	 */
+	private final String version;
+
+	private final int hash;
+
+	private ArtifactKey(final String groupId, final String artifactId, final String version) {
+		this.groupId = groupId;
+		this.artifactId = artifactId;
+		this.version = version;
+		int h = groupId.hashCode();
+		h = 31 * h + artifactId.hashCode();
+		h = 31 * h + (version == null ? 0 : version.hashCode());
+		this.hash = h;
+	}
+
+	/**
+	 * Creates key of the artifact consisting of groupId, artifactId and
+	 * version.
+	 *
+	 * @param artifact
+	 *            the artifact
+	 * @return key of the artifact
+	 */
+	public static ArtifactKey of(final Artifact artifact) {
+		checkVersion(artifact);
+		return new ArtifactKey(artifact.getGroupId(), artifact.getArtifactId(), artifact.getVersion());
+	}
+
+	/**
+	 * Creates key of the artifact consisting of groupId and artifactId only.
+	 *
+	 * @param artifact
+	 *            the artifact
+	 * @return versionless key of the artifact
+	 */
+	public static ArtifactKey versionlessOf(final Artifact artifact) {
+		checkVersion(artifact);
+		return new ArtifactKey(artifact.getGroupId(), artifact.getArtifactId(), null);
+	}
+
+	private static void checkVersion(final Artifact artifact) {
+		if (artifact.getVersion() == null) {
+			throw new RuntimeException("Artifact version and version range is null: " + artifact);
+		}
+	}
+
+	/**
+	 * Returns versionless key of the same artifact.
+	 *
+	 * @return key without version, this if the key is already versionless
+	 */
+	public ArtifactKey versionless() {
+		if (version == null) {
+			return this;
+		}
+		return new ArtifactKey(groupId, artifactId, null);
+	}
+
+	public String getGroupId() {
+		return groupId;
+	}
+
+	public String getArtifactId() {
+		return artifactId;
+	}
+
+	/**
+	 * Gets version of the artifact.
+	 *
+	 * @return version or null if the key is versionless
+	 */
+	public String getVersion() {
+		return version;
+	}
+
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof ArtifactKey)) {
+			return false;
+		}
+		ArtifactKey other = (ArtifactKey) obj;
+		return hash == other.hash && equal(groupId, other.groupId) && equal(artifactId, other.artifactId)
+				&& equal(version, other.version);
+	}
+
+	private static boolean equal(final String s1, final String s2) {
+		if (s1 == s2) {
+			return true;
+		}
+		return s1 != null && s1.equals(s2);
+	}
+
+	public int hashCode() {
+		return hash;
+	}
+
+	/**
+	 * Orders keys by groupId, artifactId and version. Versionless keys precede
+	 * keys with version. Versions are compared as strings.
+	 */
+	public int compareTo(final ArtifactKey other) {
+		int result = groupId.compareTo(other.groupId);
+		if (result == 0) {
+			result = artifactId.compareTo(other.artifactId);
+		}
+		if (result == 0 && version != other.version) {
+			if (version == null) {
+				result = -1;
+			} else if (other.version == null) {
+				result = 1;
+			} else {
+				result = version.compareTo(other.version);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns groupId:artifactId:version or groupId:artifactId in case of
+	 * versionless key.
+	 */
+	public String toString() {
+		if (version == null) {
+			return groupId + ":" + artifactId;
+		}
+		return groupId + ":" + artifactId + ":" + version;
+	}
+
+}
@@ -0,0 +1,289 @@
+/*
+See the NOTICE file distributed with this work for additional
+information regarding copyright ownership
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.universAAL.maven;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.resolver.ArtifactResolver;
+import org.apache.maven.plugin.logging.Log;
+import org.universAAL.maven.treebuilder.MyDependencyNode;
+import org.universAAL.maven.treebuilder.ResolutionStats;
+
+/**
+ * Resolves artifacts of dependency nodes and classifies them as OSGi bundles
+ * or plain jars. A jar is a bundle if its manifest contains
+ * Bundle-ManifestVersion header, other jars have to be wrapped before
+ * installation in OSGi container.
+ *
+ * Classification of many nodes can be started up-front. Artifacts are
+ * resolved one by one, because the artifact resolver of Maven 2 is not
+ * thread-safe, and only their jars are read on a number of threads. Results
+ * are remembered by artifact id, so that later queries are only map lookups.
+ * A failure of classification is reported only if the result is actually
+ * queried, so the behaviour is the same as if artifacts were resolved one by
+ * one.
+ */
+public class BundleClassifier {
+
+	private Log log;
+
+	private ArtifactResolver artifactResolver;
+
+	private ArtifactRepository localRepository;
+
+	/**
+	 * Classifications started up-front, indexed by artifact id.
+	 */
+	private Map<String, Future<BundleInfo>> classifications = new HashMap<String, Future<BundleInfo>>();
+
+	/**
+	 * Persistent index of already inspected jars, null if jars should always
+	 * be inspected.
+	 */
+	private BundleInfoIndex bundleInfoIndex = null;
+
+	/**
+	 * Bundle information of released artifacts shared with other
+	 * classifiers, null if it is not shared.
+	 */
+	private Map<String, BundleInfo> releasedBundles = null;
+
+	/**
+	 * Statistics to which inspection of jars is reported, null if they are
+	 * not collected.
+	 */
+	private ResolutionStats stats = null;
+
+	/**
+	 * Constructor of BundleClassifier.
+	 *
+	 * @param log
+	 *            object for logging
+	 * @param artifactResolver
+	 *            maven artifact resolver
+	 * @param localRepository
+	 *            maven local repository
+	 */
+	public BundleClassifier(final Log log, final ArtifactResolver artifactResolver,
+			final ArtifactRepository localRepository) {
+		this.log = log;
+		this.artifactResolver = artifactResolver;
+		this.localRepository = localRepository;
+	}
+
+	/**
+	 * Resolves artifacts of all passed nodes in the calling thread and starts
+	 * reading their jars using given number of threads. Method does not wait
+	 * for the jars to be read.
+	 *
+	 * @param nodes
+	 *            nodes which artifacts should be classified.
+	 * @param threads
+	 *            number of threads, if it is lower than 2 nothing is done and
+	 *            nodes are classified when they are queried.
+	 */
+	public void classifyAll(final Collection<MyDependencyNode> nodes, final int threads) {
+		if (threads < 2 || nodes.isEmpty()) {
+			return;
+		}
+		log.debug("Classifying " + nodes.size() + " artifacts using " + threads + " threads");
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, nodes.size()));
+		try {
+			for (MyDependencyNode node : nodes) {
+				final Artifact artifact = node.getArtifact();
+				String id = artifact.getId();
+				if (classifications.containsKey(id) || getSharedInfo(artifact) != null) {
+					continue;
+				}
+				final File jarPath;
+				try {
+					jarPath = resolve(node);
+				} catch (final Exception e) {
+					FutureTask<BundleInfo> failure = new FutureTask<BundleInfo>(new Callable<BundleInfo>() {
+						public BundleInfo call() throws Exception {
+							throw e;
+						}
+					});
+					failure.run();
+					classifications.put(id, failure);
+					continue;
+				}
+				classifications.put(id, executor.submit(new Callable<BundleInfo>() {
+					public BundleInfo call() throws Exception {
+						return read(artifact, jarPath);
+					}
+				}));
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Checks whether artifact of given node is an OSGi bundle. The artifact is
+	 * resolved if it was not classified before.
+	 *
+	 * @param node
+	 *            the node.
+	 * @return true if artifact is a bundle, false if it has to be wrapped.
+	 * @throws Exception
+	 *             if artifact cannot be resolved or read.
+	 */
+	public boolean isBundle(final MyDependencyNode node) throws Exception {
+		return getBundleInfo(node).isBundle();
+	}
+
+	/**
+	 * Gets OSGi headers of artifact of given node. The artifact is resolved if
+	 * it was not classified before.
+	 *
+	 * @param node
+	 *            the node.
+	 * @return bundle information.
+	 * @throws Exception
+	 *             if artifact cannot be resolved or read.
+	 */
+	public BundleInfo getBundleInfo(final MyDependencyNode node) throws Exception {
+		Future<BundleInfo> classification = classifications.get(node.getArtifact().getId());
+		if (classification == null) {
+			return classify(node);
+		}
+		try {
+			return classification.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Classifies artifact of the node using bundle information shared with
+	 * other classifiers if possible.
+	 */
+	private BundleInfo classify(final MyDependencyNode node) throws Exception {
+		BundleInfo info = getSharedInfo(node.getArtifact());
+		if (info != null) {
+			return info;
+		}
+		return read(node.getArtifact(), resolve(node));
+	}
+
+	/**
+	 * Gets bundle information of the artifact shared by other classifiers.
+	 *
+	 * @return the information or null if it is not known.
+	 */
+	private BundleInfo getSharedInfo(final Artifact artifact) {
+		if (releasedBundles == null || artifact.isSnapshot()) {
+			return null;
+		}
+		return releasedBundles.get(artifact.getId());
+	}
+
+	/**
+	 * Resolves artifact of the node. Has to be called by one thread at a time.
+	 *
+	 * @return location of the jar in the local repository.
+	 */
+	private File resolve(final MyDependencyNode node) throws Exception {
+		long start = ResolutionStats.start();
+		Artifact artifact = node.getArtifact();
+		artifactResolver.resolve(artifact, node.getRemoteRepositories(), localRepository);
+		File localRepoBaseDir = new File(localRepository.getBasedir());
+		File jarPath = new File(localRepoBaseDir, localRepository.pathOf(artifact));
+		if (stats != null) {
+			stats.stop(ResolutionStats.JAR_INSPECTION, start);
+		}
+		return jarPath;
+	}
+
+	/**
+	 * Reads OSGi headers of the resolved jar of the artifact and shares them
+	 * with other classifiers if the artifact is released.
+	 */
+	private BundleInfo read(final Artifact artifact, final File jarPath) throws Exception {
+		long start = ResolutionStats.start();
+		BundleInfo info = null;
+		if (bundleInfoIndex != null) {
+			info = bundleInfoIndex.get(jarPath);
+		}
+		if (info == null) {
+			info = BundleInfoReader.read(jarPath);
+			if (bundleInfoIndex != null) {
+				bundleInfoIndex.put(jarPath, info);
+			}
+			if (stats != null) {
+				stats.increment(ResolutionStats.JARS_OPENED);
+			}
+		}
+		if (releasedBundles != null && !artifact.isSnapshot()) {
+			releasedBundles.put(artifact.getId(), info);
+		}
+		if (stats != null) {
+			stats.stop(ResolutionStats.JAR_INSPECTION, start);
+		}
+		return info;
+	}
+
+	/**
+	 * Sets persistent index of OSGi headers. Jars found in the index are not
+	 * opened.
+	 *
+	 * @param bundleInfoIndex
+	 *            the index or null if jars should always be inspected.
+	 */
+	public void setBundleInfoIndex(final BundleInfoIndex bundleInfoIndex) {
+		this.bundleInfoIndex = bundleInfoIndex;
+	}
+
+	/**
+	 * Sets thread safe map of bundle information shared with other
+	 * classifiers. Only released artifacts are put into it, because SNAPSHOT
+	 * artifacts can be rebuilt in the meantime.
+	 *
+	 * @param releasedBundles
+	 *            the map or null if information should not be shared.
+	 */
+	public void setReleasedBundles(final Map<String, BundleInfo> releasedBundles) {
+		this.releasedBundles = releasedBundles;
+	}
+
+	/**
+	 * Sets statistics to which resolution and inspection of jars is reported.
+	 *
+	 * @param stats
+	 *            the statistics or null if they should not be collected.
+	 */
+	public void setResolutionStats(final ResolutionStats stats) {
+		this.stats = stats;
+	}
+
+}
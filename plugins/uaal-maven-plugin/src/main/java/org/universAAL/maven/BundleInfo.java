@@ -0,0 +1,157 @@
+/*
+See the NOTICE file distributed with this work for additional
+information regarding copyright ownership
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.universAAL.maven;
+
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+
+/**
+ * Immutable set of OSGi headers of a jar, extracted from its manifest. Jar is
+ * considered a bundle if Bundle-ManifestVersion header is present, otherwise
+ * it has to be wrapped before installation in OSGi container.
+ */
+public final class BundleInfo {
+
+	/**
+	 * Information about jar which has no manifest or no OSGi headers.
+	 */
+	public static final BundleInfo NOT_A_BUNDLE = new BundleInfo(null, null, null, null);
+
+	private final String symbolicName;
+
+	private final String version;
+
+	private final String manifestVersion;
+
+	private final String fragmentHost;
+
+	/**
+	 * Constructor of BundleInfo.
+	 *
+	 * @param symbolicName
+	 *            Bundle-SymbolicName without directives, may be null.
+	 * @param version
+	 *            Bundle-Version, may be null.
+	 * @param manifestVersion
+	 *            Bundle-ManifestVersion, null if jar is not a bundle.
+	 * @param fragmentHost
+	 *            symbolic name of Fragment-Host without attributes, null if
+	 *            bundle is not a fragment.
+	 */
+	public BundleInfo(final String symbolicName, final String version, final String manifestVersion,
+			final String fragmentHost) {
+		this.symbolicName = symbolicName;
+		this.version = version;
+		this.manifestVersion = manifestVersion;
+		this.fragmentHost = fragmentHost;
+	}
+
+	/**
+	 * Extracts OSGi headers from the manifest.
+	 *
+	 * @param manifest
+	 *            jar manifest, may be null.
+	 * @return bundle information, NOT_A_BUNDLE if manifest is null or has no
+	 *         Bundle-ManifestVersion header.
+	 */
+	public static BundleInfo fromManifest(final Manifest manifest) {
+		if (manifest == null) {
+			return NOT_A_BUNDLE;
+		}
+		Attributes attribs = manifest.getMainAttributes();
+		String manifestVersion = attribs.getValue("Bundle-ManifestVersion");
+		if (manifestVersion == null) {
+			return NOT_A_BUNDLE;
+		}
+		return new BundleInfo(stripParameters(attribs.getValue("Bundle-SymbolicName")),
+				attribs.getValue("Bundle-Version"), manifestVersion.trim(),
+				stripParameters(attribs.getValue("Fragment-Host")));
+	}
+
+	private static String stripParameters(final String header) {
+		if (header == null) {
+			return null;
+		}
+		int semicolon = header.indexOf(';');
+		if (semicolon >= 0) {
+			return header.substring(0, semicolon).trim();
+		}
+		return header.trim();
+	}
+
+	/**
+	 * Checks whether jar is an OSGi bundle.
+	 *
+	 * @return true if jar is an OSGi bundle.
+	 */
+	public boolean isBundle() {
+		return manifestVersion != null;
+	}
+
+	/**
+	 * Checks whether bundle is a fragment of other bundle.
+	 *
+	 * @return true if bundle is a fragment.
+	 */
+	public boolean isFragment() {
+		return fragmentHost != null;
+	}
+
+	/**
+	 * Gets Bundle-SymbolicName without directives.
+	 *
+	 * @return the header value or null if it is not present.
+	 */
+	public String getSymbolicName() {
+		return symbolicName;
+	}
+
+	/**
+	 * Gets Bundle-Version.
+	 *
+	 * @return the header value or null if it is not present.
+	 */
+	public String getVersion() {
+		return version;
+	}
+
+	/**
+	 * Gets Bundle-ManifestVersion.
+	 *
+	 * @return the header value or null if it is not present.
+	 */
+	public String getManifestVersion() {
+		return manifestVersion;
+	}
+
+	/**
+	 * Gets symbolic name of Fragment-Host.
+	 *
+	 * @return the header value or null if it is not present.
+	 */
+	public String getFragmentHost() {
+		return fragmentHost;
+	}
+
+	public String toString() {
+		if (!isBundle()) {
+			return "not a bundle";
+		}
+		return symbolicName + "/" + version + (fragmentHost == null ? "" : " fragment of " + fragmentHost);
+	}
+
+}
@@ -0,0 +1,248 @@
+/*
+See the NOTICE file distributed with this work for additional
+information regarding copyright ownership
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.universAAL.maven;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Persistent index of OSGi headers of jars from the maven local repository.
+ * Each entry is identified by path of the jar relative to the local repository
+ * and it is valid only as long as length and modification time of the jar are
+ * the same as at the moment of reading the headers. Thanks to that unchanged
+ * jars are never opened again by subsequent builds.
+ *
+ * The index is kept in memory and written back by save method. Writing is
+ * atomic (temporary file is renamed), entries written concurrently by other
+ * builds are merged. The index can be used by many threads.
+ */
+public class BundleInfoIndex {
+
+	private static final String FORMAT = "uaal-bundle-index 1";
+
+	private static final String NONE = "-";
+
+	private Log log;
+
+	private File baseDir;
+
+	private File indexFile;
+
+	private Map<String, Entry> entries = new HashMap<String, Entry>();
+
+	private boolean loaded = false;
+
+	private boolean modified = false;
+
+	/**
+	 * Single entry of the index.
+	 */
+	private static class Entry {
+		private long length;
+
+		private long lastModified;
+
+		private BundleInfo info;
+
+		Entry(final long length, final long lastModified, final BundleInfo info) {
+			this.length = length;
+			this.lastModified = lastModified;
+			this.info = info;
+		}
+	}
+
+	/**
+	 * Constructor of BundleInfoIndex.
+	 *
+	 * @param log
+	 *            object for logging
+	 * @param baseDir
+	 *            directory to which paths of jars are relative
+	 * @param indexFile
+	 *            file in which the index is stored
+	 */
+	public BundleInfoIndex(final Log log, final File baseDir, final File indexFile) {
+		this.log = log;
+		this.baseDir = baseDir;
+		this.indexFile = indexFile;
+	}
+
+	/**
+	 * Creates index stored in the local repository.
+	 *
+	 * @param log
+	 *            object for logging
+	 * @param localRepository
+	 *            maven local repository
+	 * @return the index
+	 */
+	public static BundleInfoIndex inLocalRepository(final Log log, final ArtifactRepository localRepository) {
+		File baseDir = new File(localRepository.getBasedir());
+		return new BundleInfoIndex(log, baseDir, new File(baseDir, ".cache/uaal-maven-plugin/bundles.index"));
+	}
+
+	/**
+	 * Gets OSGi headers of the jar if they were indexed and the jar did not
+	 * change since then.
+	 *
+	 * @param jar
+	 *            the jar
+	 * @return bundle information or null if it is not known.
+	 */
+	public synchronized BundleInfo get(final File jar) {
+		ensureLoaded();
+		Entry entry = entries.get(relativePath(jar));
+		if (entry != null && entry.length == jar.length() && entry.lastModified == jar.lastModified()) {
+			return entry.info;
+		}
+		return null;
+	}
+
+	/**
+	 * Remembers OSGi headers of the jar.
+	 *
+	 * @param jar
+	 *            the jar
+	 * @param info
+	 *            its bundle information
+	 */
+	public synchronized void put(final File jar, final BundleInfo info) {
+		ensureLoaded();
+		entries.put(relativePath(jar), new Entry(jar.length(), jar.lastModified(), info));
+		modified = true;
+	}
+
+	/**
+	 * Writes the index back to its file if anything was added. Problems with
+	 * writing are only logged.
+	 */
+	public synchronized void save() {
+		if (!modified) {
+			return;
+		}
+		Map<String, Entry> merged = new HashMap<String, Entry>();
+		read(merged);
+		merged.putAll(entries);
+		try {
+			File dir = indexFile.getParentFile();
+			dir.mkdirs();
+			File tmpFile = File.createTempFile("bundles", ".tmp", dir);
+			BufferedWriter writer = new BufferedWriter(
+					new OutputStreamWriter(new FileOutputStream(tmpFile, false), "UTF-8"));
+			try {
+				writer.write(FORMAT);
+				writer.newLine();
+				for (Map.Entry<String, Entry> mapEntry : merged.entrySet()) {
+					Entry entry = mapEntry.getValue();
+					BundleInfo info = entry.info;
+					writer.write(mapEntry.getKey() + "\t" + entry.length + "\t" + entry.lastModified + "\t"
+							+ toField(info.getManifestVersion()) + "\t" + toField(info.getSymbolicName()) + "\t"
+							+ toField(info.getVersion()) + "\t" + toField(info.getFragmentHost()));
+					writer.newLine();
+				}
+			} finally {
+				writer.close();
+			}
+			try {
+				CompositeWriter.replace(tmpFile, indexFile);
+			} finally {
+				tmpFile.delete();
+			}
+			modified = false;
+		} catch (IOException e) {
+			log.warn("Cannot store bundle index " + indexFile, e);
+		}
+	}
+
+	private void ensureLoaded() {
+		if (!loaded) {
+			read(entries);
+			loaded = true;
+		}
+	}
+
+	/**
+	 * Reads entries from the index file. Unreadable index is ignored.
+	 */
+	private void read(final Map<String, Entry> target) {
+		if (!indexFile.isFile()) {
+			return;
+		}
+		try {
+			BufferedReader reader = new BufferedReader(
+					new InputStreamReader(new FileInputStream(indexFile), "UTF-8"));
+			try {
+				if (!FORMAT.equals(reader.readLine())) {
+					return;
+				}
+				String line;
+				while ((line = reader.readLine()) != null) {
+					String[] elems = line.split("\t", -1);
+					if (elems.length != 7) {
+						continue;
+					}
+					BundleInfo info = BundleInfo.NOT_A_BUNDLE;
+					if (!NONE.equals(elems[3])) {
+						info = new BundleInfo(fromField(elems[4]), fromField(elems[5]), elems[3],
+								fromField(elems[6]));
+					}
+					target.put(elems[0],
+							new Entry(Long.parseLong(elems[1]), Long.parseLong(elems[2]), info));
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (Exception e) {
+			log.debug("Ignoring unreadable bundle index " + indexFile, e);
+		}
+	}
+
+	private String relativePath(final File jar) {
+		String path = jar.getAbsolutePath();
+		String base = baseDir.getAbsolutePath() + File.separator;
+		if (path.startsWith(base)) {
+			path = path.substring(base.length());
+		}
+		return path.replace(File.separatorChar, '/');
+	}
+
+	private static String toField(final String value) {
+		if (value == null) {
+			return NONE;
+		}
+		return value;
+	}
+
+	private static String fromField(final String value) {
+		if (NONE.equals(value)) {
+			return null;
+		}
+		return value;
+	}
+
+}
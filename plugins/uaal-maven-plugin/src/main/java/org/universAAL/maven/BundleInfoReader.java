@@ -0,0 +1,52 @@
+/*
+See the NOTICE file distributed with this work for additional
+information regarding copyright ownership
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.universAAL.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.jar.JarFile;
+
+/**
+ * Reads OSGi headers of jars. Manifest is located through the central
+ * directory of the jar, so only the manifest entry is read and inflated
+ * regardless of its position in the archive.
+ */
+public final class BundleInfoReader {
+
+	private BundleInfoReader() {
+	}
+
+	/**
+	 * Reads OSGi headers of the jar.
+	 *
+	 * @param jar
+	 *            jar file.
+	 * @return bundle information, BundleInfo.NOT_A_BUNDLE if jar has no OSGi
+	 *         headers.
+	 * @throws IOException
+	 *             if jar cannot be opened or read.
+	 */
+	public static BundleInfo read(final File jar) throws IOException {
+		JarFile jarFile = new JarFile(jar, false);
+		try {
+			return BundleInfo.fromManifest(jarFile.getManifest());
+		} finally {
+			jarFile.close();
+		}
+	}
+
+}
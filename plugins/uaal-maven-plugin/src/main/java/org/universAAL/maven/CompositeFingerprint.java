@@ -0,0 +1,153 @@
+/*
+See the NOTICE file distributed with this work for additional
+information regarding copyright ownership
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.universAAL.maven;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.Set;
+
+import org.apache.maven.plugin.logging.Log;
+import org.universAAL.maven.treebuilder.DependencyTreeCache;
+
+/**
+ * Up-to-date check of generated composite files. The fingerprint file records
+ * fingerprint of the inputs of composite generation (see
+ * ExecutionListCreator.calculateFingerprint) and digests of all POMs from
+ * the local repository which were involved in the resolution. Outputs are up
+ * to date if the inputs have the same fingerprint, none of the POMs changed
+ * and all output files exist. The fingerprint covers also the build of the
+ * plugin. It is recorded only for reproducible resolutions, i.e. without
+ * version ranges and without SNAPSHOT artifacts, whose result can change even
+ * if none of the POMs in the local repository changed.
+ */
+public class CompositeFingerprint {
+
+	private static final String FORMAT = "uaal-composite-fingerprint 1";
+
+	private Log log;
+
+	private File fingerprintFile;
+
+	/**
+	 * Constructor of CompositeFingerprint.
+	 *
+	 * @param log
+	 *            object for logging
+	 * @param fingerprintFile
+	 *            file in which fingerprint is recorded
+	 */
+	public CompositeFingerprint(final Log log, final File fingerprintFile) {
+		this.log = log;
+		this.fingerprintFile = fingerprintFile;
+	}
+
+	/**
+	 * Checks whether outputs generated for recorded fingerprint are still up
+	 * to date.
+	 *
+	 * @param fingerprint
+	 *            fingerprint of current inputs
+	 * @param outputs
+	 *            generated files
+	 * @return true if outputs do not have to be generated again
+	 */
+	public boolean isUpToDate(final String fingerprint, final File[] outputs) {
+		for (File output : outputs) {
+			if (!output.isFile()) {
+				return false;
+			}
+		}
+		if (!fingerprintFile.isFile()) {
+			return false;
+		}
+		try {
+			BufferedReader reader = new BufferedReader(
+					new InputStreamReader(new FileInputStream(fingerprintFile), "UTF-8"));
+			try {
+				if (!FORMAT.equals(reader.readLine()) || !fingerprint.equals(reader.readLine())) {
+					return false;
+				}
+				String line;
+				while ((line = reader.readLine()) != null) {
+					int tab = line.indexOf('\t');
+					String pom = line.substring(tab + 1);
+					if (!line.substring(0, tab).equals(DependencyTreeCache.digest(new File(pom)))) {
+						log.debug("Composite is outdated because of " + pom);
+						return false;
+					}
+				}
+				return true;
+			} finally {
+				reader.close();
+			}
+		} catch (Exception e) {
+			log.debug("Ignoring unreadable composite fingerprint " + fingerprintFile, e);
+			return false;
+		}
+	}
+
+	/**
+	 * Records fingerprint of inputs for which outputs were generated. It has
+	 * to be called only if the resolution is reproducible (see
+	 * ExecutionListCreator.isResolutionReproducible).
+	 *
+	 * @param fingerprint
+	 *            fingerprint of the inputs
+	 * @param involvedPoms
+	 *            POMs from the local repository involved in the resolution
+	 * @throws IOException
+	 *             if the fingerprint cannot be written
+	 */
+	public void record(final String fingerprint, final Set<File> involvedPoms) throws IOException {
+		File dir = fingerprintFile.getParentFile();
+		dir.mkdirs();
+		File tmpFile = File.createTempFile(fingerprintFile.getName(), ".tmp", dir);
+		BufferedWriter writer = new BufferedWriter(
+				new OutputStreamWriter(new FileOutputStream(tmpFile, false), "UTF-8"));
+		try {
+			writer.write(FORMAT);
+			writer.newLine();
+			writer.write(fingerprint);
+			writer.newLine();
+			for (File pom : involvedPoms) {
+				writer.write(DependencyTreeCache.digest(pom) + "\t" + pom.getAbsolutePath());
+				writer.newLine();
+			}
+		} finally {
+			writer.close();
+		}
+		try {
+			CompositeWriter.replace(tmpFile, fingerprintFile);
+		} finally {
+			tmpFile.delete();
+		}
+	}
+
+	/**
+	 * Removes recorded fingerprint, so that outputs are considered outdated.
+	 */
+	public void invalidate() {
+		fingerprintFile.delete();
+	}
+
+}
@@ -0,0 +1,183 @@
+/*
+See the NOTICE file distributed with this work for additional
+information regarding copyright ownership
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.universAAL.maven;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Writes outputs of the composite goal: the composite, the composite of
+ * dependencies (all elements of execution list except the last one which is
+ * the project itself) and the mapping of artifact ids to versions. All three
+ * files are written in a single pass over the execution list.
+ *
+ * Each file is first written to a temporary file in the same directory which
+ * is then renamed, so that other processes never see a partially written
+ * file. If writing of any temporary file fails none of the files is replaced.
+ * The files are then replaced one after another, so if a rename fails the
+ * files replaced before it already have the new content while the others
+ * keep the old one. The composite goal invalidates its fingerprint before
+ * writing, so such outputs are generated again by the next build.
+ */
+public class CompositeWriter {
+
+	private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+	/**
+	 * Content of composite without any element.
+	 */
+	private static final String EMPTY_COMPOSITE = "This is an empty dummy line in order to make"
+			+ "this file possible to deploy." + "Don't use this file at any time.";
+
+	private File compositeFile;
+
+	private File depsFile;
+
+	private File versionsFile;
+
+	/**
+	 * Constructor of CompositeWriter.
+	 *
+	 * @param compositeFile
+	 *            file to which composite is written
+	 * @param depsFile
+	 *            file to which composite of dependencies is written
+	 * @param versionsFile
+	 *            file to which artifact versions are written
+	 */
+	public CompositeWriter(final File compositeFile, final File depsFile, final File versionsFile) {
+		this.compositeFile = compositeFile;
+		this.depsFile = depsFile;
+		this.versionsFile = versionsFile;
+	}
+
+	/**
+	 * Writes all files for given execution list.
+	 *
+	 * @param mvnUrls
+	 *            execution list
+	 * @throws IOException
+	 *             if any of the files cannot be written
+	 */
+	public void write(final List<String> mvnUrls) throws IOException {
+		File compositeTmp = createTempFile(compositeFile);
+		File depsTmp = null;
+		File versionsTmp = null;
+		boolean written = false;
+		try {
+			depsTmp = createTempFile(depsFile);
+			versionsTmp = createTempFile(versionsFile);
+			Writer compositeWriter = createWriter(compositeTmp);
+			try {
+				Writer depsWriter = createWriter(depsTmp);
+				try {
+					Writer versionsWriter = createWriter(versionsTmp);
+					try {
+						int last = mvnUrls.size() - 1;
+						int i = 0;
+						for (String mvnUrl : mvnUrls) {
+							String line = compositeLine(mvnUrl);
+							compositeWriter.write(line);
+							if (i++ < last) {
+								depsWriter.write(line);
+							}
+							writeVersion(versionsWriter, mvnUrl);
+						}
+						if (last < 0) {
+							compositeWriter.write(EMPTY_COMPOSITE);
+						}
+						if (last < 1) {
+							depsWriter.write(EMPTY_COMPOSITE);
+						}
+					} finally {
+						versionsWriter.close();
+					}
+				} finally {
+					depsWriter.close();
+				}
+			} finally {
+				compositeWriter.close();
+			}
+			replace(compositeTmp, compositeFile);
+			replace(depsTmp, depsFile);
+			replace(versionsTmp, versionsFile);
+			written = true;
+		} finally {
+			if (!written) {
+				compositeTmp.delete();
+				if (depsTmp != null) {
+					depsTmp.delete();
+				}
+				if (versionsTmp != null) {
+					versionsTmp.delete();
+				}
+			}
+		}
+	}
+
+	static String compositeLine(final String mvnUrl) {
+		if (mvnUrl.endsWith("/composite")) {
+			return "scan-composite:" + mvnUrl + LINE_SEPARATOR;
+		}
+		return "scan-bundle:" + mvnUrl + LINE_SEPARATOR;
+	}
+
+	private static void writeVersion(final Writer writer, final String mvnUrl) throws IOException {
+		int firstSlash = mvnUrl.indexOf('/');
+		int secondSlash = mvnUrl.indexOf('/', firstSlash + 1);
+		if (firstSlash < 0 || secondSlash < 0) {
+			throw new RuntimeException("Bad mvnUrl: " + mvnUrl);
+		}
+		int thirdSlash = mvnUrl.indexOf('/', secondSlash + 1);
+		if (thirdSlash < 0) {
+			thirdSlash = mvnUrl.length();
+		}
+		writer.write(mvnUrl, firstSlash + 1, secondSlash - firstSlash - 1);
+		writer.write(".version=");
+		writer.write(mvnUrl, secondSlash + 1, thirdSlash - secondSlash - 1);
+		writer.write(LINE_SEPARATOR);
+	}
+
+	static File createTempFile(final File file) throws IOException {
+		File dir = file.getParentFile();
+		dir.mkdirs();
+		return File.createTempFile("." + file.getName() + "-", ".tmp", dir);
+	}
+
+	static Writer createWriter(final File file) throws IOException {
+		return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, false)));
+	}
+
+	/**
+	 * Renames temporary file to the target file. If the platform does not
+	 * allow renaming onto an existing file, the target is deleted first.
+	 */
+	static void replace(final File tmpFile, final File file) throws IOException {
+		if (!tmpFile.renameTo(file)) {
+			file.delete();
+			if (!tmpFile.renameTo(file)) {
+				throw new IOException("Cannot rename " + tmpFile + " to " + file);
+			}
+		}
+	}
+
+}
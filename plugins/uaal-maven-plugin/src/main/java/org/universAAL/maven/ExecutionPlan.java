@@ -0,0 +1,294 @@
+/*
+See the NOTICE file distributed with this work for additional
+information regarding copyright ownership
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.universAAL.maven;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.factory.ArtifactFactory;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.universAAL.maven.treebuilder.DependencyTreeCache;
+
+/**
+ * Execution plan written by the composite goal and launched by the run goal
+ * without resolving provisions again. The plan records the execution list
+ * (mvn urls including wrap protocol and start levels from StartSpecs),
+ * location and modification time of every listed artifact in the local
+ * repository and modification times of all POMs involved in the resolution.
+ * The plan is valid as long as none of these files changed. Artifacts which
+ * were not in the local repository when the plan was written are not
+ * checked. The plan also records configuration of the resolution (see
+ * {@link #configuration}) and it is launched only with the same
+ * configuration, e.g. it is rejected if the run goal provisions anything else
+ * than the project for which the plan was written. The plan is written only
+ * if the resolution is reproducible, i.e. no version was selected from a
+ * version range and no SNAPSHOT is involved, otherwise the execution list
+ * could change without any of the recorded files changing.
+ */
+public class ExecutionPlan {
+
+	private static final String FORMAT = "uaal-execution-plan 2";
+
+	private static final String CONFIGURATION = "configuration";
+
+	private static final String BUNDLE = "bundle";
+
+	private static final String POM = "pom";
+
+	private static final String MISSING = "-";
+
+	private Log log;
+
+	private File planFile;
+
+	/**
+	 * Constructor of ExecutionPlan.
+	 *
+	 * @param log
+	 *            object for logging
+	 * @param planFile
+	 *            file in which plan is recorded
+	 */
+	public ExecutionPlan(final Log log, final File planFile) {
+		this.log = log;
+		this.planFile = planFile;
+	}
+
+	/**
+	 * Calculates fingerprint of the configuration which influences the
+	 * execution list. Provisions are compared with their transitiveness, so
+	 * "mvn:g/a/v" provisioned transitively by default is the same as
+	 * "transitive:mvn:g/a/v".
+	 *
+	 * @param provisions
+	 *            provisions in the format of the run goal
+	 * @param defaultTransitive
+	 *            whether provisions are transitive by default
+	 * @param separatedGroupIds
+	 *            separated group ids, can be null
+	 * @param startSpecs
+	 *            start levels of artifacts, can be null
+	 * @param throwExceptionOnConflictStr
+	 *            conflict handling setting
+	 * @return the fingerprint
+	 */
+	public static String configuration(final String[] provisions, final boolean defaultTransitive,
+			final String[] separatedGroupIds, final StartSpec[] startSpecs, final String throwExceptionOnConflictStr) {
+		StringBuilder sb = new StringBuilder();
+		if (provisions != null) {
+			for (String provision : provisions) {
+				boolean transitive = defaultTransitive;
+				String url = provision.trim();
+				if (url.startsWith("transitive:")) {
+					url = url.substring("transitive:".length());
+					transitive = true;
+				} else if (url.startsWith("nontransitive:")) {
+					url = url.substring("nontransitive:".length());
+					transitive = false;
+				}
+				sb.append("provision ").append(transitive).append(' ').append(url).append('\n');
+			}
+		}
+		if (separatedGroupIds != null) {
+			for (String groupId : separatedGroupIds) {
+				sb.append("separated ").append(groupId.trim()).append('\n');
+			}
+		}
+		if (startSpecs != null) {
+			for (StartSpec startSpec : startSpecs) {
+				sb.append("start ").append(startSpec.getGroupId()).append(':').append(startSpec.getArtifactId())
+						.append(':').append(startSpec.getStartlevel()).append(':').append(startSpec.isNostart())
+						.append('\n');
+			}
+		}
+		sb.append("conflict ").append(throwExceptionOnConflictStr).append('\n');
+		return DependencyTreeCache.md5Hex(sb.toString());
+	}
+
+	/**
+	 * Returns provision of the run goal which corresponds to the composite of
+	 * the project.
+	 *
+	 * @param project
+	 *            the project
+	 * @return mvn url of the project
+	 */
+	public static String projectProvision(final MavenProject project) {
+		return "mvn:" + project.getGroupId() + "/" + project.getArtifactId() + "/" + project.getVersion();
+	}
+
+	/**
+	 * Records execution list as the plan.
+	 *
+	 * @param configuration
+	 *            fingerprint of the configuration for which execution list
+	 *            was created
+	 * @param mvnUrls
+	 *            execution list
+	 * @param involvedPoms
+	 *            POMs involved in the resolution, including the POM of the
+	 *            project
+	 * @param artifactFactory
+	 *            factory used for creating artifacts of mvn urls
+	 * @param localRepository
+	 *            local repository in which artifacts are located
+	 * @throws IOException
+	 *             if the plan cannot be written
+	 */
+	public void record(final String configuration, final List<String> mvnUrls, final Set<File> involvedPoms,
+			final ArtifactFactory artifactFactory, final ArtifactRepository localRepository) throws IOException {
+		File dir = planFile.getParentFile();
+		dir.mkdirs();
+		File tmpFile = File.createTempFile(planFile.getName(), ".tmp", dir);
+		BufferedWriter writer = new BufferedWriter(
+				new OutputStreamWriter(new FileOutputStream(tmpFile, false), "UTF-8"));
+		try {
+			writer.write(FORMAT);
+			writer.newLine();
+			writer.write(CONFIGURATION + "\t" + configuration);
+			writer.newLine();
+			for (String mvnUrl : mvnUrls) {
+				File file = localFile(mvnUrl, artifactFactory, localRepository);
+				writer.write(BUNDLE + "\t" + timestamp(file) + "\t" + file.getAbsolutePath() + "\t" + mvnUrl);
+				writer.newLine();
+			}
+			for (File pom : involvedPoms) {
+				writer.write(POM + "\t" + timestamp(pom) + "\t" + pom.getAbsolutePath());
+				writer.newLine();
+			}
+		} finally {
+			writer.close();
+		}
+		try {
+			CompositeWriter.replace(tmpFile, planFile);
+		} finally {
+			tmpFile.delete();
+		}
+	}
+
+	/**
+	 * Deletes the plan, e.g. because the last resolution was not reproducible
+	 * and the plan written for an earlier resolution must not be launched.
+	 */
+	public void discard() {
+		if (planFile.exists() && !planFile.delete()) {
+			log.warn("Cannot delete execution plan " + planFile);
+		}
+	}
+
+	/**
+	 * Reads execution list from the plan if the plan is still valid.
+	 *
+	 * @param configuration
+	 *            fingerprint of the configuration of the caller
+	 * @return execution list or null if the plan does not exist, it has
+	 *         unsupported format, it was created for different configuration
+	 *         or any of recorded files changed.
+	 */
+	public List<String> load(final String configuration) {
+		if (!planFile.isFile()) {
+			log.info("Execution plan " + planFile + " does not exist");
+			return null;
+		}
+		try {
+			BufferedReader reader = new BufferedReader(
+					new InputStreamReader(new FileInputStream(planFile), "UTF-8"));
+			try {
+				if (!FORMAT.equals(reader.readLine())) {
+					log.info("Execution plan " + planFile + " has unsupported format");
+					return null;
+				}
+				if (!(CONFIGURATION + "\t" + configuration).equals(reader.readLine())) {
+					log.warn("Execution plan " + planFile + " was created for different provisions,"
+							+ " transitiveness, separatedGroupIds, startArtifacts or conflict handling - it is ignored");
+					return null;
+				}
+				List<String> mvnUrls = new ArrayList<String>();
+				String line;
+				while ((line = reader.readLine()) != null) {
+					String[] fields = line.split("\t");
+					String recorded = fields[1];
+					File file = new File(fields[2]);
+					if (BUNDLE.equals(fields[0])) {
+						mvnUrls.add(fields[3]);
+						if (MISSING.equals(recorded)) {
+							continue;
+						}
+					}
+					if (!recorded.equals(timestamp(file))) {
+						log.info("Execution plan " + planFile + " is outdated because of " + file);
+						return null;
+					}
+				}
+				return mvnUrls;
+			} finally {
+				reader.close();
+			}
+		} catch (Exception e) {
+			log.info("Ignoring unreadable execution plan " + planFile + ": " + e);
+			return null;
+		}
+	}
+
+	private static String timestamp(final File file) {
+		long lastModified = file.lastModified();
+		if (lastModified == 0) {
+			return MISSING;
+		}
+		return String.valueOf(lastModified);
+	}
+
+	/**
+	 * Returns location in the local repository of the artifact given by mvn
+	 * url. Url can be preceded with wrap protocol and followed by start level
+	 * or nostart.
+	 */
+	private static File localFile(final String mvnUrl, final ArtifactFactory artifactFactory,
+			final ArtifactRepository localRepository) {
+		String url = mvnUrl;
+		if (url.startsWith("wrap:")) {
+			url = url.substring("wrap:".length());
+		}
+		int at = url.indexOf('@');
+		if (at >= 0) {
+			url = url.substring(0, at);
+		}
+		if (!url.startsWith("mvn:")) {
+			throw new IllegalArgumentException("Bad mvnUrl: " + mvnUrl);
+		}
+		String[] elements = url.substring("mvn:".length()).split("/");
+		if (elements.length != 3 && elements.length != 4) {
+			throw new IllegalArgumentException("Bad mvnUrl: " + mvnUrl);
+		}
+		String type = elements.length == 4 ? elements[3] : "jar";
+		Artifact artifact = artifactFactory.createArtifact(elements[0], elements[1], elements[2], "", type);
+		return new File(localRepository.getBasedir(), localRepository.pathOf(artifact));
+	}
+
+}
@@ -26,6 +26,7 @@ import java.util.Set;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.shared.dependency.tree.DependencyNode;
+import org.universAAL.maven.treebuilder.MyDependencyNode;
 
 /**
  * This abstract class is a support for implementations of DependencyNodeVisitor
@@ -55,7 +56,7 @@ public abstract class FilteringVisitorSupport {
 	/**
 	 * Set for remembering visited nodes.
 	 */
-	private final Set<String> visited = new HashSet<String>();
+	private final Set<ArtifactKey> visited = new HashSet<ArtifactKey>();
 
 	/**
 	 * Stringify Artifact to string a in a following way:
@@ -112,6 +113,35 @@ public abstract class FilteringVisitorSupport {
 		return stringifyNoVersion(node.getArtifact());
 	}
 
+	/**
+	 * Gets key of DependencyNode consisting of groupId, artifactId and
+	 * version. Keys of MyDependencyNodes are created only once per node.
+	 *
+	 * @param node
+	 *            which key is returned
+	 * @return key of the node
+	 */
+	protected final ArtifactKey key(final DependencyNode node) {
+		if (node instanceof MyDependencyNode) {
+			return ((MyDependencyNode) node).getKey();
+		}
+		return ArtifactKey.of(node.getArtifact());
+	}
+
+	/**
+	 * Gets key of DependencyNode consisting of groupId and artifactId.
+	 *
+	 * @param node
+	 *            which key is returned
+	 * @return versionless key of the node
+	 */
+	protected final ArtifactKey versionlessKey(final DependencyNode node) {
+		if (node instanceof MyDependencyNode) {
+			return ((MyDependencyNode) node).getVersionlessKey();
+		}
+		return ArtifactKey.versionlessOf(node.getArtifact());
+	}
+
 	/**
 	 * Check if node was visited.
 	 *
@@ -120,7 +150,7 @@ public abstract class FilteringVisitorSupport {
 	 * @return true is node was visited
 	 */
 	protected final boolean wasVisited(final DependencyNode node) {
-		return visited.contains(stringify(node));
+		return visited.contains(key(node));
 	}
 
 	/**
@@ -157,11 +187,11 @@ public abstract class FilteringVisitorSupport {
 	}
 
 	/**
-	 * Gets set of visited nodes. Each node is in stringified representation.
+	 * Gets set of visited nodes. Each node is represented by its key.
 	 *
 	 * @return set of visited nodess
 	 */
-	protected final Set<String> getVisited() {
+	protected final Set<ArtifactKey> getVisited() {
 		return visited;
 	}
 
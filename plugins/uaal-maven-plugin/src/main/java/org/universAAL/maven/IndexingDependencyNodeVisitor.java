@@ -38,22 +38,22 @@ import org.apache.maven.shared.dependency.tree.traversal.DependencyNodeVisitor;
 public class IndexingDependencyNodeVisitor extends FilteringVisitorSupport implements DependencyNodeVisitor {
 
 	/**
-	 * Mapping of stringified artifacts (groupId + artifactId + version) to
-	 * nodes in the dependency tree. Nodes contain information about children.
+	 * Mapping of artifact keys (groupId + artifactId + version) to nodes in
+	 * the dependency tree. Nodes contain information about children.
 	 * Duplicates of nodes are not included in the mapping.
 	 */
-	private Map nodesByArtifactId = new HashMap();
+	private Map<ArtifactKey, DependencyNode> nodesByArtifactId = new HashMap<ArtifactKey, DependencyNode>();
 
 	/**
-	 * Mapping of stringified artifacts without version (groupId + artifactId)
-	 * to stringified artifacts with version.
+	 * Mapping of versionless artifact keys (groupId + artifactId) to artifact
+	 * keys with version.
 	 *
 	 * The thing is that visited depedency tree should have resolved before all
 	 * duplicates and conflicts. Therefore visitor can assume that artifact with
 	 * given groupId and versionId should have only one, chosen version. Other
 	 * versions can be spotted only in duplicated and conflicted nodes.
 	 */
-	private Map versionsByArtifactId = new HashMap();
+	private Map<ArtifactKey, ArtifactKey> versionsByArtifactId = new HashMap<ArtifactKey, ArtifactKey>();
 
 	/**
 	 * Constructor of IndexingDependencyNodeVisitor.
@@ -110,14 +110,14 @@ public class IndexingDependencyNodeVisitor extends FilteringVisitorSupport imple
 			case DependencyNode.OMITTED_FOR_CONFLICT:
 				break;
 			default:
-				String artifactStrVersionLess = stringifyNoVersion(node);
-				String artifactStr = stringify(node);
-				nodesByArtifactId.put(artifactStr, node);
-				if (versionsByArtifactId.containsKey(artifactStrVersionLess)) {
-					throw new IllegalStateException(String.format(msg, artifactStrVersionLess,
-							versionsByArtifactId.get(versionsByArtifactId), artifactStr));
+				ArtifactKey artifactKeyVersionLess = versionlessKey(node);
+				ArtifactKey artifactKey = key(node);
+				nodesByArtifactId.put(artifactKey, node);
+				if (versionsByArtifactId.containsKey(artifactKeyVersionLess)) {
+					throw new IllegalStateException(String.format(msg, artifactKeyVersionLess,
+							versionsByArtifactId.get(artifactKeyVersionLess), artifactKey));
 				}
-				versionsByArtifactId.put(artifactStrVersionLess, artifactStr);
+				versionsByArtifactId.put(artifactKeyVersionLess, artifactKey);
 				// indexRuntimeDeps(node);
 			}
 		}
@@ -125,23 +125,23 @@ public class IndexingDependencyNodeVisitor extends FilteringVisitorSupport imple
 	}
 
 	/**
-	 * Gets mapping of stringified artifacts (groupId + artifactId + version) to
-	 * nodes in the dependency tree. Nodes contain information about children.
+	 * Gets mapping of artifact keys (groupId + artifactId + version) to nodes
+	 * in the dependency tree. Nodes contain information about children.
 	 * Duplicates of nodes are not included in the mapping.
 	 *
 	 * @return the map
 	 */
-	public final Map getNodesByArtifactId() {
+	public final Map<ArtifactKey, DependencyNode> getNodesByArtifactId() {
 		return nodesByArtifactId;
 	}
 
 	/**
-	 * Gets mapping of stringified artifacts without version (groupId +
-	 * artifactId) to stringified artifacts with version.
+	 * Gets mapping of versionless artifact keys (groupId + artifactId) to
+	 * artifact keys with version.
 	 *
 	 * @return the map
 	 */
-	public final Map getVersionByArtifactId() {
+	public final Map<ArtifactKey, ArtifactKey> getVersionByArtifactId() {
 		return versionsByArtifactId;
 	}
 
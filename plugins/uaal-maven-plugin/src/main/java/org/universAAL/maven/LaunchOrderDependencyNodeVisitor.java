@@ -20,17 +20,12 @@ limitations under the License.
 */
 package org.universAAL.maven;
 
-import java.io.File;
-import java.io.FileInputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.jar.Attributes;
-import java.util.jar.JarInputStream;
-import java.util.jar.Manifest;
 
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.repository.ArtifactRepository;
@@ -40,6 +35,7 @@ import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.shared.dependency.tree.DependencyNode;
 import org.apache.maven.shared.dependency.tree.traversal.DependencyNodeVisitor;
 import org.universAAL.maven.treebuilder.MyDependencyNode;
+import org.universAAL.maven.treebuilder.ResolutionStats;
 
 /**
  * This DepepdencyVistor traverses depedency tree in depth-first manner. Visitor
@@ -57,25 +53,21 @@ import org.universAAL.maven.treebuilder.MyDependencyNode;
  * bundle then mvn url is preceded with "wrap:" protocol. After visit is ended
  * all mvnUrls in required launch order are contained in mvnUrl list.
  *
+ * Additionally each element of the list is assigned to a dependency wave.
+ * Elements without dependencies in the list belong to the first wave, other
+ * elements to the wave following the highest wave of their dependencies.
+ * Elements of the same wave do not depend on each other, so they can be
+ * installed and started concurrently.
+ *
  * @author rotgier
  *
  */
 public class LaunchOrderDependencyNodeVisitor extends FilteringVisitorSupport implements DependencyNodeVisitor {
 
 	/**
-	 * Maven local repository.
+	 * Key of artifact which should not be resolved.
 	 */
-	private ArtifactRepository localRepository;
-
-	/**
-	 * Maven artifact resolver.
-	 */
-	private ArtifactResolver artifactResolver;
-
-	/**
-	 * Stringified representation of artifact which should not be resolved.
-	 */
-	private String artifactDontResolve;
+	private ArtifactKey artifactDontResolve;
 
 	/**
 	 * If this is true than it means that the execution list is created on
@@ -91,21 +83,36 @@ public class LaunchOrderDependencyNodeVisitor extends FilteringVisitorSupport im
 	private final List mvnUrls = new ArrayList();
 
 	/**
-	 * Mapping of stringified artifacts (groupId:artifactId:version) to nodes in
-	 * the dependency tree. Nodes contain information about children. Duplicates
-	 * of nodes are not included in the mapping.
+	 * Dependency waves of elements of mvnUrls list, starting from 1.
+	 */
+	private final List<Integer> waves = new ArrayList<Integer>();
+
+	/**
+	 * Mapping of keys of visited artifacts to their dependency waves.
+	 * Artifacts which are not added to the execution list (poms, composites,
+	 * excluded core artifacts) are mapped to the highest wave of their
+	 * dependencies.
 	 */
-	private Map nodesByArtifactId = new HashMap();
+	private final Map<ArtifactKey, Integer> wavesByArtifactId = new HashMap<ArtifactKey, Integer>();
 
 	/**
-	 * Mapping of stringified artifacts (groupId:artifactId) to its version.
+	 * Mapping of artifact keys (groupId:artifactId:version) to nodes in the
+	 * dependency tree. Nodes contain information about children. Duplicates of
+	 * nodes are not included in the mapping.
+	 */
+	private Map<ArtifactKey, DependencyNode> nodesByArtifactId = new HashMap<ArtifactKey, DependencyNode>();
+
+	/**
+	 * Mapping of versionless artifact keys (groupId:artifactId) to keys with
+	 * version.
 	 */
-	private Map versionsByArtifactId = new HashMap();
+	private Map<ArtifactKey, ArtifactKey> versionsByArtifactId = new HashMap<ArtifactKey, ArtifactKey>();
 
 	/**
-	 * Core uAAL artifacts which should be excluded from created execution list.
+	 * Keys of core uAAL artifacts which should be excluded from created
+	 * execution list.
 	 */
-	private Set<String> stringifiedExcludedCoreArtifacts;
+	private Set<ArtifactKey> excludedCoreArtifactKeys;
 
 	/**
 	 * Whether exception should be thrown in case of conflict in artifact
@@ -119,19 +126,30 @@ public class LaunchOrderDependencyNodeVisitor extends FilteringVisitorSupport im
 	 */
 	private StartSpec[] startSpecs;
 
+	/**
+	 * Classifies artifacts as bundles or jars which have to be wrapped.
+	 */
+	private BundleClassifier bundleClassifier;
+
+	/**
+	 * Statistics to which visited nodes are reported, null if they are not
+	 * collected.
+	 */
+	private ResolutionStats stats = null;
+
 	/**
 	 * Constructor of LaunchOrderDependencyNodeVisitor.
 	 *
 	 * @param log
 	 *            object for logging
 	 * @param nodesByArtifactId
-	 *            mapping of stringified artifacts (groupId + artifactId +
-	 *            version) to nodes in the dependency tree. Nodes contain
-	 *            information about children. Duplicates of nodes are not
-	 *            included in the mapping.
+	 *            mapping of artifact keys (groupId + artifactId + version) to
+	 *            nodes in the dependency tree. Nodes contain information about
+	 *            children. Duplicates of nodes are not included in the
+	 *            mapping.
 	 * @param versionsByArtifactId
-	 *            mapping of stringified artifacts without version (groupId +
-	 *            artifactId) to stringified artifacts with version.
+	 *            mapping of versionless artifact keys (groupId + artifactId)
+	 *            to artifact keys with version.
 	 * @param throwExceptionOnConflict
 	 *            flag which turns turning exception on conflict
 	 * @param localRepository
@@ -141,22 +159,75 @@ public class LaunchOrderDependencyNodeVisitor extends FilteringVisitorSupport im
 	 * @param dontResolve
 	 *            artifact which should not be resolved
 	 */
-	public LaunchOrderDependencyNodeVisitor(final Log log, final Map nodesByArtifactId, final Map versionsByArtifactId,
+	public LaunchOrderDependencyNodeVisitor(final Log log, final Map<ArtifactKey, DependencyNode> nodesByArtifactId,
+			final Map<ArtifactKey, ArtifactKey> versionsByArtifactId,
 			final boolean throwExceptionOnConflict, final ArtifactRepository localRepository,
 			final ArtifactResolver artifactResolver, final Artifact dontResolve, final StartSpec[] startSpecs) {
 		super(log);
-		this.localRepository = localRepository;
 		this.nodesByArtifactId = nodesByArtifactId;
 		this.versionsByArtifactId = versionsByArtifactId;
 		this.throwExceptionOnConflict = throwExceptionOnConflict;
-		this.artifactResolver = artifactResolver;
 		if (dontResolve != null) {
-			this.artifactDontResolve = FilteringVisitorSupport.stringify(dontResolve);
+			this.artifactDontResolve = ArtifactKey.of(dontResolve);
 			if ("pom".equals(dontResolve.getType())) {
 				visitingOnPomBehalf = true;
 			}
 		}
 		this.startSpecs = startSpecs;
+		this.bundleClassifier = new BundleClassifier(log, artifactResolver, localRepository);
+	}
+
+	/**
+	 * Sets classifier used for deciding which artifacts are bundles. By
+	 * default each visitor has its own classifier.
+	 *
+	 * @param bundleClassifier
+	 *            the classifier.
+	 */
+	public final void setBundleClassifier(final BundleClassifier bundleClassifier) {
+		this.bundleClassifier = bundleClassifier;
+	}
+
+	/**
+	 * Sets statistics to which visited nodes are reported.
+	 *
+	 * @param stats
+	 *            the statistics or null if they should not be collected.
+	 */
+	public final void setResolutionStats(final ResolutionStats stats) {
+		this.stats = stats;
+	}
+
+	/**
+	 * Starts up-front classification of all nodes which may be added to the
+	 * execution list. Thanks to that artifacts are resolved and inspected
+	 * concurrently and the visit itself only looks up the results. Order of
+	 * mvnUrls is not affected.
+	 *
+	 * @param excludedCoreArtifacts
+	 *            core artifacts excluded at any of the rootnodes, they are
+	 *            not classified up-front.
+	 * @param threads
+	 *            number of threads used for classification.
+	 */
+	public final void classifyBundles(final List<ResolutionNode> excludedCoreArtifacts, final int threads) {
+		if (visitingOnPomBehalf) {
+			return;
+		}
+		Set<ArtifactKey> excluded = new HashSet<ArtifactKey>();
+		for (ResolutionNode resolutionNode : excludedCoreArtifacts) {
+			excluded.add(ArtifactKey.of(resolutionNode.getArtifact()));
+		}
+		List<MyDependencyNode> nodes = new ArrayList<MyDependencyNode>();
+		for (DependencyNode node : nodesByArtifactId.values()) {
+			Artifact artifact = node.getArtifact();
+			ArtifactKey nodeKey = key(node);
+			if (!"pom".equals(artifact.getType()) && !artifact.getArtifactId().endsWith("composite")
+					&& !excluded.contains(nodeKey) && !nodeKey.equals(artifactDontResolve)) {
+				nodes.add((MyDependencyNode) node);
+			}
+		}
+		bundleClassifier.classifyAll(nodes, threads);
 	}
 
 	/**
@@ -231,17 +302,17 @@ public class LaunchOrderDependencyNodeVisitor extends FilteringVisitorSupport im
 					 * Here all core artifacts which were detected at each
 					 * RootNode are excluded.
 					 */
-					&& (!stringifiedExcludedCoreArtifacts.contains(stringify(node)))) {
+					&& (!excludedCoreArtifactKeys.contains(key(node)))) {
 				boolean shouldResolve = true;
 				Artifact artifact = node.getArtifact();
-				String nodeStr = stringify(node);
+				ArtifactKey nodeKey = key(node);
 				if (visitingOnPomBehalf) {
 					shouldResolve = false;
 				}
 				String mvnUrl = String.format("mvn:%s/%s/%s", artifact.getGroupId(), artifact.getArtifactId(),
 						artifact.getVersion());
 				if (artifactDontResolve != null) {
-					if (artifactDontResolve.equals(nodeStr)) {
+					if (artifactDontResolve.equals(nodeKey)) {
 						shouldResolve = false;
 						if ("jar".equals(node.getArtifact().getType())) {
 							mvnUrl = "wrap:" + mvnUrl;
@@ -249,23 +320,11 @@ public class LaunchOrderDependencyNodeVisitor extends FilteringVisitorSupport im
 					}
 				}
 				if (shouldResolve) {
-					MyDependencyNode myNode = (MyDependencyNode) node;
-					artifactResolver.resolve(artifact, myNode.getRemoteRepositories(), localRepository);
-					File localRepoBaseDir = new File(localRepository.getBasedir());
-					File jarPath = new File(localRepoBaseDir, localRepository.pathOf(node.getArtifact()));
-					JarInputStream jio = new JarInputStream(new FileInputStream(jarPath));
-					Manifest manifest = jio.getManifest();
-					Object bundleManifestVersion = null;
-					if (manifest != null) {
-						Attributes attribs = manifest.getMainAttributes();
-						bundleManifestVersion = attribs.getValue("Bundle-ManifestVersion");
-					}
-					if (manifest == null || bundleManifestVersion == null) {
+					if (!bundleClassifier.isBundle((MyDependencyNode) node)) {
 						// it means that the jar is not a bundle - it has to be
 						// wrapped before installation in OSGi container
 						mvnUrl = "wrap:" + mvnUrl;
 					}
-					jio.close();
 				}
 
 				// customizing starting of bundles configured in pom file
@@ -284,8 +343,11 @@ public class LaunchOrderDependencyNodeVisitor extends FilteringVisitorSupport im
 					}
 				}
 
-				getVisited().add(stringify(node));
+				getVisited().add(nodeKey);
 				mvnUrls.add(mvnUrl);
+				int wave = dependencyWave(node) + 1;
+				waves.add(wave);
+				wavesByArtifactId.put(nodeKey, wave);
 			}
 		} catch (RuntimeException e) {
 			throw e;
@@ -310,6 +372,9 @@ public class LaunchOrderDependencyNodeVisitor extends FilteringVisitorSupport im
 	 * @return true if node needs visiting, false otherwise
 	 */
 	public final boolean visit(final DependencyNode node) {
+		if (stats != null) {
+			stats.increment(ResolutionStats.NODES_VISITED);
+		}
 		if (wasVisited(node)) {
 			return false;
 		}
@@ -321,23 +386,7 @@ public class LaunchOrderDependencyNodeVisitor extends FilteringVisitorSupport im
 				if (keptArtifact == null) {
 					throw new RuntimeException("keptArtifact of ommited artifact is null: " + node.getArtifact());
 				}
-				DependencyNode keptNode = (DependencyNode) nodesByArtifactId
-						.get(FilteringVisitorSupport.stringify(keptArtifact));
-				if (keptNode == null) {
-					/*
-					 * keptNode can be null if dependency was conflicted and was
-					 * overridden with other conflicting dependency e.g. having
-					 * mw.data.representation in versions 0.3.1, 0.3.2,
-					 * 1.0.0(resolved version) can impose that 0.3.1 is
-					 * conflicted with 0.3.2
-					 *
-					 * This can happen in both CONFLICT and DUPLICATE state. So
-					 * to overcome this the versionsByArtifactId mapping is
-					 * used.
-					 */
-					keptNode = (DependencyNode) nodesByArtifactId
-							.get(versionsByArtifactId.get(stringifyNoVersion(keptArtifact)));
-				}
+				DependencyNode keptNode = findKeptNode(keptArtifact);
 				if (keptNode == null) {
 					throw new IllegalStateException(
 							"Cannot find keptNode\n" + "check: " + stringifyNoVersion(keptArtifact));
@@ -357,6 +406,58 @@ public class LaunchOrderDependencyNodeVisitor extends FilteringVisitorSupport im
 		return false;
 	}
 
+	/**
+	 * Finds node which was kept instead of omitted one.
+	 *
+	 * @param keptArtifact
+	 *            artifact related to the omitted node
+	 * @return the kept node or null if it cannot be found
+	 */
+	private DependencyNode findKeptNode(final Artifact keptArtifact) {
+		DependencyNode keptNode = nodesByArtifactId.get(ArtifactKey.of(keptArtifact));
+		if (keptNode == null) {
+			/*
+			 * keptNode can be null if dependency was conflicted and was
+			 * overridden with other conflicting dependency e.g. having
+			 * mw.data.representation in versions 0.3.1, 0.3.2, 1.0.0(resolved
+			 * version) can impose that 0.3.1 is conflicted with 0.3.2
+			 *
+			 * This can happen in both CONFLICT and DUPLICATE state. So to
+			 * overcome this the versionsByArtifactId mapping is used.
+			 */
+			keptNode = nodesByArtifactId.get(versionsByArtifactId.get(ArtifactKey.versionlessOf(keptArtifact)));
+		}
+		return keptNode;
+	}
+
+	/**
+	 * Calculates the highest dependency wave of children of given node.
+	 * Omitted children are replaced with kept nodes. Children which were not
+	 * visited are ignored.
+	 *
+	 * @param node
+	 *            node which children are checked
+	 * @return the highest wave or 0 if node has no visited children
+	 */
+	private int dependencyWave(final DependencyNode node) {
+		int wave = 0;
+		for (Object childObj : node.getChildren()) {
+			DependencyNode child = (DependencyNode) childObj;
+			DependencyNode dependency = child;
+			if (child.getState() == DependencyNode.OMITTED_FOR_CONFLICT
+					|| child.getState() == DependencyNode.OMITTED_FOR_DUPLICATE) {
+				dependency = child.getRelatedArtifact() == null ? null : findKeptNode(child.getRelatedArtifact());
+			}
+			if (dependency != null) {
+				Integer dependencyWave = wavesByArtifactId.get(key(dependency));
+				if (dependencyWave != null && dependencyWave > wave) {
+					wave = dependencyWave;
+				}
+			}
+		}
+		return wave;
+	}
+
 	/**
 	 * If this method returns true then it means that the next sibling should be
 	 * visited. Because all nodes should be visited this methods always returns
@@ -382,6 +483,10 @@ public class LaunchOrderDependencyNodeVisitor extends FilteringVisitorSupport im
 							addNode(node);
 						}
 					}
+					ArtifactKey nodeKey = key(node);
+					if (!wavesByArtifactId.containsKey(nodeKey)) {
+						wavesByArtifactId.put(nodeKey, dependencyWave(node));
+					}
 				}
 			}
 		}
@@ -397,6 +502,15 @@ public class LaunchOrderDependencyNodeVisitor extends FilteringVisitorSupport im
 		return mvnUrls;
 	}
 
+	/**
+	 * Gets dependency waves of elements of the execution list.
+	 *
+	 * @return list of waves, starting from 1, in the order of mvnUrls.
+	 */
+	public final List<Integer> getWaves() {
+		return waves;
+	}
+
 	/**
 	 * Sets core uAAL artifacts which should be excluded from created execution
 	 * list.
@@ -405,9 +519,9 @@ public class LaunchOrderDependencyNodeVisitor extends FilteringVisitorSupport im
 	 *            list of artifacts to be excluded.
 	 */
 	public final void setExcludedCoreArtifacts(final List<ResolutionNode> excludedCoreArtifacts) {
-		stringifiedExcludedCoreArtifacts = new HashSet<String>();
+		excludedCoreArtifactKeys = new HashSet<ArtifactKey>();
 		for (ResolutionNode resolutionNode : excludedCoreArtifacts) {
-			stringifiedExcludedCoreArtifacts.add(stringify(resolutionNode.getArtifact()));
+			excludedCoreArtifactKeys.add(ArtifactKey.of(resolutionNode.getArtifact()));
 		}
 	}
 
@@ -0,0 +1,705 @@
+/*
+See the NOTICE file distributed with this work for additional
+information regarding copyright ownership
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.universAAL.maven;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.maven.artifact.factory.ArtifactFactory;
+import org.apache.maven.artifact.metadata.ArtifactMetadataSource;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.repository.ArtifactRepositoryFactory;
+import org.apache.maven.artifact.repository.ArtifactRepositoryPolicy;
+import org.apache.maven.artifact.repository.layout.ArtifactRepositoryLayout;
+import org.apache.maven.artifact.resolver.ArtifactResolver;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.profiles.DefaultProfileManager;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.MavenProjectBuilder;
+import org.apache.maven.settings.Mirror;
+import org.apache.maven.settings.Profile;
+import org.apache.maven.settings.RepositoryBase;
+import org.apache.maven.settings.Settings;
+import org.codehaus.plexus.PlexusContainer;
+import org.universAAL.maven.treebuilder.ExecutionListCreator;
+import org.universAAL.maven.treebuilder.ResolutionSession;
+
+/**
+ * Long-lived resolver of execution lists started by the daemon goal. It keeps
+ * a single ResolutionSession, so POM projects and bundle information of
+ * released artifacts are obtained once and reused by all consecutive builds
+ * which delegate resolution to the daemon (see ResolutionDaemonClient).
+ *
+ * The daemon listens only on the loopback interface and handles one request
+ * at a time. Requests and responses are sent as lines of UTF-8 text. Each
+ * request carries a secret token which the daemon writes at start to a file
+ * readable only by its owner (see tokenFile), so other local users cannot
+ * use or stop the daemon. A client which does not send its request within
+ * REQUEST_TIMEOUT is disconnected. A request
+ * carries everything which influences the execution list: goal, provisions or
+ * POM file, remote repositories, active profiles, start specifications and
+ * flags. For the composite goal the daemon builds the project from the POM
+ * file again and refuses to resolve it if its fingerprint differs from the
+ * one calculated by the build, the build then resolves in process.
+ *
+ * Remote repositories sent in a request are accepted only if they cannot be
+ * given credentials of a server from the settings, or if the settings or the
+ * built project define a repository with the same id and url. Otherwise a
+ * client could direct credentials of the daemon's owner to any url.
+ *
+ * SNAPSHOT POMs are removed from caches of maven's project builder before
+ * each request, because they can change between builds. The caches are
+ * reached through private fields of the maven 2 project builder. Other
+ * project builders (e.g. of maven 3) are not cleared, so there SNAPSHOT POMs
+ * are served from the cache until the daemon is restarted.
+ */
+public class ResolutionDaemon {
+
+	/**
+	 * Port used if none is configured.
+	 */
+	public static final int DEFAULT_PORT = 7891;
+
+	public static final String LOOPBACK = "127.0.0.1";
+
+	public static final String GOAL_COMPOSITE = "composite";
+
+	public static final String GOAL_RUN = "run";
+
+	public static final String GOAL_STOP = "stop";
+
+	private static final String HEADER = "uaal-resolution-daemon 1";
+
+	private static final String END = "end";
+
+	private static final String ENCODING = "UTF-8";
+
+	/**
+	 * Time in milliseconds for which the daemon waits for a request after a
+	 * client connects.
+	 */
+	private static final int REQUEST_TIMEOUT = 10000;
+
+	/**
+	 * Fields of maven 2 DefaultMavenProjectBuilder with cached projects.
+	 */
+	private static final String[] PROJECT_CACHE_FIELDS = { "rawProjectCache", "processedProjectCache" };
+
+	/**
+	 * Request sent by ResolutionDaemonClient.
+	 */
+	public static class Request {
+		public String goal;
+		public String throwExceptionOnConflictStr;
+		public int resolutionThreads = 1;
+		public boolean useTreeCache;
+		public List<ArtifactRepository> remoteRepositories = new ArrayList<ArtifactRepository>();
+		public List<StartSpec> startSpecs = new ArrayList<StartSpec>();
+		public List<String> activeProfiles = new ArrayList<String>();
+		public File pomFile;
+		public boolean useMwComposite;
+		public String fingerprint;
+		public List<String> provisions = new ArrayList<String>();
+		public boolean transitive = true;
+	}
+
+	/**
+	 * Response of the daemon. If error is not null the request was not
+	 * resolved.
+	 */
+	public static class Response {
+		public String error;
+		public List<String> mvnUrls = new ArrayList<String>();
+		public List<Integer> waves = new ArrayList<Integer>();
+		public Set<File> involvedPoms = new LinkedHashSet<File>();
+		public boolean reproducible;
+	}
+
+	/**
+	 * Repository described in a request. Requests are parsed without maven
+	 * components, so repositories are turned into ArtifactRepositories only
+	 * by the daemon.
+	 */
+	private static class RepositoryLine {
+		private String[] fields;
+	}
+
+	private Log log;
+
+	private ArtifactMetadataSource artifactMetadataSource;
+
+	private ArtifactFactory artifactFactory;
+
+	private MavenProjectBuilder mavenProjectBuilder;
+
+	private ArtifactRepository localRepository;
+
+	private ArtifactResolver artifactResolver;
+
+	private ArtifactRepositoryFactory repositoryFactory;
+
+	private ArtifactRepositoryLayout repositoryLayout;
+
+	private PlexusContainer container;
+
+	private Settings settings;
+
+	private Properties executionProperties;
+
+	private ResolutionSession resolutionSession;
+
+	/**
+	 * Secret sent by clients, it exists only while serving.
+	 */
+	private String token;
+
+	public ResolutionDaemon(final Log log, final ArtifactMetadataSource artifactMetadataSource,
+			final ArtifactFactory artifactFactory, final MavenProjectBuilder mavenProjectBuilder,
+			final ArtifactRepository localRepository, final ArtifactResolver artifactResolver,
+			final ArtifactRepositoryFactory repositoryFactory, final ArtifactRepositoryLayout repositoryLayout,
+			final PlexusContainer container, final Settings settings, final Properties executionProperties) {
+		this.log = log;
+		this.artifactMetadataSource = artifactMetadataSource;
+		this.artifactFactory = artifactFactory;
+		this.mavenProjectBuilder = mavenProjectBuilder;
+		this.localRepository = localRepository;
+		this.artifactResolver = artifactResolver;
+		this.repositoryFactory = repositoryFactory;
+		this.repositoryLayout = repositoryLayout;
+		this.container = container;
+		this.settings = settings;
+		this.executionProperties = executionProperties;
+		this.resolutionSession = new ResolutionSession(log, localRepository);
+	}
+
+	/**
+	 * Serves requests until a stop request is received.
+	 *
+	 * @param port
+	 *            port on the loopback interface.
+	 * @throws IOException
+	 *             when the port cannot be bound.
+	 */
+	public void serve(final int port) throws IOException {
+		ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getByName(LOOPBACK));
+		File tokenFile = tokenFile(port);
+		try {
+			token = createToken(tokenFile);
+			if (!hasProjectCaches()) {
+				log.warn("SNAPSHOT POMs cannot be removed from caches of this maven's project builder,"
+						+ " restart the daemon to pick up their changes");
+			}
+			log.info("uAAL resolution daemon is listening on " + LOOPBACK + ":" + port);
+			boolean running = true;
+			while (running) {
+				Socket socket = serverSocket.accept();
+				try {
+					socket.setSoTimeout(REQUEST_TIMEOUT);
+					running = handle(socket);
+				} catch (IOException e) {
+					log.warn("Communication with a client failed: " + e);
+				} catch (RuntimeException e) {
+					log.warn("Cannot handle a request: " + e);
+				} finally {
+					socket.close();
+				}
+			}
+			log.info("uAAL resolution daemon stopped");
+		} finally {
+			tokenFile.delete();
+			serverSocket.close();
+		}
+	}
+
+	/**
+	 * File with the token of the daemon listening on the port.
+	 *
+	 * @param port
+	 *            port of the daemon.
+	 * @return the file, it exists only while the daemon is running.
+	 */
+	static File tokenFile(final int port) {
+		return new File(System.getProperty("user.home"), ".m2" + File.separator + "uaal-resolution-daemon-" + port
+				+ ".token");
+	}
+
+	/**
+	 * Reads token of the daemon listening on the port.
+	 *
+	 * @param port
+	 *            port of the daemon.
+	 * @return the token or null if the daemon has not written it.
+	 * @throws IOException
+	 *             when the token file cannot be read.
+	 */
+	static String readToken(final int port) throws IOException {
+		File file = tokenFile(port);
+		if (!file.isFile()) {
+			return null;
+		}
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), ENCODING));
+		try {
+			return reader.readLine();
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Generates random token and writes it to the file, which is first made
+	 * accessible only by its owner.
+	 */
+	private static String createToken(final File file) throws IOException {
+		byte[] bytes = new byte[16];
+		new SecureRandom().nextBytes(bytes);
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < bytes.length; i++) {
+			sb.append(Integer.toHexString((bytes[i] >> 4) & 0xf));
+			sb.append(Integer.toHexString(bytes[i] & 0xf));
+		}
+		file.getParentFile().mkdirs();
+		file.delete();
+		if (!file.createNewFile()) {
+			throw new IOException("Cannot create " + file);
+		}
+		boolean restricted = file.setReadable(false, false) && file.setReadable(true, true)
+				&& file.setWritable(false, false) && file.setWritable(true, true);
+		// windows does not support these permissions, there the home
+		// directory of the user is private
+		if (!restricted && File.separatorChar != '\\') {
+			file.delete();
+			throw new IOException("Cannot restrict access to " + file);
+		}
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), ENCODING);
+		try {
+			writeLine(writer, sb.toString());
+		} finally {
+			writer.close();
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Handles single connection.
+	 *
+	 * @return false if the daemon should stop.
+	 */
+	private boolean handle(final Socket socket) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), ENCODING));
+		Writer writer = new OutputStreamWriter(socket.getOutputStream(), ENCODING);
+		List<RepositoryLine> repositories = new ArrayList<RepositoryLine>();
+		Response response;
+		Request request = null;
+		try {
+			request = readRequest(reader, repositories, token);
+		} catch (IOException e) {
+			log.warn("Rejected a request: " + e.getMessage());
+			response = new Response();
+			response.error = e.getMessage();
+			writeResponse(writer, response);
+			return true;
+		} catch (RuntimeException e) {
+			log.warn("Rejected a request: " + e);
+			response = new Response();
+			response.error = String.valueOf(e.getMessage());
+			writeResponse(writer, response);
+			return true;
+		}
+		if (GOAL_STOP.equals(request.goal)) {
+			writeResponse(writer, new Response());
+			return false;
+		}
+		long start = System.currentTimeMillis();
+		try {
+			for (RepositoryLine repository : repositories) {
+				request.remoteRepositories.add(createRepository(repository.fields));
+			}
+			response = resolve(request);
+			log.info("Resolved " + request.goal + " request in " + (System.currentTimeMillis() - start) + " ms");
+		} catch (Exception e) {
+			log.warn("Cannot resolve " + request.goal + " request: " + e);
+			log.debug(e);
+			response = new Response();
+			response.error = String.valueOf(e.getMessage());
+		}
+		writeResponse(writer, response);
+		return true;
+	}
+
+	private Response resolve(final Request request) throws Exception {
+		evictSnapshotProjects();
+		ExecutionListCreator execListCreator = new ExecutionListCreator(log, artifactMetadataSource, artifactFactory,
+				mavenProjectBuilder, localRepository, request.remoteRepositories, artifactResolver,
+				request.throwExceptionOnConflictStr, request.startSpecs.toArray(new StartSpec[0]));
+		execListCreator.setResolutionSession(resolutionSession);
+		execListCreator.setUseTreeCache(request.useTreeCache);
+		execListCreator.setResolutionThreads(request.resolutionThreads);
+		Response response = new Response();
+		if (GOAL_COMPOSITE.equals(request.goal)) {
+			DefaultProfileManager profileManager = new DefaultProfileManager(container, settings,
+					executionProperties);
+			profileManager.explicitlyActivate(request.activeProfiles);
+			MavenProject project = mavenProjectBuilder.build(request.pomFile, localRepository, profileManager);
+			checkRepositories(request.remoteRepositories, project);
+			project.setRemoteArtifactRepositories(request.remoteRepositories);
+			String fingerprint = execListCreator.calculateFingerprint(project, false, request.useMwComposite);
+			if (!fingerprint.equals(request.fingerprint)) {
+				throw new IllegalStateException("Project built by the daemon from " + request.pomFile
+						+ " differs from the project of the build");
+			}
+			response.mvnUrls.addAll(execListCreator.createArtifactExecutionList(project, new HashSet<String>(),
+					false, request.useMwComposite));
+		} else if (GOAL_RUN.equals(request.goal)) {
+			checkRepositories(request.remoteRepositories, null);
+			response.mvnUrls.addAll(execListCreator.createArtifactExecutionList(
+					request.provisions.toArray(new String[0]), request.transitive, false));
+		} else {
+			throw new IllegalArgumentException("Unknown goal: " + request.goal);
+		}
+		response.waves.addAll(execListCreator.getLaunchWaves());
+		response.involvedPoms.addAll(execListCreator.getInvolvedPoms());
+		response.reproducible = execListCreator.isResolutionReproducible();
+		return response;
+	}
+
+	private ArtifactRepository createRepository(final String[] fields) {
+		if (fields.length != 8) {
+			throw new IllegalArgumentException("Malformed repository: " + join(fields));
+		}
+		ArtifactRepositoryPolicy releases = new ArtifactRepositoryPolicy(Boolean.valueOf(fields[2]).booleanValue(),
+				fields[3], fields[4]);
+		ArtifactRepositoryPolicy snapshots = new ArtifactRepositoryPolicy(Boolean.valueOf(fields[5]).booleanValue(),
+				fields[6], fields[7]);
+		return repositoryFactory.createArtifactRepository(fields[0], fields[1], repositoryLayout, snapshots,
+				releases);
+	}
+
+	/**
+	 * Rejects repositories which would be given credentials of a server from
+	 * the settings, unless the settings or the project define a repository
+	 * with the same id and url.
+	 *
+	 * @param project
+	 *            project built by the daemon, can be null.
+	 */
+	private void checkRepositories(final List<ArtifactRepository> repositories, final MavenProject project) {
+		for (ArtifactRepository repository : repositories) {
+			String id = repository.getId();
+			if (settings == null || settings.getServer(id) == null) {
+				continue;
+			}
+			Set<String> urls = new HashSet<String>();
+			for (Object mirror : settings.getMirrors()) {
+				if (id.equals(((Mirror) mirror).getId())) {
+					urls.add(((Mirror) mirror).getUrl());
+				}
+			}
+			for (Object profile : settings.getProfiles()) {
+				List definitions = new ArrayList(((Profile) profile).getRepositories());
+				definitions.addAll(((Profile) profile).getPluginRepositories());
+				for (Object definition : definitions) {
+					if (id.equals(((RepositoryBase) definition).getId())) {
+						urls.add(((RepositoryBase) definition).getUrl());
+					}
+				}
+			}
+			if (project != null) {
+				for (Object definition : project.getRemoteArtifactRepositories()) {
+					if (id.equals(((ArtifactRepository) definition).getId())) {
+						urls.add(((ArtifactRepository) definition).getUrl());
+					}
+				}
+			}
+			if (!urls.contains(repository.getUrl())) {
+				throw new IllegalArgumentException("Repository " + id + " with url " + repository.getUrl()
+						+ " is not defined in the settings nor in the project");
+			}
+		}
+	}
+
+	/**
+	 * Checks whether caches of maven's project builder can be cleared.
+	 */
+	private boolean hasProjectCaches() {
+		for (String fieldName : PROJECT_CACHE_FIELDS) {
+			try {
+				mavenProjectBuilder.getClass().getDeclaredField(fieldName);
+				return true;
+			} catch (NoSuchFieldException e) {
+				// other implementation of the project builder
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Removes SNAPSHOT projects from caches of maven's project builder. The
+	 * caches are private fields of DefaultMavenProjectBuilder in maven 2, if
+	 * they do not exist nothing is done.
+	 */
+	private void evictSnapshotProjects() {
+		for (String fieldName : PROJECT_CACHE_FIELDS) {
+			try {
+				Field field = mavenProjectBuilder.getClass().getDeclaredField(fieldName);
+				field.setAccessible(true);
+				Map cache = (Map) field.get(mavenProjectBuilder);
+				if (cache != null) {
+					synchronized (cache) {
+						for (Iterator i = cache.keySet().iterator(); i.hasNext();) {
+							if (String.valueOf(i.next()).endsWith("SNAPSHOT")) {
+								i.remove();
+							}
+						}
+					}
+				}
+			} catch (NoSuchFieldException e) {
+				// other implementation of the project builder
+			} catch (IllegalAccessException e) {
+				log.debug("Cannot access " + fieldName + " of the project builder: " + e);
+			}
+		}
+	}
+
+	/**
+	 * Writes request to the stream.
+	 *
+	 * @param writer
+	 *            the stream
+	 * @param request
+	 *            the request
+	 * @param token
+	 *            token of the daemon
+	 * @throws IOException
+	 *             when writing fails
+	 */
+	static void writeRequest(final Writer writer, final Request request, final String token) throws IOException {
+		writeLine(writer, HEADER);
+		writeLine(writer, "token " + token);
+		writeLine(writer, "goal " + request.goal);
+		writeLine(writer, "conflict " + (request.throwExceptionOnConflictStr == null ? ""
+				: request.throwExceptionOnConflictStr));
+		writeLine(writer, "threads " + request.resolutionThreads);
+		writeLine(writer, "treeCache " + request.useTreeCache);
+		for (ArtifactRepository repository : request.remoteRepositories) {
+			ArtifactRepositoryPolicy releases = repository.getReleases();
+			ArtifactRepositoryPolicy snapshots = repository.getSnapshots();
+			writeLine(writer, "repository " + join(new String[] { repository.getId(), repository.getUrl(),
+					String.valueOf(releases == null || releases.isEnabled()),
+					releases == null ? null : releases.getUpdatePolicy(),
+					releases == null ? null : releases.getChecksumPolicy(),
+					String.valueOf(snapshots == null || snapshots.isEnabled()),
+					snapshots == null ? null : snapshots.getUpdatePolicy(),
+					snapshots == null ? null : snapshots.getChecksumPolicy() }));
+		}
+		for (StartSpec startSpec : request.startSpecs) {
+			writeLine(writer, "start " + join(new String[] { startSpec.getGroupId(), startSpec.getArtifactId(),
+					startSpec.getStartlevel() == null ? null : startSpec.getStartlevel().toString(),
+					String.valueOf(startSpec.isNostart()) }));
+		}
+		for (String profile : request.activeProfiles) {
+			writeLine(writer, "profile " + profile);
+		}
+		if (request.pomFile != null) {
+			writeLine(writer, "pom " + request.pomFile.getAbsolutePath());
+		}
+		writeLine(writer, "mwComposite " + request.useMwComposite);
+		if (request.fingerprint != null) {
+			writeLine(writer, "fingerprint " + request.fingerprint);
+		}
+		for (String provision : request.provisions) {
+			writeLine(writer, "provision " + provision);
+		}
+		writeLine(writer, "transitive " + request.transitive);
+		writeLine(writer, END);
+		writer.flush();
+	}
+
+	private static Request readRequest(final BufferedReader reader, final List<RepositoryLine> repositories,
+			final String token) throws IOException {
+		if (!HEADER.equals(reader.readLine())) {
+			throw new IOException("Unsupported protocol, expected: " + HEADER);
+		}
+		String tokenLine = reader.readLine();
+		if (tokenLine == null || token == null
+				|| !MessageDigest.isEqual(("token " + token).getBytes(ENCODING), tokenLine.getBytes(ENCODING))) {
+			throw new IOException("Invalid token");
+		}
+		Request request = new Request();
+		String line;
+		while ((line = reader.readLine()) != null && !END.equals(line)) {
+			int space = line.indexOf(' ');
+			String key = space < 0 ? line : line.substring(0, space);
+			String value = space < 0 ? "" : line.substring(space + 1);
+			try {
+				readRequestLine(request, repositories, key, value);
+			} catch (NumberFormatException e) {
+				throw new IOException("Malformed line: " + line);
+			}
+		}
+		if (line == null) {
+			throw new IOException("Incomplete request");
+		}
+		return request;
+	}
+
+	private static void readRequestLine(final Request request, final List<RepositoryLine> repositories,
+			final String key, final String value) throws IOException {
+		if ("goal".equals(key)) {
+			request.goal = value;
+		} else if ("conflict".equals(key)) {
+			request.throwExceptionOnConflictStr = value.length() == 0 ? null : value;
+		} else if ("threads".equals(key)) {
+			request.resolutionThreads = Integer.parseInt(value);
+		} else if ("treeCache".equals(key)) {
+			request.useTreeCache = Boolean.valueOf(value).booleanValue();
+		} else if ("repository".equals(key)) {
+			RepositoryLine repository = new RepositoryLine();
+			repository.fields = split(value);
+			if (repository.fields.length != 8) {
+				throw new IOException("Malformed repository: " + value);
+			}
+			repositories.add(repository);
+		} else if ("start".equals(key)) {
+			String[] fields = split(value);
+			if (fields.length != 4) {
+				throw new IOException("Malformed start specification: " + value);
+			}
+			request.startSpecs.add(new StartSpec(fields[0], fields[1],
+					fields[2] == null ? null : Integer.valueOf(fields[2]),
+					Boolean.valueOf(fields[3]).booleanValue()));
+		} else if ("profile".equals(key)) {
+			request.activeProfiles.add(value);
+		} else if ("pom".equals(key)) {
+			request.pomFile = new File(value);
+		} else if ("mwComposite".equals(key)) {
+			request.useMwComposite = Boolean.valueOf(value).booleanValue();
+		} else if ("fingerprint".equals(key)) {
+			request.fingerprint = value;
+		} else if ("provision".equals(key)) {
+			request.provisions.add(value);
+		} else if ("transitive".equals(key)) {
+			request.transitive = Boolean.valueOf(value).booleanValue();
+		}
+	}
+
+	private static void writeResponse(final Writer writer, final Response response) throws IOException {
+		if (response.error != null) {
+			writeLine(writer, "error " + response.error.replace('\r', ' ').replace('\n', ' '));
+		} else {
+			writeLine(writer, "ok");
+			for (String mvnUrl : response.mvnUrls) {
+				writeLine(writer, "url " + mvnUrl);
+			}
+			for (Integer wave : response.waves) {
+				writeLine(writer, "wave " + wave);
+			}
+			for (File pom : response.involvedPoms) {
+				writeLine(writer, "involved " + pom.getPath());
+			}
+			writeLine(writer, "reproducible " + response.reproducible);
+		}
+		writeLine(writer, END);
+		writer.flush();
+	}
+
+	/**
+	 * Reads response from the stream.
+	 *
+	 * @param reader
+	 *            the stream
+	 * @return the response
+	 * @throws IOException
+	 *             when reading fails or the response is incomplete
+	 */
+	static Response readResponse(final BufferedReader reader) throws IOException {
+		Response response = new Response();
+		String line = reader.readLine();
+		if (line == null) {
+			throw new IOException("Daemon closed the connection");
+		}
+		if (line.startsWith("error")) {
+			response.error = line.length() > 6 ? line.substring(6) : "unknown error";
+		} else if (!"ok".equals(line)) {
+			throw new IOException("Unexpected response: " + line);
+		}
+		while ((line = reader.readLine()) != null && !END.equals(line)) {
+			if (line.startsWith("url ")) {
+				response.mvnUrls.add(line.substring(4));
+			} else if (line.startsWith("wave ")) {
+				response.waves.add(Integer.valueOf(line.substring(5)));
+			} else if (line.startsWith("involved ")) {
+				response.involvedPoms.add(new File(line.substring(9)));
+			} else if (line.startsWith("reproducible ")) {
+				response.reproducible = Boolean.valueOf(line.substring(13)).booleanValue();
+			}
+		}
+		if (line == null) {
+			throw new IOException("Incomplete response");
+		}
+		return response;
+	}
+
+	private static void writeLine(final Writer writer, final String line) throws IOException {
+		writer.write(line);
+		writer.write('\n');
+	}
+
+	/**
+	 * Joins fields with tabulators, null fields are written as "-".
+	 */
+	private static String join(final String[] fields) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < fields.length; i++) {
+			if (i > 0) {
+				sb.append('\t');
+			}
+			sb.append(fields[i] == null ? "-" : fields[i]);
+		}
+		return sb.toString();
+	}
+
+	private static String[] split(final String value) {
+		String[] fields = value.split("\t", -1);
+		for (int i = 0; i < fields.length; i++) {
+			if ("-".equals(fields[i])) {
+				fields[i] = null;
+			}
+		}
+		return fields;
+	}
+
+}
@@ -0,0 +1,113 @@
+/*
+See the NOTICE file distributed with this work for additional
+information regarding copyright ownership
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.universAAL.maven;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+import org.apache.maven.plugin.logging.Log;
+import org.universAAL.maven.ResolutionDaemon.Request;
+import org.universAAL.maven.ResolutionDaemon.Response;
+
+/**
+ * Sends requests to the ResolutionDaemon started by the daemon goal. Failures
+ * are not fatal, null is returned and the caller is expected to resolve the
+ * execution list in process.
+ */
+public class ResolutionDaemonClient {
+
+	/**
+	 * Time in milliseconds after which connecting to the daemon is abandoned.
+	 */
+	private static final int CONNECT_TIMEOUT = 500;
+
+	/**
+	 * Time in milliseconds after which waiting for the response is abandoned,
+	 * the daemon handles one request at a time so it includes waiting for
+	 * other builds.
+	 */
+	private static final int RESPONSE_TIMEOUT = 300000;
+
+	private Log log;
+
+	private int port;
+
+	public ResolutionDaemonClient(final Log log, final int port) {
+		this.log = log;
+		this.port = port;
+	}
+
+	/**
+	 * Sends request to the daemon and waits for the response.
+	 *
+	 * @param request
+	 *            the request
+	 * @return response of the daemon or null if the daemon is not running or
+	 *         it has not resolved the request.
+	 */
+	public Response send(final Request request) {
+		Socket socket = new Socket();
+		try {
+			String token;
+			try {
+				token = ResolutionDaemon.readToken(port);
+				if (token != null) {
+					socket.connect(new InetSocketAddress(ResolutionDaemon.LOOPBACK, port), CONNECT_TIMEOUT);
+				}
+			} catch (IOException e) {
+				token = null;
+			}
+			if (token == null) {
+				log.info("uAAL resolution daemon is not available on port " + port
+						+ ", resolving in the build");
+				return null;
+			}
+			socket.setSoTimeout(RESPONSE_TIMEOUT);
+			ResolutionDaemon.writeRequest(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"), request,
+					token);
+			Response response = ResolutionDaemon
+					.readResponse(new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8")));
+			if (response.error != null) {
+				log.warn("uAAL resolution daemon has not resolved the request: " + response.error);
+				return null;
+			}
+			return response;
+		} catch (SocketTimeoutException e) {
+			log.warn("uAAL resolution daemon has not responded within " + RESPONSE_TIMEOUT / 1000
+					+ " s, resolving in the build");
+			return null;
+		} catch (IOException e) {
+			log.warn("Communication with uAAL resolution daemon failed: " + e);
+			return null;
+		} catch (RuntimeException e) {
+			log.warn("Malformed response of uAAL resolution daemon: " + e);
+			return null;
+		} finally {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// nothing to do
+			}
+		}
+	}
+
+}
@@ -52,6 +52,17 @@ public class StartSpec {
 	 */
 	private boolean nostart;
 
+	public StartSpec() {
+	}
+
+	public StartSpec(final String groupId, final String artifactId, final Integer startlevel,
+			final boolean nostart) {
+		this.groupId = groupId;
+		this.artifactId = artifactId;
+		this.startlevel = startlevel;
+		this.nostart = nostart;
+	}
+
 	public String getGroupId() {
 		return groupId;
 	}
@@ -26,23 +26,30 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
-import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
-import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.maven.artifact.factory.ArtifactFactory;
 import org.apache.maven.artifact.metadata.ArtifactMetadataSource;
 import org.apache.maven.artifact.repository.ArtifactRepository;
 import org.apache.maven.artifact.resolver.ArtifactResolver;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Profile;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.project.MavenProjectBuilder;
+import org.universAAL.maven.treebuilder.DependencyTreeBuilder;
+import org.universAAL.maven.treebuilder.DependencyTreeCache;
 import org.universAAL.maven.treebuilder.ExecutionListCreator;
+import org.universAAL.maven.treebuilder.ResolutionSession;
+import org.universAAL.maven.treebuilder.ResolutionStats;
 
 /**
  * This mojo creates composite file (artifact.composite) for project in which it
@@ -80,6 +87,15 @@ public class UaalCompositeMojo extends AbstractMojo {
 	 */
 	private MavenProject project;
 
+	/**
+	 * The Maven Session Object.
+	 *
+	 * @parameter expression="${session}"
+	 * @required
+	 * @readonly
+	 */
+	private MavenSession session;
+
 	/**
 	 * @parameter default-value="${ignore.dep.conflict}"
 	 * @readonly
@@ -135,6 +151,56 @@ public class UaalCompositeMojo extends AbstractMojo {
 	 */
 	private StartSpec[] startArtifacts;
 
+	/**
+	 * Set this to "true" to reuse dependency trees resolved by previous builds.
+	 * Trees are cached in the local repository and reused as long as none of
+	 * the POMs involved in their resolution has changed.
+	 *
+	 * @parameter expression="${useTreeCache}" default-value="false"
+	 */
+	private boolean useTreeCache;
+
+	/**
+	 * Number of threads used for reading jars of artifacts of the composite.
+	 * Artifacts are resolved one by one. Composite is the same regardless of
+	 * this value.
+	 *
+	 * @parameter expression="${resolutionThreads}" default-value="1"
+	 */
+	private int resolutionThreads;
+
+	/**
+	 * Set this to "true" to write timers and counters of the resolution to
+	 * target/resolution-stats-composite.json, e.g. for tracking them between CI builds.
+	 *
+	 * @parameter expression="${dumpResolutionStats}" default-value="false"
+	 */
+	private boolean dumpResolutionStats;
+
+	/**
+	 * Start level of the first dependency wave written to
+	 * target/artifact.waves. Each next wave gets the next start level.
+	 *
+	 * @parameter expression="${waves.startLevel}" default-value="5"
+	 */
+	private int wavesStartLevel;
+
+	/**
+	 * Set this to "true" to delegate resolution to the resolution daemon
+	 * started with the daemon goal. Composite is resolved in the build if the
+	 * daemon is not running or it fails.
+	 *
+	 * @parameter expression="${uaal.daemon}" default-value="false"
+	 */
+	private boolean useDaemon;
+
+	/**
+	 * Port on which the resolution daemon listens.
+	 *
+	 * @parameter expression="${uaal.daemon.port}" default-value="7891"
+	 */
+	private int daemonPort;
+
 	/**
 	 * Default path to main composite.
 	 */
@@ -151,6 +217,31 @@ public class UaalCompositeMojo extends AbstractMojo {
 	 */
 	private static final String MAIN_VERSION = "target/artifacts.versions";
 
+	/**
+	 * Default path to the file in which fingerprint of inputs of generated
+	 * files is recorded.
+	 */
+	private static final String MAIN_FINGERPRINT = "target/artifact.composite.fingerprint";
+
+	/**
+	 * Default path to the execution plan which can be launched by the run
+	 * goal without resolution (see run.plan parameter). It is written only if
+	 * the resolution is reproducible, otherwise it is deleted.
+	 */
+	private static final String MAIN_PLAN = "target/artifact.plan";
+
+	/**
+	 * Default path to the composite in which execution list is grouped into
+	 * dependency waves mapped onto start levels.
+	 */
+	private static final String MAIN_WAVES = "target/artifact.waves";
+
+	/**
+	 * Default path to the file to which statistics of the resolution are
+	 * written.
+	 */
+	private static final String MAIN_STATS = "target/resolution-stats-composite.json";
+
 	public static final String MW_GROUP_ID = "org.universAAL.middleware";
 
 	/**
@@ -169,52 +260,6 @@ public class UaalCompositeMojo extends AbstractMojo {
 		return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(generatedCompositeFile, false)));
 	}
 
-	/**
-	 * Writes given list of mvn urls to given file.
-	 *
-	 * @param mvnUrls
-	 *            mvn urls
-	 * @param fileName
-	 *            file name
-	 * @throws IOException
-	 *             IOException
-	 */
-	private void writeListToFile(final List mvnUrls, final String fileName) throws IOException {
-		BufferedWriter compositeWriter = createOutputWriter(fileName);
-		boolean hasWrittenSth = false;
-		for (Object mvnUrl : mvnUrls) {
-			hasWrittenSth = true;
-			String mvnUrlStr = (String) mvnUrl;
-			if (mvnUrlStr.endsWith("/composite")) {
-				compositeWriter.write("scan-composite:" + mvnUrlStr + System.getProperty("line.separator"));
-			} else {
-				compositeWriter.write("scan-bundle:" + mvnUrlStr + System.getProperty("line.separator"));
-			}
-		}
-		if (!hasWrittenSth) {
-			compositeWriter.write("This is an empty dummy line in order to make" + "this file possible to deploy."
-					+ "Don't use this file at any time.");
-		}
-		compositeWriter.close();
-	}
-
-	private void writeArtifactsVersions(final List mvnUrls, final String fileName) throws IOException {
-		BufferedWriter compositeWriter = createOutputWriter(fileName);
-		for (Object mvnUrl : mvnUrls) {
-			String mvnUrlStr = (String) mvnUrl;
-			String[] mvnUrlElems = mvnUrlStr.split("/");
-			if (mvnUrlElems.length < 3) {
-				throw new RuntimeException("Bad mvnUrl: " + mvnUrlStr);
-			}
-			compositeWriter.write(mvnUrlElems[1]);
-			compositeWriter.write(".version");
-			compositeWriter.write("=");
-			compositeWriter.write(mvnUrlElems[2]);
-			compositeWriter.write(System.getProperty("line.separator"));
-		}
-		compositeWriter.close();
-	}
-
 	/**
 	 * Execute.
 	 *
@@ -243,50 +288,142 @@ public class UaalCompositeMojo extends AbstractMojo {
 				compositeWriter.close();
 				compositeReader.close();
 			} else {
-				String msg2 = System.getProperty("line.separator") + System.getProperty("line.separator")
-						+ "Creating MAIN composite file - output generated in " + MAIN_COMPOSITE + " and " + MAIN_DEPS
-						+ System.getProperty("line.separator") + System.getProperty("line.separator");
-				getLog().info(msg2);
 				ExecutionListCreator execListCreator = new ExecutionListCreator(getLog(), artifactMetadataSource,
 						artifactFactory, mavenProjectBuilder, localRepository, remoteRepositories, artifactResolver,
 						throwExceptionOnConflictStr, startArtifacts);
+				execListCreator.setResolutionSession(ResolutionSession.forSession(session, getLog(), localRepository));
+				execListCreator.setUseTreeCache(useTreeCache);
+				execListCreator.setResolutionThreads(resolutionThreads);
 				boolean mwcomp = useMwComposite;
 				// System.out.println(" -- useMwComposite: " + mwcomp);
 				if (MW_GROUP_ID.equals(project.getGroupId()))
 					mwcomp = false;
 				// System.out.println(" -- useMwComposite: " + mwcomp);
-				List<String> mvnUrls = execListCreator.createArtifactExecutionList(project, new HashSet<String>(),
-						false, mwcomp);
-				writeListToFile(mvnUrls, MAIN_COMPOSITE);
-				writeArtifactsVersions(mvnUrls, MAIN_VERSION);
-
-				List<String> mvnUrlsOnlyDeps = new ArrayList<String>(mvnUrls);
-				if (!mvnUrlsOnlyDeps.isEmpty()) {
-					mvnUrlsOnlyDeps.remove(mvnUrlsOnlyDeps.size() - 1);
+				CompositeFingerprint compositeFingerprint = new CompositeFingerprint(getLog(),
+						new File(baseDirectory, MAIN_FINGERPRINT));
+				String fingerprint = execListCreator.calculateFingerprint(project, false, mwcomp);
+				// start level of waves changes only the output, not the execution list
+				String outputsFingerprint = DependencyTreeCache.md5Hex(fingerprint + "\nwaves " + wavesStartLevel);
+				File[] outputs = { new File(baseDirectory, MAIN_COMPOSITE), new File(baseDirectory, MAIN_DEPS),
+						new File(baseDirectory, MAIN_VERSION), new File(baseDirectory, MAIN_PLAN),
+						new File(baseDirectory, MAIN_WAVES) };
+				if (compositeFingerprint.isUpToDate(outputsFingerprint, outputs)) {
+					getLog().info("MAIN composite file is up to date - " + MAIN_COMPOSITE + " and " + MAIN_DEPS
+							+ " are not generated again");
+					return;
+				}
+				compositeFingerprint.invalidate();
+				String msg2 = System.getProperty("line.separator") + System.getProperty("line.separator")
+						+ "Creating MAIN composite file - output generated in " + MAIN_COMPOSITE + " and " + MAIN_DEPS
+						+ System.getProperty("line.separator") + System.getProperty("line.separator");
+				getLog().info(msg2);
+				ResolutionDaemon.Response daemonResponse = null;
+				if (useDaemon) {
+					daemonResponse = new ResolutionDaemonClient(getLog(), daemonPort)
+							.send(createDaemonRequest(fingerprint, mwcomp));
+				}
+				List<String> mvnUrls;
+				List<Integer> waves;
+				boolean reproducible;
+				Set<File> involvedPoms;
+				if (daemonResponse != null) {
+					getLog().info("Composite resolved by uAAL resolution daemon");
+					mvnUrls = daemonResponse.mvnUrls;
+					waves = daemonResponse.waves;
+					reproducible = daemonResponse.reproducible;
+					involvedPoms = daemonResponse.involvedPoms;
+				} else {
+					mvnUrls = execListCreator.createArtifactExecutionList(project, new HashSet<String>(), false,
+							mwcomp);
+					waves = execListCreator.getLaunchWaves();
+					reproducible = execListCreator.isResolutionReproducible();
+					involvedPoms = execListCreator.getInvolvedPoms();
+				}
+				ResolutionStats stats = execListCreator.getResolutionStats();
+				long writingStart = ResolutionStats.start();
+				new CompositeWriter(new File(baseDirectory, MAIN_COMPOSITE), new File(baseDirectory, MAIN_DEPS),
+						new File(baseDirectory, MAIN_VERSION)).write(mvnUrls);
+				ExecutionPlan plan = new ExecutionPlan(getLog(), new File(baseDirectory, MAIN_PLAN));
+				if (reproducible) {
+					Set<File> planPoms = new LinkedHashSet<File>(involvedPoms);
+					if (project.getFile() != null) {
+						planPoms.add(project.getFile());
+					}
+					String separatedGroupIdsStr = project.getProperties()
+							.getProperty(DependencyTreeBuilder.PROP_SEPARATED_GROUP_IDS);
+					String planConfiguration = ExecutionPlan.configuration(
+							new String[] { ExecutionPlan.projectProvision(project) }, true,
+							separatedGroupIdsStr == null ? null : separatedGroupIdsStr.split(","), startArtifacts,
+							throwExceptionOnConflictStr);
+					plan.record(planConfiguration, mvnUrls, planPoms, artifactFactory, localRepository);
+				} else {
+					plan.discard();
 				}
-				writeListToFile(mvnUrlsOnlyDeps, MAIN_DEPS);
-
-				getLog().debug("");
-				getLog().debug(MAIN_COMPOSITE + ":");
-				getLog().debug("");
-				int x = 1;
-				for (String mvnUrl : mvnUrls) {
-					getLog().debug(String.format("%2d. %s", x++, mvnUrl));
+				new WavesWriter(new File(baseDirectory, MAIN_WAVES), wavesStartLevel).write(mvnUrls, waves);
+				stats.stop(ResolutionStats.FILE_WRITING, writingStart);
+
+				if (getLog().isDebugEnabled()) {
+					getLog().debug("");
+					getLog().debug(MAIN_COMPOSITE + ":");
+					getLog().debug("");
+					int x = 1;
+					for (String mvnUrl : mvnUrls) {
+						getLog().debug(String.format("%2d. %s", x++, mvnUrl));
+					}
+
+					getLog().debug("");
+					getLog().debug("");
+					getLog().debug(MAIN_DEPS + ":");
+					getLog().debug("");
+					for (x = 1; x < mvnUrls.size(); x++) {
+						getLog().debug(String.format("%2d. %s", x, mvnUrls.get(x - 1)));
+					}
 				}
 
-				getLog().debug("");
-				getLog().debug("");
-				getLog().debug(MAIN_DEPS + ":");
-				getLog().debug("");
-				x = 1;
-				for (String mvnUrl : mvnUrlsOnlyDeps) {
-					getLog().debug(String.format("%2d. %s", x++, mvnUrl));
+				// not recorded if version ranges or SNAPSHOTs are involved
+				if (reproducible) {
+					compositeFingerprint.record(outputsFingerprint, involvedPoms);
 				}
 
+				stats.logSummary(getLog());
+				if (dumpResolutionStats) {
+					stats.writeJson(new File(baseDirectory, MAIN_STATS), "composite", project.getId());
+				}
 			}
 		} catch (Exception e) {
 			getLog().error(e);
 			throw new RuntimeException(e);
 		}
 	}
+
+	/**
+	 * Creates request for the resolution daemon describing everything which
+	 * influences the composite.
+	 *
+	 * @param fingerprint
+	 *            fingerprint of the project calculated by the build
+	 * @param mwcomp
+	 *            whether mw composite is used
+	 * @return the request
+	 */
+	private ResolutionDaemon.Request createDaemonRequest(final String fingerprint, final boolean mwcomp) {
+		ResolutionDaemon.Request request = new ResolutionDaemon.Request();
+		request.goal = ResolutionDaemon.GOAL_COMPOSITE;
+		request.pomFile = project.getFile();
+		request.fingerprint = fingerprint;
+		request.useMwComposite = mwcomp;
+		request.throwExceptionOnConflictStr = throwExceptionOnConflictStr;
+		request.resolutionThreads = resolutionThreads;
+		request.useTreeCache = useTreeCache;
+		request.remoteRepositories.addAll(remoteRepositories);
+		if (startArtifacts != null) {
+			for (StartSpec startSpec : startArtifacts) {
+				request.startSpecs.add(startSpec);
+			}
+		}
+		for (Iterator i = project.getActiveProfiles().iterator(); i.hasNext();) {
+			request.activeProfiles.add(((Profile) i.next()).getId());
+		}
+		return request;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,176 @@
+/*
+See the NOTICE file distributed with this work for additional
+information regarding copyright ownership
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.universAAL.maven;
+
+import org.apache.maven.artifact.factory.ArtifactFactory;
+import org.apache.maven.artifact.metadata.ArtifactMetadataSource;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.repository.ArtifactRepositoryFactory;
+import org.apache.maven.artifact.repository.layout.ArtifactRepositoryLayout;
+import org.apache.maven.artifact.resolver.ArtifactResolver;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.project.MavenProjectBuilder;
+import org.codehaus.plexus.PlexusConstants;
+import org.codehaus.plexus.PlexusContainer;
+import org.codehaus.plexus.context.Context;
+import org.codehaus.plexus.context.ContextException;
+import org.codehaus.plexus.personality.plexus.lifecycle.phase.Contextualizable;
+import org.universAAL.maven.ResolutionDaemon.Request;
+
+/**
+ * This mojo starts the resolution daemon which resolves execution lists for
+ * composite and run goals executed with uaal.daemon=true. The daemon keeps
+ * POMs and bundle information of released artifacts between builds. It runs
+ * until it is stopped with uaal.daemon.stop=true.
+ *
+ * Remote repositories are checked for updates of SNAPSHOTs only once during
+ * lifetime of the daemon, restart it to pick up newly deployed SNAPSHOTs. With
+ * maven 3 also changes of SNAPSHOT POMs in the local repository are picked up
+ * only after a restart, because its project builder cache cannot be cleared.
+ *
+ * Clients authenticate with a token which the daemon writes to
+ * ~/.m2/uaal-resolution-daemon-PORT.token, readable only by the user who
+ * started it.
+ *
+ * @goal daemon
+ * @requiresProject false
+ */
+public class UaalDaemonMojo extends AbstractMojo implements Contextualizable {
+
+	/**
+	 * @component
+	 * @required
+	 * @readonly
+	 */
+	private ArtifactFactory artifactFactory;
+
+	/**
+	 * @component
+	 * @required
+	 * @readonly
+	 */
+	private ArtifactResolver artifactResolver;
+
+	/**
+	 * @component
+	 * @required
+	 * @readonly
+	 */
+	private ArtifactMetadataSource artifactMetadataSource;
+
+	/**
+	 * @component
+	 * @required
+	 * @readonly
+	 */
+	private MavenProjectBuilder mavenProjectBuilder;
+
+	/**
+	 * @component
+	 * @required
+	 * @readonly
+	 */
+	private ArtifactRepositoryFactory artifactRepositoryFactory;
+
+	/**
+	 * @component roleHint="default"
+	 * @required
+	 * @readonly
+	 */
+	private ArtifactRepositoryLayout artifactRepositoryLayout;
+
+	/**
+	 * Location of the local repository.
+	 *
+	 * @parameter expression="${localRepository}"
+	 * @readonly
+	 * @required
+	 */
+	private ArtifactRepository localRepository;
+
+	/**
+	 * The Maven Session Object.
+	 *
+	 * @parameter expression="${session}"
+	 * @required
+	 * @readonly
+	 */
+	private MavenSession session;
+
+	/**
+	 * Port on the loopback interface on which the daemon listens.
+	 *
+	 * @parameter expression="${uaal.daemon.port}" default-value="7891"
+	 */
+	private int port;
+
+	/**
+	 * Set this to "true" to stop the daemon running on the port instead of
+	 * starting a new one.
+	 *
+	 * @parameter expression="${uaal.daemon.stop}" default-value="false"
+	 */
+	private boolean stop;
+
+	/**
+	 * Plexus container.
+	 */
+	private PlexusContainer container;
+
+	/**
+	 * Contextualize.
+	 *
+	 * @param context
+	 *            context
+	 * @throws ContextException
+	 *             ContextException
+	 */
+	public final void contextualize(final Context context) throws ContextException {
+		container = (PlexusContainer) context.get(PlexusConstants.PLEXUS_KEY);
+	}
+
+	/**
+	 * Execute.
+	 *
+	 * @throws MojoExecutionException
+	 *             MojoExecutionException
+	 * @throws MojoFailureException
+	 *             MojoFailureException
+	 */
+	public final void execute() throws MojoExecutionException, MojoFailureException {
+		if (stop) {
+			Request request = new Request();
+			request.goal = ResolutionDaemon.GOAL_STOP;
+			if (new ResolutionDaemonClient(getLog(), port).send(request) != null) {
+				getLog().info("uAAL resolution daemon on port " + port + " stopped");
+			}
+			return;
+		}
+		try {
+			new ResolutionDaemon(getLog(), artifactMetadataSource, artifactFactory, mavenProjectBuilder,
+					localRepository, artifactResolver, artifactRepositoryFactory, artifactRepositoryLayout,
+					container, session.getSettings(), session.getExecutionProperties()).serve(port);
+		} catch (Exception e) {
+			getLog().error(e);
+			throw new RuntimeException(e);
+		}
+	}
+
+}
@@ -27,6 +27,7 @@ import static org.universAAL.maven.MyMojoExecutorV15.goal;
 import static org.universAAL.maven.MyMojoExecutorV15.name;
 import static org.universAAL.maven.MyMojoExecutorV15.plugin;
 
+import java.io.File;
 import java.util.List;
 
 import org.apache.maven.artifact.factory.ArtifactFactory;
@@ -47,6 +48,8 @@ import org.codehaus.plexus.context.ContextException;
 import org.codehaus.plexus.personality.plexus.lifecycle.phase.Contextualizable;
 import org.universAAL.maven.MyMojoExecutorV15.Element;
 import org.universAAL.maven.treebuilder.ExecutionListCreator;
+import org.universAAL.maven.treebuilder.ResolutionSession;
+import org.universAAL.maven.treebuilder.ResolutionStats;
 
 /**
  * This mojo creates composite file (artifact.composite) for project in which it
@@ -154,6 +157,18 @@ public class UaalRunnerMojo extends AbstractMojo implements Contextualizable {
 	 */
 	private String transitive;
 
+	/**
+	 * Execution plan written by the composite goal, e.g.
+	 * target/artifact.plan. If the plan is still valid its execution list is
+	 * launched and provisions are not resolved. The plan is used only if no
+	 * provision or only the project itself is provisioned transitively and
+	 * separatedGroupIds, startArtifacts and conflict handling are the same as
+	 * in the composite goal.
+	 *
+	 * @parameter expression="${run.plan}"
+	 */
+	private File plan;
+
 	/**
 	 * @parameter expression="${separatedGroupIds}"
 	 */
@@ -167,6 +182,39 @@ public class UaalRunnerMojo extends AbstractMojo implements Contextualizable {
 	 */
 	private StartSpec[] startArtifacts;
 
+	/**
+	 * Number of threads used for reading jars of artifacts of the execution
+	 * list. Artifacts are resolved one by one. Execution list is the same
+	 * regardless of this value.
+	 *
+	 * @parameter expression="${run.resolutionThreads}" default-value="1"
+	 */
+	private int resolutionThreads;
+
+	/**
+	 * Set this to "true" to write timers and counters of the resolution to
+	 * target/resolution-stats-run.json, e.g. for tracking them between CI builds.
+	 *
+	 * @parameter expression="${run.dumpResolutionStats}" default-value="false"
+	 */
+	private boolean dumpResolutionStats;
+
+	/**
+	 * Set this to "true" to delegate resolution to the resolution daemon
+	 * started with the daemon goal. Execution list is resolved in the build if
+	 * the daemon is not running or it fails.
+	 *
+	 * @parameter expression="${uaal.daemon}" default-value="false"
+	 */
+	private boolean useDaemon;
+
+	/**
+	 * Port on which the resolution daemon listens.
+	 *
+	 * @parameter expression="${uaal.daemon.port}" default-value="7891"
+	 */
+	private int daemonPort;
+
 	/**
 	 * Plexus container.
 	 */
@@ -197,12 +245,42 @@ public class UaalRunnerMojo extends AbstractMojo implements Contextualizable {
 			ExecutionListCreator execListCreator = new ExecutionListCreator(getLog(), artifactMetadataSource,
 					artifactFactory, mavenProjectBuilder, localRepository, remoteRepositories, artifactResolver,
 					throwExceptionOnConflictStr, startArtifacts);
+			execListCreator.setResolutionSession(ResolutionSession.forSession(session, getLog(), localRepository));
+			execListCreator.setResolutionThreads(resolutionThreads);
 
 			boolean defaultTransitive = true;
 			if ("false".equals(transitive)) {
 				defaultTransitive = false;
 			}
-			List mvnUrls = execListCreator.createArtifactExecutionList(provision, defaultTransitive, false);
+			List mvnUrls = null;
+			if (plan != null) {
+				String[] planProvisions = provision;
+				if (planProvisions == null || planProvisions.length == 0) {
+					planProvisions = new String[] { ExecutionPlan.projectProvision(project) };
+				}
+				mvnUrls = new ExecutionPlan(getLog(), plan).load(ExecutionPlan.configuration(planProvisions,
+						defaultTransitive, separatedGroupIds, startArtifacts, throwExceptionOnConflictStr));
+				if (mvnUrls != null) {
+					getLog().info("Launching execution plan " + plan);
+				}
+			}
+			if (mvnUrls == null && useDaemon) {
+				ResolutionDaemon.Response daemonResponse = new ResolutionDaemonClient(getLog(), daemonPort)
+						.send(createDaemonRequest(defaultTransitive));
+				if (daemonResponse != null) {
+					getLog().info("Execution list resolved by uAAL resolution daemon");
+					mvnUrls = daemonResponse.mvnUrls;
+				}
+			}
+			if (mvnUrls == null) {
+				mvnUrls = execListCreator.createArtifactExecutionList(provision, defaultTransitive, false);
+				ResolutionStats stats = execListCreator.getResolutionStats();
+				stats.logSummary(getLog());
+				if (dumpResolutionStats) {
+					stats.writeJson(new File(project.getBuild().getDirectory(), "resolution-stats-run.json"),
+							"run", project.getId());
+				}
+			}
 
 			Element[] mvnUrlElems = new Element[mvnUrls.size()];
 			int i = 0;
@@ -228,4 +306,32 @@ public class UaalRunnerMojo extends AbstractMojo implements Contextualizable {
 		}
 	}
 
+	/**
+	 * Creates request for the resolution daemon describing everything which
+	 * influences the execution list.
+	 *
+	 * @param defaultTransitive
+	 *            whether provisions are transitive by default
+	 * @return the request
+	 */
+	private ResolutionDaemon.Request createDaemonRequest(final boolean defaultTransitive) {
+		ResolutionDaemon.Request request = new ResolutionDaemon.Request();
+		request.goal = ResolutionDaemon.GOAL_RUN;
+		request.transitive = defaultTransitive;
+		request.throwExceptionOnConflictStr = throwExceptionOnConflictStr;
+		request.resolutionThreads = resolutionThreads;
+		request.remoteRepositories.addAll(remoteRepositories);
+		if (startArtifacts != null) {
+			for (StartSpec startSpec : startArtifacts) {
+				request.startSpecs.add(startSpec);
+			}
+		}
+		if (provision != null) {
+			for (String provisionStr : provision) {
+				request.provisions.add(provisionStr);
+			}
+		}
+		return request;
+	}
+
 }
@@ -38,6 +38,7 @@ import org.apache.maven.artifact.factory.ArtifactFactory;
 import org.apache.maven.artifact.metadata.ArtifactMetadataSource;
 import org.apache.maven.artifact.repository.ArtifactRepository;
 import org.apache.maven.artifact.resolver.ArtifactResolver;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.model.Dependency;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -46,6 +47,8 @@ import org.apache.maven.project.MavenProject;
 import org.apache.maven.project.MavenProjectBuilder;
 import org.universAAL.itests.conf.IntegrationTestConsts;
 import org.universAAL.maven.treebuilder.ExecutionListCreator;
+import org.universAAL.maven.treebuilder.ResolutionSession;
+import org.universAAL.maven.treebuilder.ResolutionStats;
 
 /**
  * This mojo creates composite file (artifact-test.composite) for project in
@@ -87,6 +90,15 @@ public class UaalTestMojo extends AbstractMojo {
 	 */
 	private MavenProject project;
 
+	/**
+	 * The Maven Session Object.
+	 *
+	 * @parameter expression="${session}"
+	 * @required
+	 * @readonly
+	 */
+	private MavenSession session;
+
 	/**
 	 * @parameter default-value="${ignore.dep.conflict}"
 	 * @readonly
@@ -151,6 +163,32 @@ public class UaalTestMojo extends AbstractMojo {
 	 */
 	private StartSpec[] startArtifacts;
 
+	/**
+	 * Set this to "true" to reuse dependency trees resolved by previous builds.
+	 * Trees are cached in the local repository and reused as long as none of
+	 * the POMs involved in their resolution has changed.
+	 *
+	 * @parameter expression="${useTreeCache}" default-value="false"
+	 */
+	private boolean useTreeCache;
+
+	/**
+	 * Number of threads used for reading jars of artifacts of the composite.
+	 * Artifacts are resolved one by one. Composite is the same regardless of
+	 * this value.
+	 *
+	 * @parameter expression="${resolutionThreads}" default-value="1"
+	 */
+	private int resolutionThreads;
+
+	/**
+	 * Set this to "true" to write timers and counters of the resolution to
+	 * target/resolution-stats-test.json, e.g. for tracking them between CI builds.
+	 *
+	 * @parameter expression="${dumpResolutionStats}" default-value="false"
+	 */
+	private boolean dumpResolutionStats;
+
 	/**
 	 * Execute.
 	 *
@@ -183,6 +221,9 @@ public class UaalTestMojo extends AbstractMojo {
 				ExecutionListCreator execListCreator = new ExecutionListCreator(getLog(), artifactMetadataSource,
 						artifactFactory, mavenProjectBuilder, localRepository, remoteRepositories, artifactResolver,
 						throwExceptionOnConflictStr, startArtifacts);
+				execListCreator.setResolutionSession(ResolutionSession.forSession(session, getLog(), localRepository));
+				execListCreator.setUseTreeCache(useTreeCache);
+				execListCreator.setResolutionThreads(resolutionThreads);
 				Set<String> separatedArtifactDepsOfRoot = new HashSet<String>();
 				List<String> mvnUrls = execListCreator.createArtifactExecutionList(project, separatedArtifactDepsOfRoot,
 						true, false);
@@ -192,6 +233,8 @@ public class UaalTestMojo extends AbstractMojo {
 					getLog().debug(String.format("%2d. %s", x++, mvnUrl));
 				}
 
+				ResolutionStats stats = execListCreator.getResolutionStats();
+				long writingStart = ResolutionStats.start();
 				File targetDir = new File(baseDirectory, "target");
 				targetDir.mkdirs();
 
@@ -215,6 +258,11 @@ public class UaalTestMojo extends AbstractMojo {
 					}
 					separatedArtifactDepsWriter.close();
 				}
+				stats.stop(ResolutionStats.FILE_WRITING, writingStart);
+				stats.logSummary(getLog());
+				if (dumpResolutionStats) {
+					stats.writeJson(new File(targetDir, "resolution-stats-test.json"), "test", project.getId());
+				}
 
 				try {
 					Artifact runDirArtifact = execListCreator
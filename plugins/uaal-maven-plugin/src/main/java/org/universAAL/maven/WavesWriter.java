@@ -0,0 +1,114 @@
+/*
+See the NOTICE file distributed with this work for additional
+information regarding copyright ownership
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.universAAL.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Writes execution list grouped into dependency waves (see
+ * LaunchOrderDependencyNodeVisitor). The output is a composite in which
+ * elements are ordered by wave and each wave is mapped onto its own start
+ * level, beginning with the given one. Start levels configured with
+ * StartSpecs take precedence. Composites (e.g. mw composite) are written
+ * without start level, their bundles keep own start levels. Thanks to that
+ * the OSGi container can install and start bundles of a wave concurrently.
+ */
+public class WavesWriter {
+
+	private File wavesFile;
+
+	private int firstStartLevel;
+
+	/**
+	 * Constructor of WavesWriter.
+	 *
+	 * @param wavesFile
+	 *            file to which waves are written
+	 * @param firstStartLevel
+	 *            start level of the first wave
+	 */
+	public WavesWriter(final File wavesFile, final int firstStartLevel) {
+		this.wavesFile = wavesFile;
+		this.firstStartLevel = firstStartLevel;
+	}
+
+	/**
+	 * Writes waves of given execution list.
+	 *
+	 * @param mvnUrls
+	 *            execution list
+	 * @param waves
+	 *            dependency waves of elements of the execution list
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public void write(final List<String> mvnUrls, final List<Integer> waves) throws IOException {
+		if (mvnUrls.size() != waves.size()) {
+			throw new IllegalArgumentException("Execution list has " + mvnUrls.size() + " elements but "
+					+ waves.size() + " waves");
+		}
+		int lastWave = 0;
+		for (Integer wave : waves) {
+			lastWave = Math.max(lastWave, wave);
+		}
+		File wavesTmp = CompositeWriter.createTempFile(wavesFile);
+		boolean written = false;
+		try {
+			Writer writer = CompositeWriter.createWriter(wavesTmp);
+			try {
+				for (int wave = 1; wave <= lastWave; wave++) {
+					for (int i = 0; i < mvnUrls.size(); i++) {
+						if (waves.get(i) == wave) {
+							writer.write(CompositeWriter
+									.compositeLine(withStartLevel(mvnUrls.get(i), firstStartLevel + wave - 1)));
+						}
+					}
+				}
+			} finally {
+				writer.close();
+			}
+			CompositeWriter.replace(wavesTmp, wavesFile);
+			written = true;
+		} finally {
+			if (!written) {
+				wavesTmp.delete();
+			}
+		}
+	}
+
+	/**
+	 * Appends start level to mvn url unless the url already has one or it
+	 * points to a composite.
+	 */
+	static String withStartLevel(final String mvnUrl, final int startLevel) {
+		if (mvnUrl.endsWith("/composite")) {
+			return mvnUrl;
+		}
+		int at = mvnUrl.indexOf('@');
+		if (at < 0) {
+			return mvnUrl + "@" + startLevel;
+		}
+		if (at + 1 < mvnUrl.length() && Character.isDigit(mvnUrl.charAt(at + 1))) {
+			return mvnUrl;
+		}
+		return mvnUrl.substring(0, at) + "@" + startLevel + mvnUrl.substring(at);
+	}
+
+}
@@ -0,0 +1,71 @@
+/*
+See the NOTICE file distributed with this work for additional
+information regarding copyright ownership
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.universAAL.maven.treebuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.maven.artifact.resolver.ResolutionNode;
+
+/**
+ * Index of artifacts already resolved by DependencyTreeBuilder, used for
+ * detecting duplicates and conflicts. Artifacts are indexed by a key which
+ * calculation algorithm is the same as the one present in calculateDepKey
+ * method.
+ *
+ * Whenever a node is resolved and an active node with the same key exists,
+ * one of these two nodes is disabled. Disabled nodes are never enabled again,
+ * therefore at most one node per key is active at any time and only this node
+ * has to be remembered. Nodes which were disabled for other reasons (e.g.
+ * because their parent was disabled) are treated as absent.
+ */
+class ConflictIndex {
+
+	private Map<Object, ResolutionNode> activeNodes = new HashMap<Object, ResolutionNode>();
+
+	/**
+	 * Returns active node resolved for given key.
+	 *
+	 * @param key
+	 *            key of the artifact.
+	 * @return active node or null if there is no such node.
+	 */
+	ResolutionNode getActive(final Object key) {
+		ResolutionNode node = activeNodes.get(key);
+		if (node != null && !node.isActive()) {
+			activeNodes.remove(key);
+			return null;
+		}
+		return node;
+	}
+
+	/**
+	 * Remembers resolved node. The node becomes the active node for its key
+	 * only if it was not disabled during conflict resolution.
+	 *
+	 * @param key
+	 *            key of the artifact.
+	 * @param node
+	 *            resolved node.
+	 */
+	void add(final Object key, final ResolutionNode node) {
+		if (node.isActive()) {
+			activeNodes.put(key, node);
+		}
+	}
+
+}
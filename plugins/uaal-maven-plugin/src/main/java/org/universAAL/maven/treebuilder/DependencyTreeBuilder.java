@@ -18,13 +18,14 @@
  */
 package org.universAAL.maven.treebuilder;
 
+import java.io.File;
+import java.io.Reader;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -52,12 +53,16 @@ import org.apache.maven.artifact.versioning.OverConstrainedVersionException;
 import org.apache.maven.artifact.versioning.VersionRange;
 import org.apache.maven.model.Dependency;
 import org.apache.maven.model.Exclusion;
+import org.apache.maven.model.Model;
 import org.apache.maven.model.Profile;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.project.MavenProjectBuilder;
 import org.apache.maven.project.ProjectBuildingException;
 import org.apache.maven.shared.dependency.tree.DependencyNode;
 import org.apache.maven.shared.dependency.tree.DependencyTreeBuilderException;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.ReaderFactory;
 import org.universAAL.maven.FilteringVisitorSupport;
 import org.universAAL.maven.UaalCompositeMojo;
 
@@ -114,6 +119,42 @@ public class DependencyTreeBuilder {
 
 	private String stringifiedRoot = null;
 
+	/**
+	 * Cache of already resolved trees. If it is null then trees are always
+	 * resolved.
+	 */
+	private DependencyTreeCache treeCache = null;
+
+	/**
+	 * POM files from the local repository which were used during resolution of
+	 * the tree.
+	 */
+	private Set<File> involvedPoms = new LinkedHashSet<File>();
+
+	/**
+	 * Indication whether version of any artifact in the tree was selected from
+	 * a version range. Such trees depend on the repository metadata and
+	 * therefore they are not cached.
+	 */
+	private boolean versionSelectedFromRange = false;
+
+	/**
+	 * Indication whether any artifact of the tree, any excluded core artifact
+	 * or any separated artifact is a SNAPSHOT.
+	 */
+	private boolean snapshotInvolved = false;
+
+	/**
+	 * Cache of maven projects built from POMs. Thanks to it each POM is built
+	 * only once although it is needed for every visit of its artifact.
+	 */
+	private PomProjectCache pomProjectCache = new PomProjectCache();
+
+	/**
+	 * Timers and counters of the resolution.
+	 */
+	private ResolutionStats stats = new ResolutionStats();
+
 	/**
 	 * Creates instance of DependencyTreeBuilder with needed parameters.
 	 *
@@ -232,6 +273,7 @@ public class DependencyTreeBuilder {
 			}
 			break;
 		case ResolutionListener.SELECT_VERSION_FROM_RANGE:
+			versionSelectedFromRange = true;
 			listener.selectVersionFromRange(node.getArtifact());
 			break;
 		case ResolutionListener.RESTRICT_RANGE:
@@ -478,8 +520,11 @@ public class DependencyTreeBuilder {
 							// go find the version
 							List versions = artifact.getAvailableVersions();
 							if (versions == null) {
+								long retrievalStart = ResolutionStats.start();
 								versions = source.retrieveAvailableVersions(artifact, localRepository,
 										childRemoteRepositories);
+								stats.stop(ResolutionStats.METADATA_RETRIEVAL, retrievalStart);
+								stats.increment(ResolutionStats.METADATA_LOOKUPS);
 								artifact.setAvailableVersions(versions);
 							}
 
@@ -538,7 +583,10 @@ public class DependencyTreeBuilder {
 					return true;
 				}
 
+				long retrievalStart = ResolutionStats.start();
 				ResolutionGroup rGroup = source.retrieve(artifact, localRepository, childRemoteRepositories);
+				stats.stop(ResolutionStats.METADATA_RETRIEVAL, retrievalStart);
+				stats.increment(ResolutionStats.METADATA_LOOKUPS);
 
 				// TODO might be better to have source.retrieve() throw
 				// a specific exception for this situation
@@ -626,10 +674,17 @@ public class DependencyTreeBuilder {
 							} else {
 								throw new IllegalStateException("Child version is not present");
 							}
+							/*
+							 * Only the artifact and repositories of the node
+							 * are needed later, the detached copy does not keep
+							 * the whole resolution tree reachable.
+							 */
+							ResolutionNode detachedNode = new ResolutionNode(child,
+									childNode.getRemoteRepositories());
 							if (this.stringifiedRoot.equals(FilteringVisitorSupport.stringify(parent))) {
-								this.separatedArtifactDepsOfRoot.add(childNode);
+								this.separatedArtifactDepsOfRoot.add(detachedNode);
 							}
-							listener.addExcludedCoreArtifact(childNode);
+							listener.addExcludedCoreArtifact(detachedNode);
 							return;
 						}
 					}
@@ -653,26 +708,89 @@ public class DependencyTreeBuilder {
 	}
 
 	/**
-	 * The heart of the tree builder. Recursively resolves provided artifact.
-	 * Output is passed to listeners, passed as argument, which are notified
-	 * about all dependencies detected in the tree. Resolving of each child node
-	 * is delegated to resolveChildNode method.
+	 * Frame of a node is created but the node was not tested against already
+	 * resolved artifacts yet.
+	 */
+	private static final int FRAME_ENTER = 0;
+
+	/**
+	 * Frame is iterating over regular (pom) dependencies of the node.
+	 */
+	private static final int FRAME_CHILDREN = 1;
+
+	/**
+	 * Frame is iterating over runtime dependencies of the node.
+	 */
+	private static final int FRAME_RUNTIME_CHILDREN = 2;
+
+	/**
+	 * The "children" field of ResolutionNode. It is looked up once and shared
+	 * because runtime dependencies are attached to every processed node.
+	 */
+	private static volatile Field resolutionNodeChildrenField = null;
+
+	/**
+	 * State of a single node on the work stack of resolveTree. It replaces
+	 * what used to be a stack frame of the recursive resolution: the node with
+	 * its repositories and separatedGroupIds plus the position of iteration
+	 * over node's children.
+	 */
+	private static final class TraversalFrame {
+
+		private final ResolutionNode node;
+
+		private final List remoteRepositories;
+
+		private final boolean transitive;
+
+		private final Set<String> separatedGroupIds;
+
+		private int state = FRAME_ENTER;
+
+		private Iterator children;
+
+		private Iterator runtimeDeps;
+
+		private List nodesChildren;
+
+		/**
+		 * Runtime dependency which subtree is currently resolved. It is
+		 * appended to children of the node once its subtree is finished.
+		 */
+		private ResolutionNode pendingRuntimeChild;
+
+		private TraversalFrame(final ResolutionNode node, final List remoteRepositories, final boolean transitive,
+				final Set<String> separatedGroupIds) {
+			this.node = node;
+			this.remoteRepositories = remoteRepositories;
+			this.transitive = transitive;
+			this.separatedGroupIds = separatedGroupIds;
+		}
+	}
+
+	/**
+	 * The heart of the tree builder. Resolves provided node and all its
+	 * transitive dependencies. Output is passed to listeners, passed as
+	 * argument, which are notified about all dependencies detected in the
+	 * tree. Resolving of each child node is delegated to resolveChildNode
+	 * method.
 	 *
-	 * @param originatingArtifact
-	 *            Rootnode of recursed subtree.
-	 * @param node
-	 *            Current node which is resolved.
+	 * Nodes are traversed depth first with an explicit work stack instead of
+	 * recursion so the depth of the tree is not limited by the thread's stack
+	 * and only one small frame is allocated per node. The order of events
+	 * passed to the listener is the same as in the depth first recursion.
+	 *
+	 * @param root
+	 *            Rootnode of the resolved tree.
 	 * @param resolvedArtifacts
-	 *            Map which is used for remembering already resolved artifacts.
-	 *            Artifacts are indexed by a key which calculation algorithm is
-	 *            the same as the one present in calculateDepKey method. Thanks
-	 *            to this map, duplicates and conflicts are detected and
-	 *            resolved.
+	 *            Index which is used for remembering already resolved
+	 *            artifacts. Artifacts are indexed by a key which calculation
+	 *            algorithm is the same as the one present in calculateDepKey
+	 *            method. Thanks to this index, duplicates and conflicts are
+	 *            detected and resolved.
 	 * @param managedVersions
 	 *            Information about dependency management extracted from the
 	 *            subtree rootnode - a maven project.
-	 * @param localRepository
-	 *            Local maven repository.
 	 * @param remoteRepositories
 	 *            Remote repositories provided by maven.
 	 * @param source
@@ -683,8 +801,59 @@ public class DependencyTreeBuilder {
 	 * @param listener
 	 *            Listener used for providing the output of the resolve process.
 	 * @param transitive
-	 *            If this parameter is false than the children of current node
+	 *            If this parameter is false than the children of the rootnode
 	 *            are not resolved.
+	 * @param separatedGroupIds
+	 *            GroupIds which artifacts are separated to .core and .osgi
+	 *            branches.
+	 */
+	private void resolveTree(final ResolutionNode root, final ConflictIndex resolvedArtifacts,
+			final ManagedVersionMap managedVersions, final List remoteRepositories, final ArtifactMetadataSource source,
+			final ArtifactFilter filter, final DependencyTreeResolutionListener listener, final boolean transitive,
+			final Set<String> separatedGroupIds) {
+		List<TraversalFrame> stack = new ArrayList<TraversalFrame>();
+		stack.add(new TraversalFrame(root, remoteRepositories, transitive, separatedGroupIds));
+		while (!stack.isEmpty()) {
+			TraversalFrame frame = stack.get(stack.size() - 1);
+			TraversalFrame next;
+			try {
+				next = advance(frame, resolvedArtifacts, managedVersions, source, filter, listener);
+			} catch (Exception ex) {
+				ResolutionNode node = frame.node;
+				StringBuilder msg = new StringBuilder();
+				msg.append(String.format("\nUnpredicted exception during dependency tree recursion at node %s",
+						FilteringVisitorSupport.stringify(node.getArtifact())));
+				msg.append("\nNode's parent tree:\n");
+				msg.append(printNodeParentsTree(node));
+				throw new IllegalStateException(msg.toString(), ex);
+			}
+			if (next != null) {
+				stack.add(next);
+			} else {
+				stack.remove(stack.size() - 1);
+			}
+		}
+	}
+
+	/**
+	 * Advances processing of the node on top of the work stack until either a
+	 * child which has to be resolved is found or the node is finished.
+	 *
+	 * @param frame
+	 *            Frame on top of the work stack.
+	 * @param resolvedArtifacts
+	 *            Index of already resolved artifacts.
+	 * @param managedVersions
+	 *            Information about dependency management.
+	 * @param source
+	 *            ArtifactMetadataSource provided by maven.
+	 * @param filter
+	 *            Filter used for unfiltering artifacts which should not be
+	 *            included in the dependency tree.
+	 * @param listener
+	 *            Listener used for providing the output of the resolve process.
+	 * @return Frame of the child which has to be pushed on the stack or null
+	 *         if the node is finished and its frame has to be popped.
 	 *
 	 * @throws CyclicDependencyException
 	 *             Exception thrown when cyclic dependency detected.
@@ -700,29 +869,177 @@ public class DependencyTreeBuilder {
 	 * @throws NoSuchFieldException
 	 *             Signals that the class doesn't have a field of a specified
 	 *             name.
-	 * @throws SecurityException
-	 *             Thrown by the security manager to indicate a security
-	 *             violation.
 	 * @throws IllegalAccessException
 	 *             When illegal access is performed in the curse of java
 	 *             reflection operations.
-	 * @throws IllegalArgumentException
-	 *             Thrown to indicate that an illegal or inappropriate argument
-	 *             has been passed.
 	 */
-	private void recurse(final Artifact originatingArtifact, final ResolutionNode node, final Map resolvedArtifacts,
-			final ManagedVersionMap managedVersions, final ArtifactRepository localRepository,
-			final List remoteRepositories, final ArtifactMetadataSource source, final ArtifactFilter filter,
-			final DependencyTreeResolutionListener listener, final boolean transitive,
-			final Set<String> separatedGroupIds) throws CyclicDependencyException, ArtifactResolutionException,
-			OverConstrainedVersionException, ArtifactMetadataRetrievalException, SecurityException,
-			NoSuchFieldException, IllegalArgumentException, IllegalAccessException {
+	private TraversalFrame advance(final TraversalFrame frame, final ConflictIndex resolvedArtifacts,
+			final ManagedVersionMap managedVersions, final ArtifactMetadataSource source, final ArtifactFilter filter,
+			final DependencyTreeResolutionListener listener) throws CyclicDependencyException,
+			ArtifactResolutionException, OverConstrainedVersionException, ArtifactMetadataRetrievalException,
+			NoSuchFieldException, IllegalAccessException {
+		ResolutionNode node = frame.node;
+		if (frame.state == FRAME_ENTER) {
+			if (!enterNode(node, resolvedArtifacts, managedVersions, frame.remoteRepositories, source, listener)) {
+				return null;
+			}
+			fireEvent(ResolutionListener.PROCESS_CHILDREN, listener, node);
+			if (!frame.transitive) {
+				fireEvent(ResolutionListener.FINISH_PROCESSING_CHILDREN, listener, node);
+				return null;
+			}
+			frame.children = node.getChildrenIterator();
+			frame.state = FRAME_CHILDREN;
+		}
+		Artifact parentArtifact = node.getArtifact();
+		if (frame.state == FRAME_CHILDREN) {
+			while (frame.children.hasNext()) {
+				ResolutionNode child = (ResolutionNode) frame.children.next();
+				if (!filter.include(child.getArtifact())) {
+					continue;
+				}
+				/*
+				 * rotgier: In case of regular dependencies provided scope is
+				 * simply ignored (artifact versions specified there conflict
+				 * with the ones of runtime deps)
+				 */
+				if (Artifact.SCOPE_PROVIDED.equals(child.getArtifact().getScope())) {
+					continue;
+				}
+				changeArtifactCoreToOsgi(node, child, frame.separatedGroupIds, listener);
+				boolean isContinue = resolveChildNode(node, child, filter, managedVersions, listener, source,
+						parentArtifact);
+				if (isContinue) {
+					continue;
+				}
+				return createChildFrame(frame, child);
+			}
+			frame.children = null;
+			frame.runtimeDeps = getRuntimeDeps(parentArtifact, managedVersions, frame.remoteRepositories).iterator();
+			Field childrenField = getChildrenField();
+			frame.nodesChildren = (List) childrenField.get(node);
+			/*
+			 * nodesChildren can be empty when dealing with parent POMs
+			 */
+			if (frame.nodesChildren == Collections.EMPTY_LIST) {
+				frame.nodesChildren = new ArrayList();
+				childrenField.set(node, frame.nodesChildren);
+			}
+			frame.state = FRAME_RUNTIME_CHILDREN;
+		}
+		if (frame.pendingRuntimeChild != null) {
+			ResolutionNode childRuntime = frame.pendingRuntimeChild;
+			frame.pendingRuntimeChild = null;
+			try {
+				frame.nodesChildren.add(childRuntime);
+			} catch (UnsupportedOperationException e) {
+				// nodesChildren is unmodifiable
+				ArrayList nNodesChildren = new ArrayList(frame.nodesChildren);
+				nNodesChildren.add(childRuntime);
+				frame.nodesChildren = nNodesChildren;
+				getChildrenField().set(node, frame.nodesChildren);
+			}
+		}
+		while (frame.runtimeDeps.hasNext()) {
+			DependencyNode runtimeDep = (DependencyNode) frame.runtimeDeps.next();
+			Artifact artifact = runtimeDep.getArtifact();
+			ResolutionNode childRuntime = new ResolutionNode(artifact, node.getRemoteRepositories(), node);
+			/*
+			 * rotgier: In case of runtime dependencies provided scope should be
+			 * allowed
+			 */
+			if (!filter.include(childRuntime.getArtifact())) {
+
+				if (!Artifact.SCOPE_PROVIDED.equals(artifact.getScope())) {
+					continue;
+				}
+			}
+			changeArtifactCoreToOsgi(node, childRuntime, frame.separatedGroupIds, listener);
+			boolean isContinue = resolveChildNode(node, childRuntime, filter, managedVersions, listener, source,
+					parentArtifact);
+			if (isContinue) {
+				continue;
+			}
+			TraversalFrame childFrame = createChildFrame(frame, childRuntime);
+			frame.pendingRuntimeChild = childRuntime;
+			return childFrame;
+		}
+		frame.runtimeDeps = null;
+		frame.nodesChildren = null;
+		fireEvent(ResolutionListener.FINISH_PROCESSING_CHILDREN, listener, node);
+		return null;
+	}
+
+	/**
+	 * Creates frame for the child which children have to be resolved. The
+	 * separatedGroupIds of the parent are extended with the ones declared by
+	 * the child. If the child declares nothing new then the parent's set is
+	 * shared because sets of separatedGroupIds are never modified.
+	 *
+	 * @param parentFrame
+	 *            Frame of the parent node.
+	 * @param child
+	 *            Child node.
+	 * @return Frame of the child.
+	 */
+	private TraversalFrame createChildFrame(final TraversalFrame parentFrame, final ResolutionNode child) {
+		List<String> extractedSeparatedGroupIds = extractSeparatedGroupIds(child.getArtifact(),
+				parentFrame.remoteRepositories);
+		Set<String> combinedSeparatedGroupIds = parentFrame.separatedGroupIds;
+		if (!combinedSeparatedGroupIds.containsAll(extractedSeparatedGroupIds)) {
+			combinedSeparatedGroupIds = new HashSet<String>(parentFrame.separatedGroupIds);
+			combinedSeparatedGroupIds.addAll(extractedSeparatedGroupIds);
+		}
+		return new TraversalFrame(child, child.getRemoteRepositories(), true, combinedSeparatedGroupIds);
+	}
+
+	/**
+	 * Returns the "children" field of ResolutionNode made accessible.
+	 *
+	 * @return The "children" field.
+	 * @throws NoSuchFieldException
+	 *             Signals that ResolutionNode doesn't have the field.
+	 */
+	private static Field getChildrenField() throws NoSuchFieldException {
+		Field childrenField = resolutionNodeChildrenField;
+		if (childrenField == null) {
+			childrenField = ResolutionNode.class.getDeclaredField("children");
+			childrenField.setAccessible(true);
+			resolutionNodeChildrenField = childrenField;
+		}
+		return childrenField;
+	}
+
+	/**
+	 * Tests the node against already resolved artifacts, mediates version
+	 * conflicts and notifies the listener that the artifact is included.
+	 *
+	 * @param node
+	 *            Node which is resolved.
+	 * @param resolvedArtifacts
+	 *            Index of already resolved artifacts.
+	 * @param managedVersions
+	 *            Information about dependency management.
+	 * @param remoteRepositories
+	 *            Remote repositories used for resolving of the node.
+	 * @param source
+	 *            ArtifactMetadataSource provided by maven.
+	 * @param listener
+	 *            Listener used for providing the output of the resolve process.
+	 * @return True if children of the node have to be processed.
+	 *
+	 * @throws OverConstrainedVersionException
+	 *             Occurs when ranges exclude each other and no valid value
+	 *             remains.
+	 * @throws ArtifactMetadataRetrievalException
+	 *             Error while retrieving repository metadata from the
+	 *             repository.
+	 */
+	private boolean enterNode(final ResolutionNode node, final ConflictIndex resolvedArtifacts,
+			final ManagedVersionMap managedVersions, final List remoteRepositories, final ArtifactMetadataSource source,
+			final DependencyTreeResolutionListener listener)
+			throws OverConstrainedVersionException, ArtifactMetadataRetrievalException {
 		// check for MW bundle; return if a mw bundle
-		boolean out = false;
-		// System.out.println(" --oa " + originatingArtifact.getArtifactId());
-		if (out)
-			System.out.println(
-					" --node " + node.getArtifact().getArtifactId() + "    " + node.getArtifact().getGroupId());
 		if (useMwComposite && UaalCompositeMojo.MW_GROUP_ID.equals(node.getArtifact().getGroupId())) {
 			if (!node.getArtifact().getArtifactId().contains("karaf.feature")) {
 				String thisVersion = node.getArtifact().getVersion();
@@ -734,243 +1051,143 @@ public class DependencyTreeBuilder {
 								"The dependencies have two different version of middleware bundles: " + mwVersion
 										+ " and " + thisVersion);
 				}
-				if (out)
-					System.out.println(" -- return");
-				if (out)
-					System.out.println();
-				return;
-			} else {
-				if (out)
-					System.out.println(" -- node contains karaf.feature");
+				return false;
 			}
 		}
-		if (out)
-			System.out.println();
 
-		// no MW bundle -> go on with recurse
-		try {
+		// no MW bundle -> go on with resolution
+		fireEvent(ResolutionListener.TEST_ARTIFACT, listener, node);
+		Object key = node.getKey();
 
-			fireEvent(ResolutionListener.TEST_ARTIFACT, listener, node);
-			Object key = node.getKey();
+		// TODO: Does this check need to happen here? Had to add the same
+		// call
+		// below when we iterate on child nodes -- will that suffice?
+		if (managedVersions.containsKey(key)) {
+			manageArtifact(node, managedVersions);
+		}
 
-			// TODO: Does this check need to happen here? Had to add the same
-			// call
-			// below when we iterate on child nodes -- will that suffice?
-			if (managedVersions.containsKey(key)) {
-				manageArtifact(node, managedVersions);
+		ResolutionNode previous = resolvedArtifacts.getActive(key);
+		if (previous != null) {
+			long mediationStart = ResolutionStats.start();
+			if (!String.valueOf(previous.getArtifact().getVersion())
+					.equals(String.valueOf(node.getArtifact().getVersion()))) {
+				stats.increment(ResolutionStats.CONFLICTS);
 			}
-
-			List previousNodes = (List) resolvedArtifacts.get(key);
-			if (previousNodes != null) {
-				for (Iterator i = previousNodes.iterator(); i.hasNext();) {
-					ResolutionNode previous = (ResolutionNode) i.next();
-
-					if (previous.isActive()) {
-						// Version mediation
-						VersionRange previousRange = previous.getArtifact().getVersionRange();
-						VersionRange currentRange = node.getArtifact().getVersionRange();
-
-						if (previousRange != null && currentRange != null) {
-							// TODO: shouldn't need to double up on this work,
-							// only
-							// done for simplicity of handling recommended
-							// version but the restriction is identical
-							VersionRange newRange = previousRange.restrict(currentRange);
-							// TODO: ick. this forces the OCE that should have
-							// come
-							// from the previous call. It is still correct
-							if (newRange.isSelectedVersionKnown(previous.getArtifact())) {
-								fireEvent(ResolutionListener.RESTRICT_RANGE, listener, node, previous, newRange);
-							}
-							previous.getArtifact().setVersionRange(newRange);
-							node.getArtifact().setVersionRange(currentRange.restrict(previousRange));
-
-							// Select an appropriate available version from the
-							// (now
-							// restricted) range
-							// Note this version was selected before to get the
-							// appropriate POM
-							// But it was reset by the call to setVersionRange
-							// on
-							// restricting the version
-							ResolutionNode[] resetNodes = { previous, node };
-							for (int j = 0; j < 2; j++) {
-								Artifact resetArtifact = resetNodes[j].getArtifact();
-
-								// MNG-2123: if the previous node was not a
-								// range,
-								// then it wouldn't have any available
-								// versions. We just clobbered the selected
-								// version
-								// above. (why? i have no idea.)
-								// So since we are here and this is ranges we
-								// must
-								// go figure out the version (for a third
-								// time...)
-								if (resetArtifact.getVersion() == null && resetArtifact.getVersionRange() != null) {
-
-									// go find the version. This is a total
-									// hack.
-									// See previous comment.
-									List versions = resetArtifact.getAvailableVersions();
-									if (versions == null) {
-										try {
-											versions = source.retrieveAvailableVersions(resetArtifact, localRepository,
-													remoteRepositories);
-											resetArtifact.setAvailableVersions(versions);
-										} catch (ArtifactMetadataRetrievalException e) {
-											resetArtifact.setDependencyTrail(node.getDependencyTrail());
-											throw e;
-										}
-									}
-									// end hack
-
-									// MNG-2861: match version can return null
-									ArtifactVersion selectedVersion = resetArtifact.getVersionRange()
-											.matchVersion(resetArtifact.getAvailableVersions());
-									if (selectedVersion != null) {
-										resetArtifact.selectVersion(selectedVersion.toString());
-									} else {
-										throw new OverConstrainedVersionException(
-												" Unable to find a version in " + resetArtifact.getAvailableVersions()
-														+ " to match the range " + resetArtifact.getVersionRange(),
-												resetArtifact);
-									}
-									fireEvent(ResolutionListener.SELECT_VERSION_FROM_RANGE, listener, resetNodes[j]);
-								}
+			// Version mediation
+			VersionRange previousRange = previous.getArtifact().getVersionRange();
+			VersionRange currentRange = node.getArtifact().getVersionRange();
+
+			if (previousRange != null && currentRange != null) {
+				// TODO: shouldn't need to double up on this work,
+				// only
+				// done for simplicity of handling recommended
+				// version but the restriction is identical
+				VersionRange newRange = previousRange.restrict(currentRange);
+				// TODO: ick. this forces the OCE that should have
+				// come
+				// from the previous call. It is still correct
+				if (newRange.isSelectedVersionKnown(previous.getArtifact())) {
+					fireEvent(ResolutionListener.RESTRICT_RANGE, listener, node, previous, newRange);
+				}
+				previous.getArtifact().setVersionRange(newRange);
+				node.getArtifact().setVersionRange(currentRange.restrict(previousRange));
+
+				// Select an appropriate available version from the
+				// (now
+				// restricted) range
+				// Note this version was selected before to get the
+				// appropriate POM
+				// But it was reset by the call to setVersionRange
+				// on
+				// restricting the version
+				ResolutionNode[] resetNodes = { previous, node };
+				for (int j = 0; j < 2; j++) {
+					Artifact resetArtifact = resetNodes[j].getArtifact();
+
+					// MNG-2123: if the previous node was not a
+					// range,
+					// then it wouldn't have any available
+					// versions. We just clobbered the selected
+					// version
+					// above. (why? i have no idea.)
+					// So since we are here and this is ranges we
+					// must
+					// go figure out the version (for a third
+					// time...)
+					if (resetArtifact.getVersion() == null && resetArtifact.getVersionRange() != null) {
+
+						// go find the version. This is a total
+						// hack.
+						// See previous comment.
+						List versions = resetArtifact.getAvailableVersions();
+						if (versions == null) {
+							try {
+								long retrievalStart = ResolutionStats.start();
+								versions = source.retrieveAvailableVersions(resetArtifact, localRepository,
+										remoteRepositories);
+								stats.stop(ResolutionStats.METADATA_RETRIEVAL, retrievalStart);
+								stats.increment(ResolutionStats.METADATA_LOOKUPS);
+								resetArtifact.setAvailableVersions(versions);
+							} catch (ArtifactMetadataRetrievalException e) {
+								resetArtifact.setDependencyTrail(node.getDependencyTrail());
+								throw e;
 							}
 						}
+						// end hack
 
-						// Conflict Resolution
-						// TODO: use as conflict resolver(s), chain
-
-						// TODO: should this be part of mediation?
-						// previous one is more dominant
-						ResolutionNode nearest;
-						ResolutionNode farthest;
-						if (previous.getDepth() <= node.getDepth()) {
-							nearest = previous;
-							farthest = node;
+						// MNG-2861: match version can return null
+						ArtifactVersion selectedVersion = resetArtifact.getVersionRange()
+								.matchVersion(resetArtifact.getAvailableVersions());
+						if (selectedVersion != null) {
+							resetArtifact.selectVersion(selectedVersion.toString());
 						} else {
-							nearest = node;
-							farthest = previous;
-						}
-
-						if (checkScopeUpdate(farthest, nearest)) {
-							// if we need to update scope of nearest to use
-							// farthest
-							// scope, use the nearest version, but farthest
-							// scope
-							nearest.disable();
-							farthest.getArtifact().setVersion(nearest.getArtifact().getVersion());
-							fireEvent(ResolutionListener.OMIT_FOR_NEARER, listener, nearest, farthest);
-						} else {
-							farthest.disable();
-							fireEvent(ResolutionListener.OMIT_FOR_NEARER, listener, farthest, nearest);
+							throw new OverConstrainedVersionException(
+									" Unable to find a version in " + resetArtifact.getAvailableVersions()
+											+ " to match the range " + resetArtifact.getVersionRange(),
+									resetArtifact);
 						}
+						fireEvent(ResolutionListener.SELECT_VERSION_FROM_RANGE, listener, resetNodes[j]);
 					}
 				}
-			} else {
-				previousNodes = new ArrayList();
-				resolvedArtifacts.put(key, previousNodes);
 			}
-			previousNodes.add(node);
 
-			if (node.isActive()) {
-				fireEvent(ResolutionListener.INCLUDE_ARTIFACT, listener, node);
+			// Conflict Resolution
+			// TODO: use as conflict resolver(s), chain
+
+			// TODO: should this be part of mediation?
+			// previous one is more dominant
+			ResolutionNode nearest;
+			ResolutionNode farthest;
+			if (previous.getDepth() <= node.getDepth()) {
+				nearest = previous;
+				farthest = node;
+			} else {
+				nearest = node;
+				farthest = previous;
 			}
 
-			// don't pull in the transitive deps of a system-scoped dependency.
-			if (node.isActive() && !Artifact.SCOPE_SYSTEM.equals(node.getArtifact().getScope())) {
-				fireEvent(ResolutionListener.PROCESS_CHILDREN, listener, node);
-				if (transitive) {
-					Artifact parentArtifact = node.getArtifact();
-					for (Iterator i = node.getChildrenIterator(); i.hasNext();) {
-						ResolutionNode child = (ResolutionNode) i.next();
-						if (!filter.include(child.getArtifact())) {
-							continue;
-						}
-						/*
-						 * rotgier: In case of regular dependencies provided
-						 * scope is simply ignored (artifact versions specified
-						 * there conflict with the ones of runtime deps)
-						 */
-						if (Artifact.SCOPE_PROVIDED.equals(child.getArtifact().getScope())) {
-							continue;
-						}
-						changeArtifactCoreToOsgi(node, child, separatedGroupIds, listener);
-						boolean isContinue = resolveChildNode(node, child, filter, managedVersions, listener, source,
-								parentArtifact);
-						if (isContinue) {
-							continue;
-						}
-						List<String> extractedSeparatedGroupIds = extractSeparatedGroupIds(child.getArtifact(),
-								remoteRepositories);
-						Set<String> combinedSeparatedGroupIds = new HashSet<String>(separatedGroupIds);
-						combinedSeparatedGroupIds.addAll(extractedSeparatedGroupIds);
-						recurse(originatingArtifact, child, resolvedArtifacts, managedVersions, localRepository,
-								child.getRemoteRepositories(), source, filter, listener, true,
-								combinedSeparatedGroupIds);
-					}
-					List runtimeDeps = getRuntimeDeps(node.getArtifact(), managedVersions, remoteRepositories);
-					Field childrenField = node.getClass().getDeclaredField("children");
-					childrenField.setAccessible(true);
-					List nodesChildren = (List) childrenField.get(node);
-					/*
-					 * nodesChildren can be empty when dealing with parent POMs
-					 */
-					if (nodesChildren == Collections.EMPTY_LIST) {
-						nodesChildren = new ArrayList();
-						childrenField.set(node, nodesChildren);
-					}
-					for (Object runtimeDepObj : runtimeDeps) {
-						DependencyNode runtimeDep = (DependencyNode) runtimeDepObj;
-						Artifact artifact = runtimeDep.getArtifact();
-						ResolutionNode childRuntime = new ResolutionNode(artifact, node.getRemoteRepositories(), node);
-						/*
-						 * rotgier: In case of runtime dependencies provided
-						 * scope should be allowed
-						 */
-						if (!filter.include(childRuntime.getArtifact())) {
-
-							if (!Artifact.SCOPE_PROVIDED.equals(artifact.getScope())) {
-								continue;
-							}
-						}
-						changeArtifactCoreToOsgi(node, childRuntime, separatedGroupIds, listener);
-						boolean isContinue = resolveChildNode(node, childRuntime, filter, managedVersions, listener,
-								source, parentArtifact);
-						if (isContinue) {
-							continue;
-						}
-						List<String> extractedSeparatedGroupIds = extractSeparatedGroupIds(childRuntime.getArtifact(),
-								remoteRepositories);
-						Set<String> combinedSeparatedGroupIds = new HashSet<String>(separatedGroupIds);
-						combinedSeparatedGroupIds.addAll(extractedSeparatedGroupIds);
-						recurse(originatingArtifact, childRuntime, resolvedArtifacts, managedVersions, localRepository,
-								childRuntime.getRemoteRepositories(), source, filter, listener, true,
-								combinedSeparatedGroupIds);
-						try {
-							nodesChildren.add(childRuntime);
-						} catch (UnsupportedOperationException e) {
-							// nodesChildren is unmodifiable
-							ArrayList nNodesChildren = new ArrayList(nodesChildren);
-							nNodesChildren.add(childRuntime);
-							nodesChildren = nNodesChildren;
-							childrenField.set(node, nodesChildren);
-						}
-					}
-				}
-				fireEvent(ResolutionListener.FINISH_PROCESSING_CHILDREN, listener, node);
+			if (checkScopeUpdate(farthest, nearest)) {
+				// if we need to update scope of nearest to use
+				// farthest
+				// scope, use the nearest version, but farthest
+				// scope
+				nearest.disable();
+				farthest.getArtifact().setVersion(nearest.getArtifact().getVersion());
+				fireEvent(ResolutionListener.OMIT_FOR_NEARER, listener, nearest, farthest);
+			} else {
+				farthest.disable();
+				fireEvent(ResolutionListener.OMIT_FOR_NEARER, listener, farthest, nearest);
 			}
-		} catch (Exception ex) {
-			StringBuilder msg = new StringBuilder();
-			msg.append(String.format("\nUnpredicted exception during dependency tree recursion at node %s",
-					FilteringVisitorSupport.stringify(node.getArtifact())));
-			msg.append("\nNode's parent tree:\n");
-			msg.append(printNodeParentsTree(node));
-			throw new IllegalStateException(msg.toString(), ex);
+			stats.stop(ResolutionStats.CONFLICT_RESOLUTION, mediationStart);
+		}
+		resolvedArtifacts.add(key, node);
+
+		if (node.isActive()) {
+			fireEvent(ResolutionListener.INCLUDE_ARTIFACT, listener, node);
 		}
+
+		// don't pull in the transitive deps of a system-scoped dependency.
+		return node.isActive() && !Artifact.SCOPE_SYSTEM.equals(node.getArtifact().getScope());
 	}
 
 	/**
@@ -1048,7 +1265,7 @@ public class DependencyTreeBuilder {
 	 * Artifact with "core" suffix not always has to be present. It is assumed
 	 * that if artifact with "osgi" suffix has a "core" counterpart than it is
 	 * always specified as its direct dependency. When an artifact with
-	 * separatedGroupId is encountered it is treated in the recurse method in
+	 * separatedGroupId is encountered it is treated in the resolveTree method in
 	 * the following way:
 	 * <ul>
 	 * <li>if it is "core" artifact and it is beginning of the method than
@@ -1098,16 +1315,166 @@ public class DependencyTreeBuilder {
 	 */
 	private List<String> extractSeparatedGroupIds(final Artifact artifact, final List remoteRepositories) {
 		try {
-			Artifact pomArtifact = artifactFactory.createArtifact(artifact.getGroupId(), artifact.getArtifactId(),
-					artifact.getVersion(), "", "pom");
-			MavenProject pomProject = mavenProjectBuilder.buildFromRepository(pomArtifact, remoteRepositories,
-					localRepository);
+			MavenProject pomProject = buildPomProject(artifact, remoteRepositories);
 			return extractSeparatedGroupIds(pomProject);
 		} catch (ProjectBuildingException e) {
 			throw new RuntimeException(e);
 		}
 	}
 
+	/**
+	 * Builds maven project of POM related to given artifact. The POM is
+	 * resolved from the repositories unless it is already present in
+	 * pomProjectCache. POM file of the project, POM files of its parents and
+	 * of the BOMs they import are remembered as involved in the resolution.
+	 *
+	 * @param artifact
+	 *            Artifact which POM should be built.
+	 * @param remoteRepositories
+	 *            Remote maven repositories used for resolving of passed
+	 *            artifact.
+	 * @return Built maven project.
+	 * @throws ProjectBuildingException
+	 *             Signals problem with building the project.
+	 */
+	private MavenProject buildPomProject(final Artifact artifact, final List remoteRepositories)
+			throws ProjectBuildingException {
+		Artifact pomArtifact = artifactFactory.createArtifact(artifact.getGroupId(), artifact.getArtifactId(),
+				artifact.getVersion(), "", "pom");
+		long buildStart = ResolutionStats.start();
+		MavenProject pomProject = pomProjectCache.buildFromRepository(mavenProjectBuilder, pomArtifact,
+				remoteRepositories, localRepository, stats);
+		stats.stop(ResolutionStats.POM_BUILDING, buildStart);
+		addInvolvedPoms(pomProject);
+		return pomProject;
+	}
+
+	/**
+	 * Remembers POM file of given project, POM files of its parents and POM
+	 * files of BOMs imported by any of them as involved in the resolution.
+	 *
+	 * @param pomProject
+	 *            The project.
+	 */
+	private void addInvolvedPoms(final MavenProject pomProject) {
+		for (MavenProject project = pomProject; project != null; project = project.getParent()) {
+			involvedPoms.add(pomFile(project));
+			addImportedPoms(project.getOriginalModel(), project.getProperties());
+		}
+	}
+
+	/**
+	 * Remembers POM files of BOMs imported in dependencyManagement of given
+	 * model as involved in the resolution. BOMs imported by these BOMs are
+	 * remembered as well. Imported dependencies are not present in the
+	 * effective model, therefore the original model is examined and simple
+	 * expressions in coordinates are interpolated.
+	 *
+	 * @param model
+	 *            Original (not interpolated) model of a POM.
+	 * @param properties
+	 *            Properties used for interpolation of the coordinates.
+	 */
+	private void addImportedPoms(final Model model, final Properties properties) {
+		if (model == null || model.getDependencyManagement() == null) {
+			return;
+		}
+		for (Object depObj : model.getDependencyManagement().getDependencies()) {
+			Dependency dep = (Dependency) depObj;
+			if (!Artifact.SCOPE_IMPORT.equals(dep.getScope()) || !"pom".equals(dep.getType())) {
+				continue;
+			}
+			File bomFile = pomFile(interpolate(dep.getGroupId(), model, properties),
+					interpolate(dep.getArtifactId(), model, properties), interpolate(dep.getVersion(), model, properties));
+			if (involvedPoms.add(bomFile) && bomFile.isFile()) {
+				Model bomModel;
+				try {
+					Reader reader = ReaderFactory.newXmlReader(bomFile);
+					try {
+						bomModel = new MavenXpp3Reader().read(reader, false);
+					} finally {
+						IOUtil.close(reader);
+					}
+				} catch (Exception e) {
+					// the BOM itself is tracked, only its imports are unknown
+					continue;
+				}
+				addImportedPoms(bomModel, bomModel.getProperties());
+			}
+		}
+	}
+
+	/**
+	 * Replaces ${...} expressions in given value by project coordinates or
+	 * properties. Expressions which cannot be resolved are left untouched.
+	 *
+	 * @param value
+	 *            The value.
+	 * @param model
+	 *            Model which coordinates are used.
+	 * @param properties
+	 *            Properties which are used.
+	 * @return the interpolated value.
+	 */
+	private static String interpolate(final String value, final Model model, final Properties properties) {
+		if (value == null || value.indexOf("${") == -1) {
+			return value;
+		}
+		StringBuilder sb = new StringBuilder();
+		int pos = 0;
+		int start;
+		while ((start = value.indexOf("${", pos)) != -1) {
+			int end = value.indexOf('}', start);
+			if (end == -1) {
+				break;
+			}
+			String expression = value.substring(start + 2, end);
+			String resolved;
+			if ("project.version".equals(expression) || "pom.version".equals(expression)
+					|| "version".equals(expression)) {
+				resolved = model.getVersion() != null ? model.getVersion()
+						: model.getParent() != null ? model.getParent().getVersion() : null;
+			} else if ("project.groupId".equals(expression) || "pom.groupId".equals(expression)
+					|| "groupId".equals(expression)) {
+				resolved = model.getGroupId() != null ? model.getGroupId()
+						: model.getParent() != null ? model.getParent().getGroupId() : null;
+			} else {
+				resolved = properties == null ? null : properties.getProperty(expression);
+			}
+			sb.append(value, pos, start).append(resolved != null ? resolved : value.substring(start, end + 1));
+			pos = end + 1;
+		}
+		return sb.append(value.substring(pos)).toString();
+	}
+
+	/**
+	 * Gets location of the POM file of given project in the local repository.
+	 *
+	 * @param project
+	 *            The project.
+	 * @return the POM file (it does not have to exist).
+	 */
+	private File pomFile(final MavenProject project) {
+		return pomFile(project.getGroupId(), project.getArtifactId(), project.getVersion());
+	}
+
+	/**
+	 * Gets location of the POM file with given coordinates in the local
+	 * repository.
+	 *
+	 * @param groupId
+	 *            Group id of the POM.
+	 * @param artifactId
+	 *            Artifact id of the POM.
+	 * @param version
+	 *            Version of the POM.
+	 * @return the POM file (it does not have to exist).
+	 */
+	private File pomFile(final String groupId, final String artifactId, final String version) {
+		Artifact pomArtifact = artifactFactory.createProjectArtifact(groupId, artifactId, version);
+		return new File(localRepository.getBasedir(), localRepository.pathOf(pomArtifact));
+	}
+
 	/**
 	 * Gets list of DependencyNode
 	 *
@@ -1171,10 +1538,7 @@ public class DependencyTreeBuilder {
 			final List remoteRepositories) {
 		try {
 			List runtimeDeps = new ArrayList();
-			Artifact pomArtifact = artifactFactory.createArtifact(nodeArtifact.getGroupId(),
-					nodeArtifact.getArtifactId(), nodeArtifact.getVersion(), "", "pom");
-			MavenProject pomProject = mavenProjectBuilder.buildFromRepository(pomArtifact, remoteRepositories,
-					localRepository);
+			MavenProject pomProject = buildPomProject(nodeArtifact, remoteRepositories);
 			List profiles = pomProject.getModel().getProfiles();
 			if (profiles != null) {
 				for (Object profileObj : profiles) {
@@ -1243,11 +1607,24 @@ public class DependencyTreeBuilder {
 			throws DependencyTreeBuilderException, ArtifactMetadataRetrievalException,
 			InvalidVersionSpecificationException, SecurityException, NoSuchFieldException, IllegalArgumentException,
 			IllegalAccessException {
+		String cacheKey = null;
+		if (treeCache != null) {
+			cacheKey = DependencyTreeCache.calculateKey(projectDescs, includeTestRuntimes, useMwComposite);
+			DependencyTreeCache.CachedTree cachedTree = treeCache.load(cacheKey, projectDescs);
+			if (cachedTree != null) {
+				mwVersion = cachedTree.mwVersion;
+				separatedArtifactDepsOfRoot = cachedTree.separatedArtifactDepsOfRoot;
+				snapshotInvolved = DependencyTreeCache.containsSnapshot(cachedTree);
+				involvedPoms.addAll(cachedTree.involvedPoms);
+				return cachedTree.rootNodes;
+			}
+		}
 		ArtifactFilter filter = new ScopeArtifactFilter();
 		DependencyTreeResolutionListener listener = new DependencyTreeResolutionListener(filter);
-		Map resolvedArtifacts = new LinkedHashMap();
+		ConflictIndex resolvedArtifacts = new ConflictIndex();
 		for (MavenProjectDescriptor projectDesc : projectDescs) {
 			MavenProject project = projectDesc.project;
+			addInvolvedPoms(project);
 			try {
 				List<String> separatedGroupId = extractSeparatedGroupIds(project);
 
@@ -1271,7 +1648,7 @@ public class DependencyTreeBuilder {
 
 				// If the project is not supposed to be transitively resolved
 				// then its dependencies are not added to the root. Moreover the
-				// parameter is passed to the recurse method. Thanks to than
+				// parameter is passed to the resolveTree method. Thanks to than
 				// when transitive is false, resolving of runtime dependencies
 				// is not performed.
 				if (projectDesc.transitive) {
@@ -1331,13 +1708,20 @@ public class DependencyTreeBuilder {
 				ManagedVersionMap versionMap = getManagedVersionsMap(originatingArtifact,
 						project.getManagedVersionMap());
 
-				recurse(originatingArtifact, root, resolvedArtifacts, versionMap, localRepository, remoteRepositories,
-						metadataSource, filter, listener, projectDesc.transitive,
-						new HashSet<String>(separatedGroupId));
+				resolveTree(root, resolvedArtifacts, versionMap, remoteRepositories, metadataSource, filter, listener,
+						projectDesc.transitive, new HashSet<String>(separatedGroupId));
 			} catch (ArtifactResolutionException exception) {
 				throw new DependencyTreeBuilderException("Cannot build project dependency tree", exception);
 			}
 		}
+		DependencyTreeCache.CachedTree resolvedTree = new DependencyTreeCache.CachedTree();
+		resolvedTree.rootNodes = listener.getRootNodes();
+		resolvedTree.mwVersion = mwVersion;
+		resolvedTree.separatedArtifactDepsOfRoot = separatedArtifactDepsOfRoot;
+		snapshotInvolved = DependencyTreeCache.containsSnapshot(resolvedTree);
+		if (treeCache != null && !versionSelectedFromRange) {
+			treeCache.store(cacheKey, resolvedTree, involvedPoms);
+		}
 		return listener.getRootNodes();
 	}
 
@@ -1350,4 +1734,70 @@ public class DependencyTreeBuilder {
 		return separatedArtifactDepsOfRoot;
 	}
 
+	/**
+	 * Gets POM files from the local repository which were used during
+	 * resolution of the tree, including POMs of parent projects.
+	 *
+	 * @return set of POM files.
+	 */
+	public Set<File> getInvolvedPoms() {
+		return involvedPoms;
+	}
+
+	/**
+	 * Checks whether version of any artifact in the tree was selected from a
+	 * version range. Result of such resolution can change when a new version
+	 * is deployed even if none of the involved POMs changed.
+	 *
+	 * @return true if a version was selected from a range.
+	 */
+	public boolean isVersionSelectedFromRange() {
+		return versionSelectedFromRange;
+	}
+
+	/**
+	 * Checks whether any artifact of the tree, any excluded core artifact or
+	 * any separated artifact is a SNAPSHOT. POMs of SNAPSHOTs can be updated
+	 * from remote repositories, so result of such resolution can change.
+	 *
+	 * @return true if a SNAPSHOT is involved.
+	 */
+	public boolean isSnapshotInvolved() {
+		return snapshotInvolved;
+	}
+
+	/**
+	 * Sets cache of resolved trees. If cache is set then buildDependencyTree
+	 * returns cached tree instead of resolving it, provided that none of the
+	 * POMs involved in the resolution changed.
+	 *
+	 * @param treeCache
+	 *            The cache or null if trees should be always resolved.
+	 */
+	public void setTreeCache(final DependencyTreeCache treeCache) {
+		this.treeCache = treeCache;
+	}
+
+	/**
+	 * Sets cache of maven projects built from POMs. It allows sharing already
+	 * built projects between many DependencyTreeBuilders.
+	 *
+	 * @param pomProjectCache
+	 *            the cache, cannot be null.
+	 */
+	public void setPomProjectCache(final PomProjectCache pomProjectCache) {
+		this.pomProjectCache = pomProjectCache;
+	}
+
+	/**
+	 * Sets statistics to which POM building, metadata retrieval and conflict
+	 * resolution are reported.
+	 *
+	 * @param stats
+	 *            the statistics, cannot be null.
+	 */
+	public void setResolutionStats(final ResolutionStats stats) {
+		this.stats = stats;
+	}
+
 }
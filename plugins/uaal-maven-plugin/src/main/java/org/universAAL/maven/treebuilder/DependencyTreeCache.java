@@ -0,0 +1,554 @@
+/*
+See the NOTICE file distributed with this work for additional
+information regarding copyright ownership
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.universAAL.maven.treebuilder;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Stack;
+import java.util.TreeMap;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.factory.ArtifactFactory;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.resolver.ResolutionNode;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Exclusion;
+import org.apache.maven.model.Profile;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.shared.dependency.tree.DependencyNode;
+
+/**
+ * Persistent cache of dependency trees built by DependencyTreeBuilder. Each
+ * entry is addressed by a key calculated from the build of the plugin and the
+ * root projects (coordinates, dependencies, managed versions, active profiles
+ * and resolution flags) and records digests of all POM files from the local
+ * repository which were involved in the resolution, including imported BOMs. An entry is used only if none of these POM files
+ * changed since the entry was stored, otherwise the tree is resolved again.
+ *
+ * Only the information which is needed for flattening the tree into an
+ * execution list is stored, i.e. coordinates, scope and state of each node.
+ * Trees with any SNAPSHOT artifact are not stored, because their POMs can be
+ * updated from remote repositories. Entries which were not used for
+ * {@link #MAX_AGE} are removed when a new entry is stored.
+ */
+public class DependencyTreeCache {
+
+	/**
+	 * Version of the cache file format. Has to be increased each time the
+	 * format changes.
+	 */
+	private static final String FORMAT = "uaal-tree-cache 1";
+
+	/**
+	 * Version of the plugin and modification time of its code, so that entries
+	 * created by another build of the plugin (possibly with different
+	 * resolution algorithm) are not used.
+	 */
+	private static final String PLUGIN_BUILD = pluginBuild();
+
+	/**
+	 * Placeholder for null values in the cache files.
+	 */
+	private static final String NONE = "-";
+
+	private static final String SEPARATOR = "\t";
+
+	/**
+	 * Time in milliseconds after which unused entries are removed (30 days).
+	 */
+	static final long MAX_AGE = 30L * 24 * 60 * 60 * 1000;
+
+	private Log log;
+
+	private File cacheDir;
+
+	private ArtifactFactory artifactFactory;
+
+	private ArtifactRepository localRepository;
+
+	/**
+	 * Result of the resolution which is stored in the cache. Apart from the
+	 * rootnodes it contains side products of the resolution which are later
+	 * used by ExecutionListCreator.
+	 */
+	public static class CachedTree {
+		public List<RootNode> rootNodes = new ArrayList<RootNode>();
+		public String mwVersion;
+		public List<ResolutionNode> separatedArtifactDepsOfRoot = new ArrayList<ResolutionNode>();
+		public Set<File> involvedPoms = new LinkedHashSet<File>();
+	}
+
+	public DependencyTreeCache(final Log log, final File cacheDir, final ArtifactFactory artifactFactory,
+			final ArtifactRepository localRepository) {
+		this.log = log;
+		this.cacheDir = cacheDir;
+		this.artifactFactory = artifactFactory;
+		this.localRepository = localRepository;
+	}
+
+	/**
+	 * Creates cache which keeps its entries in the maven's local repository so
+	 * that they are shared by all projects built on given machine.
+	 *
+	 * @param log
+	 *            Object used for logging.
+	 * @param artifactFactory
+	 *            ArtifactFactory object provided by maven.
+	 * @param localRepository
+	 *            The maven's local repository provided by maven.
+	 * @return the cache.
+	 */
+	public static DependencyTreeCache inLocalRepository(final Log log, final ArtifactFactory artifactFactory,
+			final ArtifactRepository localRepository) {
+		File cacheDir = new File(localRepository.getBasedir(), ".cache/uaal-maven-plugin/trees");
+		return new DependencyTreeCache(log, cacheDir, artifactFactory, localRepository);
+	}
+
+	/**
+	 * Calculates the key of cache entry for given root projects and resolution
+	 * flags.
+	 *
+	 * @param projectDescs
+	 *            Descriptors of root projects.
+	 * @param includeTestRuntimes
+	 *            Indication whether test runtime profile is resolved.
+	 * @param useMwComposite
+	 *            Indication whether middleware bundles are replaced by mw
+	 *            composite.
+	 * @return the key.
+	 */
+	static String calculateKey(final MavenProjectDescriptor[] projectDescs, final boolean includeTestRuntimes,
+			final boolean useMwComposite) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(FORMAT).append('\n');
+		sb.append(PLUGIN_BUILD).append('\n');
+		sb.append(includeTestRuntimes).append(':').append(useMwComposite).append('\n');
+		for (MavenProjectDescriptor projectDesc : projectDescs) {
+			MavenProject project = projectDesc.project;
+			sb.append("root ").append(project.getArtifact().getId()).append(':').append(projectDesc.transitive)
+					.append('\n');
+			for (Object depObj : project.getDependencies()) {
+				Dependency dep = (Dependency) depObj;
+				sb.append("dep ").append(dep.getManagementKey()).append(':').append(dep.getVersion()).append(':')
+						.append(dep.getScope()).append(':').append(dep.isOptional());
+				for (Exclusion exclusion : dep.getExclusions()) {
+					sb.append(" !").append(exclusion.getGroupId()).append(':').append(exclusion.getArtifactId());
+				}
+				sb.append('\n');
+			}
+			Map managedVersions = project.getManagedVersionMap();
+			if (managedVersions != null) {
+				Map<String, String> sortedManaged = new TreeMap<String, String>();
+				for (Object entryObj : managedVersions.entrySet()) {
+					Map.Entry entry = (Map.Entry) entryObj;
+					Artifact managed = (Artifact) entry.getValue();
+					sortedManaged.put(String.valueOf(entry.getKey()),
+							managed.getVersion() + ":" + managed.getVersionRange() + ":" + managed.getScope());
+				}
+				for (Map.Entry<String, String> entry : sortedManaged.entrySet()) {
+					sb.append("managed ").append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+				}
+			}
+			List activeProfiles = project.getActiveProfiles();
+			if (activeProfiles != null) {
+				for (Object profileObj : activeProfiles) {
+					sb.append("profile ").append(((Profile) profileObj).getId()).append('\n');
+				}
+			}
+			sb.append("separated ")
+					.append(project.getProperties().getProperty(DependencyTreeBuilder.PROP_SEPARATED_GROUP_IDS))
+					.append('\n');
+			if (project.getFile() != null) {
+				sb.append("file ").append(digest(project.getFile())).append('\n');
+			}
+		}
+		return md5Hex(sb.toString());
+	}
+
+	/**
+	 * Loads cache entry with given key. The entry is returned only if all POM
+	 * files involved in its resolution are unchanged.
+	 *
+	 * @param key
+	 *            Key of the entry.
+	 * @param projectDescs
+	 *            Descriptors of root projects. Their remote repositories are
+	 *            assigned to the restored nodes.
+	 * @return the cached tree or null if there is no valid entry.
+	 */
+	CachedTree load(final String key, final MavenProjectDescriptor[] projectDescs) {
+		File entryFile = new File(cacheDir, key + ".tree");
+		if (!entryFile.isFile()) {
+			return null;
+		}
+		try {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(entryFile), "UTF-8"));
+			CachedTree tree;
+			try {
+				tree = readEntry(reader, projectDescs);
+			} finally {
+				reader.close();
+			}
+			if (tree != null) {
+				entryFile.setLastModified(System.currentTimeMillis());
+			}
+			return tree;
+		} catch (Exception e) {
+			log.debug("Ignoring unreadable dependency tree cache entry " + entryFile, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Stores given tree in the cache unless it contains SNAPSHOT dependencies,
+	 * SNAPSHOT excluded core artifacts or SNAPSHOT separated artifacts.
+	 *
+	 * @param key
+	 *            Key of the entry.
+	 * @param tree
+	 *            The tree which will be stored.
+	 * @param involvedPoms
+	 *            POM files from the local repository which were used for
+	 *            resolving the tree.
+	 */
+	void store(final String key, final CachedTree tree, final Set<File> involvedPoms) {
+		if (containsSnapshot(tree)) {
+			log.debug("Dependency tree with SNAPSHOT dependencies is not stored in cache");
+			return;
+		}
+		File entryFile = new File(cacheDir, key + ".tree");
+		try {
+			cacheDir.mkdirs();
+			prune();
+			File tmpFile = File.createTempFile(key, ".tmp", cacheDir);
+			BufferedWriter writer = new BufferedWriter(
+					new OutputStreamWriter(new FileOutputStream(tmpFile, false), "UTF-8"));
+			try {
+				writeEntry(writer, tree, involvedPoms);
+			} finally {
+				writer.close();
+			}
+			if (!tmpFile.renameTo(entryFile)) {
+				entryFile.delete();
+				if (!tmpFile.renameTo(entryFile)) {
+					tmpFile.delete();
+					log.warn("Cannot rename " + tmpFile + " to " + entryFile);
+				}
+			}
+		} catch (IOException e) {
+			log.warn("Cannot store dependency tree in cache " + entryFile, e);
+		}
+	}
+
+	/**
+	 * Checks whether any artifact of given resolution result is a SNAPSHOT.
+	 *
+	 * @param tree
+	 *            The resolution result.
+	 * @return true if a SNAPSHOT was found in the tree, among the excluded
+	 *         core artifacts or among the separated artifacts.
+	 */
+	static boolean containsSnapshot(final CachedTree tree) {
+		for (RootNode rootNode : tree.rootNodes) {
+			if (containsSnapshot(rootNode.rootNode.getChildren())
+					|| containsSnapshotArtifact(rootNode.excludedCoreArtifacts)) {
+				return true;
+			}
+		}
+		return containsSnapshotArtifact(tree.separatedArtifactDepsOfRoot);
+	}
+
+	private static boolean containsSnapshotArtifact(final List<ResolutionNode> nodes) {
+		if (nodes != null) {
+			for (ResolutionNode node : nodes) {
+				if (node.getArtifact().isSnapshot()) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static boolean containsSnapshot(final List children) {
+		for (Object childObj : children) {
+			DependencyNode child = (DependencyNode) childObj;
+			if (child.getArtifact().isSnapshot() || containsSnapshot(child.getChildren())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Removes entries and leftover temporary files which were not used for
+	 * MAX_AGE.
+	 */
+	private void prune() {
+		File[] files = cacheDir.listFiles();
+		if (files == null) {
+			return;
+		}
+		long oldest = System.currentTimeMillis() - MAX_AGE;
+		for (File file : files) {
+			String name = file.getName();
+			if ((name.endsWith(".tree") || name.endsWith(".tmp")) && file.lastModified() < oldest) {
+				file.delete();
+			}
+		}
+	}
+
+	private void writeEntry(final BufferedWriter writer, final CachedTree tree, final Set<File> involvedPoms)
+			throws IOException {
+		writer.write(FORMAT);
+		writer.newLine();
+		writeLine(writer, "mw", nullToNone(tree.mwVersion));
+		for (File pom : involvedPoms) {
+			writeLine(writer, "pom", digest(pom), pom.getAbsolutePath());
+		}
+		for (ResolutionNode separated : tree.separatedArtifactDepsOfRoot) {
+			writeLine(writer, "separated", coordinates(separated.getArtifact()));
+		}
+		for (RootNode rootNode : tree.rootNodes) {
+			writeLine(writer, "root");
+			for (ResolutionNode excluded : rootNode.excludedCoreArtifacts) {
+				writeLine(writer, "excluded", coordinates(excluded.getArtifact()));
+			}
+			writeNode(writer, rootNode.rootNode, 0);
+		}
+	}
+
+	private void writeNode(final BufferedWriter writer, final DependencyNode node, final int depth)
+			throws IOException {
+		Artifact related = node.getRelatedArtifact();
+		writeLine(writer, "node", Integer.toString(depth), Integer.toString(node.getState()),
+				coordinates(node.getArtifact()), related == null ? NONE : related.getVersion());
+		for (Object childObj : node.getChildren()) {
+			writeNode(writer, (DependencyNode) childObj, depth + 1);
+		}
+	}
+
+	private CachedTree readEntry(final BufferedReader reader, final MavenProjectDescriptor[] projectDescs)
+			throws IOException {
+		if (!FORMAT.equals(reader.readLine())) {
+			return null;
+		}
+		CachedTree tree = new CachedTree();
+		Stack<DependencyNode> parents = new Stack<DependencyNode>();
+		List<ResolutionNode> excluded = null;
+		List remoteRepositories = null;
+		int rootIndex = 0;
+		String line;
+		while ((line = reader.readLine()) != null) {
+			String[] elems = line.split(SEPARATOR);
+			String type = elems[0];
+			if ("mw".equals(type)) {
+				tree.mwVersion = noneToNull(elems[1]);
+			} else if ("pom".equals(type)) {
+				File pom = new File(elems[2]);
+				if (!elems[1].equals(digest(pom))) {
+					log.debug("Dependency tree cache entry is outdated because of " + elems[2]);
+					return null;
+				}
+				tree.involvedPoms.add(pom);
+			} else if ("separated".equals(type)) {
+				tree.separatedArtifactDepsOfRoot
+						.add(new ResolutionNode(createArtifact(elems, 1), projectDescs[0].remoteRepositories));
+			} else if ("root".equals(type)) {
+				if (rootIndex == projectDescs.length) {
+					return null;
+				}
+				remoteRepositories = projectDescs[rootIndex++].remoteRepositories;
+				excluded = new ArrayList<ResolutionNode>();
+				parents.clear();
+			} else if ("excluded".equals(type)) {
+				excluded.add(new ResolutionNode(createArtifact(elems, 1), remoteRepositories));
+			} else if ("node".equals(type)) {
+				int depth = Integer.parseInt(elems[1]);
+				int state = Integer.parseInt(elems[2]);
+				Artifact artifact = createArtifact(elems, 3);
+				DependencyNode node = new MyDependencyNode(artifact, remoteRepositories);
+				if (state == DependencyNode.OMITTED_FOR_CYCLE) {
+					node.omitForCycle();
+				} else if (state != DependencyNode.INCLUDED) {
+					node.omitForConflict(artifactFactory.createDependencyArtifact(artifact.getGroupId(),
+							artifact.getArtifactId(), VersionRange.createFromVersion(elems[9]), artifact.getType(),
+							artifact.getClassifier(), artifact.getScope()));
+				}
+				while (parents.size() > depth) {
+					parents.pop();
+				}
+				if (parents.isEmpty()) {
+					RootNode rootNode = new RootNode(node);
+					rootNode.excludedCoreArtifacts = excluded;
+					tree.rootNodes.add(rootNode);
+				} else {
+					parents.peek().addChild(node);
+				}
+				parents.push(node);
+			}
+		}
+		if (tree.rootNodes.size() != projectDescs.length) {
+			return null;
+		}
+		return tree;
+	}
+
+	private Artifact createArtifact(final String[] elems, final int offset) {
+		return artifactFactory.createDependencyArtifact(elems[offset], elems[offset + 1],
+				VersionRange.createFromVersion(elems[offset + 4]), elems[offset + 2], noneToNull(elems[offset + 3]),
+				noneToNull(elems[offset + 5]));
+	}
+
+	private static String coordinates(final Artifact artifact) {
+		return artifact.getGroupId() + SEPARATOR + artifact.getArtifactId() + SEPARATOR + artifact.getType()
+				+ SEPARATOR + nullToNone(artifact.getClassifier()) + SEPARATOR + artifact.getVersion() + SEPARATOR
+				+ nullToNone(artifact.getScope());
+	}
+
+	private static void writeLine(final BufferedWriter writer, final String... elems) throws IOException {
+		for (int i = 0; i < elems.length; i++) {
+			if (i > 0) {
+				writer.write(SEPARATOR);
+			}
+			writer.write(elems[i]);
+		}
+		writer.newLine();
+	}
+
+	private static String nullToNone(final String str) {
+		return str == null ? NONE : str;
+	}
+
+	private static String noneToNull(final String str) {
+		return NONE.equals(str) ? null : str;
+	}
+
+	/**
+	 * Determines version of the plugin from its pom.properties and
+	 * modification time of the jar containing this class.
+	 */
+	private static String pluginBuild() {
+		String version = null;
+		InputStream is = DependencyTreeCache.class
+				.getResourceAsStream("/META-INF/maven/org.universAAL.support/uaal-maven-plugin/pom.properties");
+		if (is != null) {
+			try {
+				try {
+					Properties props = new Properties();
+					props.load(is);
+					version = props.getProperty("version");
+				} finally {
+					is.close();
+				}
+			} catch (IOException e) {
+				// version stays unknown
+			}
+		}
+		long timestamp = 0;
+		CodeSource source = DependencyTreeCache.class.getProtectionDomain().getCodeSource();
+		if (source != null) {
+			URL location = source.getLocation();
+			if (location != null && "file".equals(location.getProtocol())) {
+				timestamp = new File(location.getPath()).lastModified();
+			}
+		}
+		return nullToNone(version) + ":" + timestamp;
+	}
+
+	/**
+	 * Calculates MD5 digest of given file.
+	 *
+	 * @param file
+	 *            File which digest is calculated.
+	 * @return hex representation of the digest or "-" if the file does not
+	 *         exist.
+	 */
+	public static String digest(final File file) {
+		if (!file.isFile()) {
+			return NONE;
+		}
+		try {
+			MessageDigest md = md5();
+			InputStream is = new FileInputStream(file);
+			try {
+				byte[] buffer = new byte[8192];
+				int read;
+				while ((read = is.read(buffer)) != -1) {
+					md.update(buffer, 0, read);
+				}
+			} finally {
+				is.close();
+			}
+			return toHex(md.digest());
+		} catch (IOException e) {
+			return NONE;
+		}
+	}
+
+	/**
+	 * Calculates MD5 digest of given text.
+	 *
+	 * @param text
+	 *            Text which digest is calculated.
+	 * @return hex representation of the digest.
+	 */
+	public static String md5Hex(final String text) {
+		try {
+			return toHex(md5().digest(text.getBytes("UTF-8")));
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static MessageDigest md5() {
+		try {
+			return MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(final byte[] bytes) {
+		StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+			sb.append(Character.forDigit(b & 0xf, 16));
+		}
+		return sb.toString();
+	}
+
+}
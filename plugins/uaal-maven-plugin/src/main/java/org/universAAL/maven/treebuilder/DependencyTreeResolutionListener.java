@@ -29,6 +29,8 @@ import java.util.Map;
 import java.util.Stack;
 
 import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.repository.ArtifactRepositoryPolicy;
 import org.apache.maven.artifact.resolver.ResolutionListenerForDepMgmt;
 import org.apache.maven.artifact.resolver.ResolutionNode;
 import org.apache.maven.artifact.resolver.filter.ArtifactFilter;
@@ -86,6 +88,28 @@ public class DependencyTreeResolutionListener implements ResolutionListenerForDe
 	 */
 	private Map managedScopes = new HashMap();
 
+	/**
+	 * Canonical instances of coordinate strings (groupIds, artifactIds and
+	 * scopes) of artifacts in the tree. Every POM is parsed separately, so
+	 * without sharing each node would hold its own copies of the strings.
+	 */
+	private Map<String, String> sharedStrings = new HashMap<String, String>();
+
+	/**
+	 * Canonical instances of remote repository lists by their contents.
+	 * Metadata retrieval returns a new list for every artifact although most
+	 * of artifacts are resolved from the same repositories.
+	 */
+	private Map<String, List> sharedRemoteRepositories = new HashMap<String, List>();
+
+	/**
+	 * Canonical instances of remote repository lists by the identity of lists
+	 * which were already shared. Lists passed again (e.g. repositories of a
+	 * parent handed down to its children) are found without building their
+	 * key.
+	 */
+	private Map<List, List> sharedRemoteRepositoriesByIdentity = new IdentityHashMap<List, List>();
+
 	// constructors -----------------------------------------------------------
 
 	private ArtifactFilter artifactFilter;
@@ -457,8 +481,14 @@ public class DependencyTreeResolutionListener implements ResolutionListenerForDe
 	 * @return the new dependency node
 	 */
 	private DependencyNode createNode(final ResolutionNode resolutionNode) {
-		DependencyNode node = new MyDependencyNode(resolutionNode.getArtifact(),
-				resolutionNode.getRemoteRepositories());
+		Artifact artifact = resolutionNode.getArtifact();
+		artifact.setGroupId(share(artifact.getGroupId()));
+		artifact.setArtifactId(share(artifact.getArtifactId()));
+		if (artifact.getScope() != null) {
+			artifact.setScope(share(artifact.getScope()));
+		}
+		DependencyNode node = new MyDependencyNode(artifact,
+				shareRemoteRepositories(resolutionNode.getRemoteRepositories()));
 
 		if (!parentNodes.isEmpty()) {
 			DependencyNode parent = (DependencyNode) parentNodes.peek();
@@ -469,6 +499,66 @@ public class DependencyTreeResolutionListener implements ResolutionListenerForDe
 		return node;
 	}
 
+	/**
+	 * Returns the canonical instance of given string.
+	 *
+	 * @param string
+	 *            the string, cannot be null
+	 * @return string equal to the passed one, the same instance is returned
+	 *         for all equal strings
+	 */
+	private String share(final String string) {
+		String shared = sharedStrings.get(string);
+		if (shared == null) {
+			sharedStrings.put(string, string);
+			shared = string;
+		}
+		return shared;
+	}
+
+	/**
+	 * Returns the canonical instance of given list of remote repositories.
+	 * Lists are equal if they contain repositories with the same ids, urls and
+	 * policies in the same order.
+	 *
+	 * @param remoteRepositories
+	 *            list of remote repositories
+	 * @return list with the same repositories, the same instance is returned
+	 *         for all equal lists
+	 */
+	private List shareRemoteRepositories(final List remoteRepositories) {
+		if (remoteRepositories == null) {
+			return null;
+		}
+		List shared = sharedRemoteRepositoriesByIdentity.get(remoteRepositories);
+		if (shared != null) {
+			return shared;
+		}
+		StringBuilder key = new StringBuilder();
+		for (Object repoObj : remoteRepositories) {
+			ArtifactRepository repo = (ArtifactRepository) repoObj;
+			key.append(repo.getId()).append('=').append(repo.getUrl());
+			appendPolicy(key, repo.getReleases());
+			appendPolicy(key, repo.getSnapshots());
+			key.append('|');
+		}
+		String keyStr = key.toString();
+		shared = sharedRemoteRepositories.get(keyStr);
+		if (shared == null) {
+			sharedRemoteRepositories.put(keyStr, remoteRepositories);
+			shared = remoteRepositories;
+		}
+		sharedRemoteRepositoriesByIdentity.put(remoteRepositories, shared);
+		return shared;
+	}
+
+	private static void appendPolicy(final StringBuilder key, final ArtifactRepositoryPolicy policy) {
+		if (policy != null) {
+			key.append(';').append(policy.isEnabled()).append(',').append(policy.getUpdatePolicy()).append(',')
+					.append(policy.getChecksumPolicy());
+		}
+	}
+
 	/**
 	 * Creates a new dependency node for the specified artifact, appends it to
 	 * the current parent dependency node and puts it into the dependency node
@@ -585,7 +675,9 @@ public class DependencyTreeResolutionListener implements ResolutionListenerForDe
 	}
 
 	/**
-	 * Adds node to excluded core artifacts.
+	 * Adds node to excluded core artifacts. The node should not be linked to
+	 * its parent, otherwise the whole resolution tree is kept in memory as
+	 * long as the rootnode.
 	 *
 	 * @param node
 	 *            Node which is add to excluded core artifacts.
@@ -20,9 +20,12 @@ limitations under the License.
 */
 package org.universAAL.maven.treebuilder;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.maven.artifact.Artifact;
@@ -39,6 +42,9 @@ import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.project.MavenProjectBuilder;
+import org.universAAL.maven.BundleClassifier;
+import org.universAAL.maven.BundleInfo;
+import org.universAAL.maven.BundleInfoIndex;
 import org.universAAL.maven.IndexingDependencyNodeVisitor;
 import org.universAAL.maven.LaunchOrderDependencyNodeVisitor;
 import org.universAAL.maven.StartSpec;
@@ -83,6 +89,50 @@ public class ExecutionListCreator {
 	 */
 	private StartSpec[] startSpecs;
 
+	/**
+	 * Cache of resolved dependency trees, null if trees should be always
+	 * resolved.
+	 */
+	private DependencyTreeCache treeCache = null;
+
+	/**
+	 * Number of threads used for reading jars of artifacts of the execution
+	 * list. Value 1 means that jars are read sequentially.
+	 */
+	private int resolutionThreads = 1;
+
+	/**
+	 * Cache of maven projects built from POMs, shared by all dependency tree
+	 * builders created by this ExecutionListCreator.
+	 */
+	private PomProjectCache pomProjectCache = new PomProjectCache();
+
+	/**
+	 * Persistent index of OSGi headers of jars from the local repository.
+	 */
+	private BundleInfoIndex bundleInfoIndex;
+
+	/**
+	 * Bundle information of released artifacts shared with other creators,
+	 * null if it is not shared.
+	 */
+	private Map<String, BundleInfo> releasedBundles = null;
+
+	/**
+	 * Tree builder used for creation of the last execution list.
+	 */
+	private DependencyTreeBuilder lastTreeBuilder = null;
+
+	/**
+	 * Dependency waves of elements of the last execution list.
+	 */
+	private List<Integer> lastWaves = new ArrayList<Integer>();
+
+	/**
+	 * Timers and counters of all resolutions performed by this creator.
+	 */
+	private ResolutionStats stats = new ResolutionStats();
+
 	public ExecutionListCreator(final Log log, final ArtifactMetadataSource artifactMetadataSource,
 			final ArtifactFactory artifactFactory, final MavenProjectBuilder mavenProjectBuilder,
 			final ArtifactRepository localRepository, final List remoteRepositories,
@@ -98,6 +148,7 @@ public class ExecutionListCreator {
 		this.artifactResolver = artifactResolver;
 		this.throwExceptionOnConflict = !("true".equals(throwExceptionOnConflictStr));
 		this.startSpecs = startSpecs;
+		this.bundleInfoIndex = BundleInfoIndex.inLocalRepository(log, localRepository);
 	}
 
 	/**
@@ -149,8 +200,9 @@ public class ExecutionListCreator {
 	private List<RootNode> parseProvisionsAndBuiltTree(final String[] provisions, final boolean transitive,
 			final DependencyTreeBuilder treeBuilder) throws Exception {
 		MavenProjectDescriptor[] projectDescs = new MavenProjectDescriptor[provisions.length];
+		Artifact[] pomArtifacts = new Artifact[provisions.length];
+		boolean[] transitives = new boolean[provisions.length];
 		int i = 0;
-		List<List> listOfRemoteRepositories = new ArrayList<List>();
 		for (String provision : provisions) {
 			boolean localtransitive = transitive;
 			String provisionNoHeader = provision;
@@ -161,17 +213,22 @@ public class ExecutionListCreator {
 				provisionNoHeader = provision.substring("nontransitive:".length());
 				localtransitive = false;
 			}
-			Artifact pomArtifact = parseMvnUrl(provisionNoHeader);
-			MavenProject pomProject = mavenProjectBuilder.buildFromRepository(pomArtifact, remoteRepositories,
-					localRepository);
+			pomArtifacts[i] = parseMvnUrl(provisionNoHeader);
+			transitives[i] = localtransitive;
+			i++;
+		}
+		MavenProject[] pomProjects = buildPomProjects(pomArtifacts);
+		List<List> listOfRemoteRepositories = new ArrayList<List>();
+		for (i = 0; i < pomProjects.length; i++) {
 			List<ArtifactRepository> finalRemoteRepositories = addMissingRepositories(
-					pomProject.getRemoteArtifactRepositories());
-			projectDescs[i] = new MavenProjectDescriptor(pomProject, finalRemoteRepositories, localtransitive);
+					pomProjects[i].getRemoteArtifactRepositories());
+			projectDescs[i] = new MavenProjectDescriptor(pomProjects[i], finalRemoteRepositories, transitives[i]);
 			listOfRemoteRepositories.add(finalRemoteRepositories);
-			i++;
 		}
+		long treeStart = ResolutionStats.start();
 		List<RootNode> rootNodesOnly = treeBuilder.buildDependencyTree(localRepository, artifactFactory,
 				artifactMetadataSource, projectDescs);
+		stats.stop(ResolutionStats.TREE_BUILDING, treeStart);
 		Iterator<List> listOfRemoteRepositoriesIter = listOfRemoteRepositories.iterator();
 		if (listOfRemoteRepositories.size() != rootNodesOnly.size()) {
 			throw new IllegalStateException("listOfRemoteRepositories.size() != rootNodesWithRepositories.size()");
@@ -184,6 +241,25 @@ public class ExecutionListCreator {
 		return rootNodesWithRepositories;
 	}
 
+	/**
+	 * Builds POM projects for given artifacts one after another, because the
+	 * project builder of Maven 2 is not thread-safe.
+	 *
+	 * @param pomArtifacts
+	 *            POM artifacts of provisions.
+	 * @return array of projects corresponding to pomArtifacts.
+	 */
+	private MavenProject[] buildPomProjects(final Artifact[] pomArtifacts) throws Exception {
+		MavenProject[] pomProjects = new MavenProject[pomArtifacts.length];
+		for (int i = 0; i < pomArtifacts.length; i++) {
+			long buildStart = ResolutionStats.start();
+			pomProjects[i] = pomProjectCache.buildFromRepository(mavenProjectBuilder, pomArtifacts[i],
+					remoteRepositories, localRepository, stats);
+			stats.stop(ResolutionStats.POM_BUILDING, buildStart);
+		}
+		return pomProjects;
+	}
+
 	/**
 	 * Method flattens provided dependency tree and creates on its basis an
 	 * execution list. To do this, method walks the tree twice. At first all
@@ -211,6 +287,7 @@ public class ExecutionListCreator {
 					+ System.getProperty("line.separator") + rootNode.rootNode.toString());
 		}
 
+		long flatteningStart = ResolutionStats.start();
 		IndexingDependencyNodeVisitor filteringVisitor = new IndexingDependencyNodeVisitor(log);
 		rootNodesIterator = rootNodes.iterator();
 		while (rootNodesIterator.hasNext()) {
@@ -221,14 +298,31 @@ public class ExecutionListCreator {
 		LaunchOrderDependencyNodeVisitor visitor = new LaunchOrderDependencyNodeVisitor(log,
 				filteringVisitor.getNodesByArtifactId(), filteringVisitor.getVersionByArtifactId(),
 				throwExceptionOnConflict, localRepository, artifactResolver, dontResolve, startSpecs);
-		rootNodesIterator = rootNodes.iterator();
-		while (rootNodesIterator.hasNext()) {
-			RootNode rootNode = rootNodesIterator.next();
-			visitor.setExcludedCoreArtifacts(rootNode.excludedCoreArtifacts);
-			rootNode.rootNode.accept(visitor);
+		BundleClassifier bundleClassifier = new BundleClassifier(log, artifactResolver, localRepository);
+		bundleClassifier.setBundleInfoIndex(bundleInfoIndex);
+		bundleClassifier.setReleasedBundles(releasedBundles);
+		bundleClassifier.setResolutionStats(stats);
+		visitor.setBundleClassifier(bundleClassifier);
+		visitor.setResolutionStats(stats);
+		List<ResolutionNode> excludedCoreArtifacts = new ArrayList<ResolutionNode>();
+		for (RootNode rootNode : rootNodes) {
+			excludedCoreArtifacts.addAll(rootNode.excludedCoreArtifacts);
+		}
+		visitor.classifyBundles(excludedCoreArtifacts, resolutionThreads);
+		try {
+			rootNodesIterator = rootNodes.iterator();
+			while (rootNodesIterator.hasNext()) {
+				RootNode rootNode = rootNodesIterator.next();
+				visitor.setExcludedCoreArtifacts(rootNode.excludedCoreArtifacts);
+				rootNode.rootNode.accept(visitor);
+			}
+		} finally {
+			bundleInfoIndex.save();
+			stats.stop(ResolutionStats.FLATTENING, flatteningStart);
 		}
 
 		List<String> mvnUrls = visitor.getMvnUrls();
+		lastWaves = new ArrayList<Integer>(visitor.getWaves());
 		return mvnUrls;
 	}
 
@@ -296,10 +390,16 @@ public class ExecutionListCreator {
 			boolean useMwComposite) throws Exception {
 		DependencyTreeBuilder treeBuilder = new DependencyTreeBuilder(artifactFactory, mavenProjectBuilder,
 				localRepository, includeTestRuntimes, useMwComposite);
+		treeBuilder.setTreeCache(treeCache);
+		treeBuilder.setPomProjectCache(pomProjectCache);
+		treeBuilder.setResolutionStats(stats);
+		lastTreeBuilder = treeBuilder;
 		List<ArtifactRepository> finalRemoteRpositories = addMissingRepositories(
 				mavenProject.getRemoteArtifactRepositories());
+		long treeStart = ResolutionStats.start();
 		List<RootNode> rootNodes = treeBuilder.buildDependencyTree(localRepository, artifactFactory,
 				artifactMetadataSource, new MavenProjectDescriptor(mavenProject, finalRemoteRpositories, true));
+		stats.stop(ResolutionStats.TREE_BUILDING, treeStart);
 		List<ResolutionNode> separatedArtifactDepsOfRoot = treeBuilder.getSeparatedArtifactDepsOfRoot();
 		for (ResolutionNode separatedRootDep : separatedArtifactDepsOfRoot) {
 			Artifact artifact = separatedRootDep.getArtifact();
@@ -322,8 +422,14 @@ public class ExecutionListCreator {
 				log.warn("A middleware composite should be used, but no middleware bundle was found.");
 			} else {
 				mvnUrls.add(0, "mvn:org.universAAL.middleware/mw.composite/" + treeBuilder.mwVersion + "/composite");
+				// mw composite forms its own wave preceding all others
+				for (int i = 0; i < lastWaves.size(); i++) {
+					lastWaves.set(i, lastWaves.get(i) + 1);
+				}
+				lastWaves.add(0, 1);
 			}
 		}
+		pomProjectCache.logStatistics(log);
 
 		return mvnUrls;
 	}
@@ -357,8 +463,150 @@ public class ExecutionListCreator {
 			final boolean includeTestRuntimes) throws Exception {
 		DependencyTreeBuilder treeBuilder = new DependencyTreeBuilder(artifactFactory, mavenProjectBuilder,
 				localRepository, includeTestRuntimes, false);
+		treeBuilder.setTreeCache(treeCache);
+		treeBuilder.setPomProjectCache(pomProjectCache);
+		treeBuilder.setResolutionStats(stats);
+		lastTreeBuilder = treeBuilder;
 		List<RootNode> rootNodes = parseProvisionsAndBuiltTree(provisions, defaultTransitive, treeBuilder);
+		pomProjectCache.logStatistics(log);
 		return processTreeIntoFlatList(rootNodes, null);
 	}
 
+	/**
+	 * Calculates fingerprint of all inputs which determine the execution list
+	 * created for given MavenProject: build of the plugin, its dependencies,
+	 * dependency management, active profiles, separatedGroupIds, POM file,
+	 * resolution flags and start specifications. The fingerprint does not cover POMs of dependencies,
+	 * they can be checked with getInvolvedPoms after the list is created.
+	 *
+	 * @param mavenProject
+	 *            the project.
+	 * @param includeTestRuntimes
+	 *            Indication whether test runtime profile is resolved.
+	 * @param useMwComposite
+	 *            Indication whether middleware bundles are replaced by mw
+	 *            composite.
+	 * @return the fingerprint.
+	 */
+	public String calculateFingerprint(final MavenProject mavenProject, final boolean includeTestRuntimes,
+			final boolean useMwComposite) {
+		MavenProjectDescriptor projectDesc = new MavenProjectDescriptor(mavenProject,
+				mavenProject.getRemoteArtifactRepositories(), true);
+		StringBuilder sb = new StringBuilder();
+		sb.append(DependencyTreeCache.calculateKey(new MavenProjectDescriptor[] { projectDesc }, includeTestRuntimes,
+				useMwComposite));
+		sb.append('\n').append(throwExceptionOnConflict).append('\n');
+		if (startSpecs != null) {
+			for (StartSpec startSpec : startSpecs) {
+				sb.append("start ").append(startSpec.getGroupId()).append(':').append(startSpec.getArtifactId())
+						.append(':').append(startSpec.getStartlevel()).append(':').append(startSpec.isNostart())
+						.append('\n');
+			}
+		}
+		return DependencyTreeCache.md5Hex(sb.toString());
+	}
+
+	/**
+	 * Gets POM files from the local repository which were used for creation
+	 * of the last execution list.
+	 *
+	 * @return set of POM files, empty if no list was created.
+	 */
+	public Set<File> getInvolvedPoms() {
+		if (lastTreeBuilder == null) {
+			return Collections.emptySet();
+		}
+		return lastTreeBuilder.getInvolvedPoms();
+	}
+
+	/**
+	 * Checks whether the last execution list is fully determined by its
+	 * inputs and by the POMs returned by getInvolvedPoms. It is not the case
+	 * if a version of any artifact was selected from a version range or if any
+	 * involved artifact is a SNAPSHOT.
+	 *
+	 * @return true if creating the list again with unchanged inputs would give
+	 *         the same result.
+	 */
+	public boolean isResolutionReproducible() {
+		return lastTreeBuilder != null && !lastTreeBuilder.isVersionSelectedFromRange()
+				&& !lastTreeBuilder.isSnapshotInvolved();
+	}
+
+	/**
+	 * Gets dependency waves of elements of the last execution list. Elements
+	 * of the first wave do not depend on other elements, elements of each
+	 * next wave depend only on elements of preceding waves.
+	 *
+	 * @return list of waves, starting from 1, in the order of the execution
+	 *         list. Empty if no list was created.
+	 */
+	public List<Integer> getLaunchWaves() {
+		return lastWaves;
+	}
+
+	/**
+	 * Makes this creator share POM projects, bundle information and the bundle
+	 * index with other creators using the same resolution session.
+	 *
+	 * @param resolutionSession
+	 *            the session.
+	 */
+	public void setResolutionSession(final ResolutionSession resolutionSession) {
+		pomProjectCache = new PomProjectCache(resolutionSession.getPomProjectCache());
+		releasedBundles = resolutionSession.getReleasedBundles();
+		bundleInfoIndex = resolutionSession.getBundleInfoIndex();
+	}
+
+	/**
+	 * Turns on reusing of dependency trees resolved by previous builds. Trees
+	 * are cached in the local repository and they are reused as long as none
+	 * of the POMs involved in their resolution has changed.
+	 *
+	 * @param useTreeCache
+	 *            true if the cache should be used.
+	 */
+	public void setUseTreeCache(final boolean useTreeCache) {
+		if (useTreeCache) {
+			treeCache = DependencyTreeCache.inLocalRepository(log, artifactFactory, localRepository);
+		} else {
+			treeCache = null;
+		}
+	}
+
+	/**
+	 * Sets number of threads used for reading jars of artifacts of the
+	 * execution list. POMs are built, artifacts are resolved and the
+	 * dependency tree is walked sequentially, so the execution list is the
+	 * same as with a single thread.
+	 *
+	 * @param resolutionThreads
+	 *            number of threads, values lower than 2 turn concurrent
+	 *            processing off.
+	 */
+	public void setResolutionThreads(final int resolutionThreads) {
+		this.resolutionThreads = resolutionThreads;
+	}
+
+	/**
+	 * Sets cache of maven projects built from POMs. By default each
+	 * ExecutionListCreator has its own cache, setting a shared one allows
+	 * reusing projects built by other creators.
+	 *
+	 * @param pomProjectCache
+	 *            the cache, cannot be null.
+	 */
+	public void setPomProjectCache(final PomProjectCache pomProjectCache) {
+		this.pomProjectCache = pomProjectCache;
+	}
+
+	/**
+	 * Gets timers and counters of all resolutions performed by this creator.
+	 *
+	 * @return the statistics.
+	 */
+	public ResolutionStats getResolutionStats() {
+		return stats;
+	}
+
 }
@@ -24,11 +24,16 @@ import java.util.List;
 
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.shared.dependency.tree.DependencyNode;
+import org.universAAL.maven.ArtifactKey;
 
 public class MyDependencyNode extends DependencyNode {
 
 	private List remoteRepositories;
 
+	private ArtifactKey key = null;
+
+	private ArtifactKey versionlessKey = null;
+
 	public MyDependencyNode(final Artifact artifact, final List remoteRepositories) {
 		super(artifact);
 		this.remoteRepositories = remoteRepositories;
@@ -37,4 +42,31 @@ public class MyDependencyNode extends DependencyNode {
 	public List getRemoteRepositories() {
 		return remoteRepositories;
 	}
+
+	/**
+	 * Gets key of node's artifact. The key is created on first call, so it
+	 * should not be called before versions of the tree are resolved.
+	 *
+	 * @return key consisting of groupId, artifactId and version.
+	 */
+	public ArtifactKey getKey() {
+		if (key == null) {
+			key = ArtifactKey.of(getArtifact());
+		}
+		return key;
+	}
+
+	/**
+	 * Gets versionless key of node's artifact. The key is created on first
+	 * call, so it should not be called before versions of the tree are
+	 * resolved.
+	 *
+	 * @return key consisting of groupId and artifactId.
+	 */
+	public ArtifactKey getVersionlessKey() {
+		if (versionlessKey == null) {
+			versionlessKey = getKey().versionless();
+		}
+		return versionlessKey;
+	}
 }
@@ -0,0 +1,190 @@
+/*
+See the NOTICE file distributed with this work for additional
+information regarding copyright ownership
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.universAAL.maven.treebuilder;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.MavenProjectBuilder;
+import org.apache.maven.project.ProjectBuildingException;
+
+/**
+ * Memory cache of maven projects built from POM artifacts. During resolution
+ * of a dependency tree the same POM is needed many times - for extracting
+ * runtime dependencies, separatedGroupIds and for every path through which
+ * the artifact is reached. The cache guarantees that each POM is built only
+ * once. The number of remembered projects is bounded, least recently used
+ * projects are evicted first.
+ *
+ * Projects are addressed by artifact coordinates and URLs of remote
+ * repositories used for building them. The cache can be used by many threads.
+ *
+ * A cache can have a parent cache which outlives it (e.g. shared by all
+ * modules of a reactor build). Projects of released artifacts are taken from
+ * and put to the parent, SNAPSHOT projects are kept only locally because they
+ * can change during the build.
+ */
+public class PomProjectCache {
+
+	/**
+	 * Default maximum number of remembered projects.
+	 */
+	public static final int DEFAULT_MAX_SIZE = 2048;
+
+	private Map<String, MavenProject> projects;
+
+	private int hits = 0;
+
+	private int misses = 0;
+
+	private PomProjectCache parent = null;
+
+	/**
+	 * Creates cache with default maximum size.
+	 */
+	public PomProjectCache() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * Creates cache with default maximum size which shares projects of
+	 * released artifacts with the parent cache.
+	 *
+	 * @param parent
+	 *            the parent cache.
+	 */
+	public PomProjectCache(final PomProjectCache parent) {
+		this(DEFAULT_MAX_SIZE);
+		this.parent = parent;
+	}
+
+	/**
+	 * Creates cache which remembers at most maxSize projects.
+	 *
+	 * @param maxSize
+	 *            maximum number of remembered projects.
+	 */
+	public PomProjectCache(final int maxSize) {
+		projects = new LinkedHashMap<String, MavenProject>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(final Map.Entry<String, MavenProject> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Returns project of given POM artifact. The project is built with
+	 * mavenProjectBuilder only if it was not built before.
+	 *
+	 * @param mavenProjectBuilder
+	 *            MavenProjectBuilder object provided by maven.
+	 * @param pomArtifact
+	 *            artifact of type pom.
+	 * @param remoteRepositories
+	 *            remote repositories used for resolving of the POM.
+	 * @param localRepository
+	 *            maven local repository.
+	 * @return built maven project.
+	 * @throws ProjectBuildingException
+	 *             Signals problem with building the project.
+	 */
+	public MavenProject buildFromRepository(final MavenProjectBuilder mavenProjectBuilder,
+			final Artifact pomArtifact, final List remoteRepositories, final ArtifactRepository localRepository)
+			throws ProjectBuildingException {
+		return buildFromRepository(mavenProjectBuilder, pomArtifact, remoteRepositories, localRepository, null);
+	}
+
+	/**
+	 * Returns project of given POM artifact and reports to the statistics
+	 * whether it was found in the cache or built.
+	 *
+	 * @param mavenProjectBuilder
+	 *            MavenProjectBuilder object provided by maven.
+	 * @param pomArtifact
+	 *            artifact of type pom.
+	 * @param remoteRepositories
+	 *            remote repositories used for resolving of the POM.
+	 * @param localRepository
+	 *            maven local repository.
+	 * @param stats
+	 *            statistics of the resolution, can be null.
+	 * @return built maven project.
+	 * @throws ProjectBuildingException
+	 *             Signals problem with building the project.
+	 */
+	public MavenProject buildFromRepository(final MavenProjectBuilder mavenProjectBuilder,
+			final Artifact pomArtifact, final List remoteRepositories, final ArtifactRepository localRepository,
+			final ResolutionStats stats) throws ProjectBuildingException {
+		String key = calculateKey(pomArtifact, remoteRepositories);
+		synchronized (this) {
+			MavenProject project = projects.get(key);
+			if (project != null) {
+				hits++;
+				if (stats != null) {
+					stats.increment(ResolutionStats.POM_CACHE_HITS);
+				}
+				return project;
+			}
+			misses++;
+		}
+		MavenProject project;
+		if (parent != null && !pomArtifact.isSnapshot()) {
+			project = parent.buildFromRepository(mavenProjectBuilder, pomArtifact, remoteRepositories,
+					localRepository, stats);
+		} else {
+			project = mavenProjectBuilder.buildFromRepository(pomArtifact, remoteRepositories, localRepository);
+			if (stats != null) {
+				stats.increment(ResolutionStats.POMS_BUILT);
+			}
+		}
+		synchronized (this) {
+			projects.put(key, project);
+		}
+		return project;
+	}
+
+	/**
+	 * Logs number of cache hits and misses on debug level.
+	 *
+	 * @param log
+	 *            maven log.
+	 */
+	public synchronized void logStatistics(final Log log) {
+		log.debug("POM project cache: " + hits + " hits, " + misses + " misses, " + projects.size()
+				+ " projects remembered");
+	}
+
+	private String calculateKey(final Artifact pomArtifact, final List remoteRepositories) {
+		StringBuilder key = new StringBuilder();
+		key.append(pomArtifact.getGroupId()).append(':').append(pomArtifact.getArtifactId()).append(':')
+				.append(pomArtifact.getVersion());
+		if (remoteRepositories != null) {
+			for (Object repoObj : remoteRepositories) {
+				key.append('|').append(((ArtifactRepository) repoObj).getUrl());
+			}
+		}
+		return key.toString();
+	}
+
+}
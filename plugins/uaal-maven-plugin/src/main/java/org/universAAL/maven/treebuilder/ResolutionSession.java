@@ -0,0 +1,122 @@
+/*
+See the NOTICE file distributed with this work for additional
+information regarding copyright ownership
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.universAAL.maven.treebuilder;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.Log;
+import org.universAAL.maven.BundleInfo;
+import org.universAAL.maven.BundleInfoIndex;
+
+/**
+ * Resolution state shared by all ExecutionListCreators working in the same
+ * maven session. In a reactor build each module creates its own execution
+ * list, but most of them share the middleware subgraph. Thanks to the
+ * session, POM projects and bundle classifications of released artifacts are
+ * obtained only by the first module which needs them.
+ *
+ * Dependency trees themselves are not shared, because conflicts are mediated
+ * separately for each module and the same subtree can be resolved
+ * differently. SNAPSHOT artifacts are not shared either, because modules of
+ * the reactor can change them during the build.
+ */
+public class ResolutionSession {
+
+	/**
+	 * Sessions indexed by maven sessions. Entries disappear together with
+	 * maven sessions.
+	 */
+	private static final Map<MavenSession, ResolutionSession> SESSIONS =
+			new WeakHashMap<MavenSession, ResolutionSession>();
+
+	private PomProjectCache pomProjectCache = new PomProjectCache();
+
+	private Map<String, BundleInfo> releasedBundles = new ConcurrentHashMap<String, BundleInfo>();
+
+	private BundleInfoIndex bundleInfoIndex;
+
+	/**
+	 * Creates resolution session.
+	 *
+	 * @param log
+	 *            object for logging
+	 * @param localRepository
+	 *            maven local repository
+	 */
+	public ResolutionSession(final Log log, final ArtifactRepository localRepository) {
+		bundleInfoIndex = BundleInfoIndex.inLocalRepository(log, localRepository);
+	}
+
+	/**
+	 * Gets resolution session of given maven session. The session is created
+	 * if it does not exist yet.
+	 *
+	 * @param session
+	 *            maven session, if null a new resolution session is returned.
+	 * @param log
+	 *            object for logging
+	 * @param localRepository
+	 *            maven local repository
+	 * @return the resolution session
+	 */
+	public static ResolutionSession forSession(final MavenSession session, final Log log,
+			final ArtifactRepository localRepository) {
+		if (session == null) {
+			return new ResolutionSession(log, localRepository);
+		}
+		synchronized (SESSIONS) {
+			ResolutionSession resolutionSession = SESSIONS.get(session);
+			if (resolutionSession == null) {
+				resolutionSession = new ResolutionSession(log, localRepository);
+				SESSIONS.put(session, resolutionSession);
+			}
+			return resolutionSession;
+		}
+	}
+
+	/**
+	 * Gets cache of POM projects of released artifacts.
+	 *
+	 * @return the cache.
+	 */
+	public PomProjectCache getPomProjectCache() {
+		return pomProjectCache;
+	}
+
+	/**
+	 * Gets bundle information of released artifacts indexed by artifact id.
+	 *
+	 * @return thread safe map.
+	 */
+	public Map<String, BundleInfo> getReleasedBundles() {
+		return releasedBundles;
+	}
+
+	/**
+	 * Gets persistent index of OSGi headers.
+	 *
+	 * @return the index.
+	 */
+	public BundleInfoIndex getBundleInfoIndex() {
+		return bundleInfoIndex;
+	}
+
+}
@@ -0,0 +1,227 @@
+/*
+See the NOTICE file distributed with this work for additional
+information regarding copyright ownership
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.universAAL.maven.treebuilder;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Timers and counters of the resolution performed by ExecutionListCreator.
+ * Phases can be nested, e.g. tree building includes POM building and
+ * metadata retrieval. Phases executed concurrently (POM building of
+ * provisions, JAR inspection) are summed over all threads, so they can exceed
+ * the wall clock time. All methods are thread safe.
+ */
+public class ResolutionStats {
+
+	public static final String POM_BUILDING = "pomBuilding";
+
+	public static final String METADATA_RETRIEVAL = "metadataRetrieval";
+
+	public static final String CONFLICT_RESOLUTION = "conflictResolution";
+
+	public static final String TREE_BUILDING = "treeBuilding";
+
+	public static final String JAR_INSPECTION = "jarInspection";
+
+	public static final String FLATTENING = "flattening";
+
+	public static final String FILE_WRITING = "fileWriting";
+
+	public static final String POMS_BUILT = "pomsBuilt";
+
+	public static final String POM_CACHE_HITS = "pomCacheHits";
+
+	public static final String METADATA_LOOKUPS = "metadataLookups";
+
+	public static final String CONFLICTS = "conflicts";
+
+	public static final String NODES_VISITED = "nodesVisited";
+
+	public static final String JARS_OPENED = "jarsOpened";
+
+	/**
+	 * Phases with their descriptions, in the order they are reported.
+	 */
+	private static final String[][] PHASES = { { TREE_BUILDING, "dependency tree building" },
+			{ POM_BUILDING, "  POM building" }, { METADATA_RETRIEVAL, "  metadata retrieval" },
+			{ CONFLICT_RESOLUTION, "  conflict resolution" }, { FLATTENING, "launch order flattening" },
+			{ JAR_INSPECTION, "  JAR inspection" }, { FILE_WRITING, "file writing" } };
+
+	/**
+	 * Counters with their descriptions, in the order they are reported.
+	 */
+	private static final String[][] COUNTERS = { { POMS_BUILT, "POMs built" },
+			{ POM_CACHE_HITS, "POM cache hits" }, { METADATA_LOOKUPS, "metadata lookups" },
+			{ CONFLICTS, "version conflicts" }, { NODES_VISITED, "nodes visited" },
+			{ JARS_OPENED, "JARs opened" } };
+
+	/**
+	 * Nanoseconds spent in each phase. The map is filled in the constructor
+	 * and never modified later.
+	 */
+	private Map<String, AtomicLong> times = new LinkedHashMap<String, AtomicLong>();
+
+	private Map<String, AtomicLong> counters = new LinkedHashMap<String, AtomicLong>();
+
+	public ResolutionStats() {
+		for (String[] phase : PHASES) {
+			times.put(phase[0], new AtomicLong());
+		}
+		for (String[] counter : COUNTERS) {
+			counters.put(counter[0], new AtomicLong());
+		}
+	}
+
+	/**
+	 * Gets start time for a phase which is later passed to stop.
+	 *
+	 * @return current value of the system timer.
+	 */
+	public static long start() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Adds time elapsed since the start to the phase.
+	 *
+	 * @param phase
+	 *            one of the phase constants.
+	 * @param start
+	 *            value returned by the start method.
+	 */
+	public void stop(final String phase, final long start) {
+		times.get(phase).addAndGet(System.nanoTime() - start);
+	}
+
+	/**
+	 * Increments the counter by one.
+	 *
+	 * @param counter
+	 *            one of the counter constants.
+	 */
+	public void increment(final String counter) {
+		counters.get(counter).incrementAndGet();
+	}
+
+	/**
+	 * Gets time spent in the phase.
+	 *
+	 * @param phase
+	 *            one of the phase constants.
+	 * @return time in milliseconds.
+	 */
+	public long getTimeMillis(final String phase) {
+		return times.get(phase).get() / 1000000;
+	}
+
+	/**
+	 * Gets value of the counter.
+	 *
+	 * @param counter
+	 *            one of the counter constants.
+	 * @return the value.
+	 */
+	public long getCount(final String counter) {
+		return counters.get(counter).get();
+	}
+
+	/**
+	 * Logs summary of all phases and counters on info level.
+	 *
+	 * @param log
+	 *            maven log.
+	 */
+	public void logSummary(final Log log) {
+		log.info("Resolution statistics:");
+		for (String[] phase : PHASES) {
+			log.info(String.format("  %-32s %8d ms", phase[1], getTimeMillis(phase[0])));
+		}
+		for (String[] counter : COUNTERS) {
+			log.info(String.format("  %-32s %8d", counter[1], getCount(counter[0])));
+		}
+	}
+
+	/**
+	 * Writes all phases and counters to a JSON file, so that they can be
+	 * tracked between builds.
+	 *
+	 * @param file
+	 *            the JSON file, its directory is created if needed.
+	 * @param goal
+	 *            name of the goal which performed the resolution.
+	 * @param projectId
+	 *            id of the project for which the resolution was performed.
+	 * @throws IOException
+	 *             if the file cannot be written.
+	 */
+	public void writeJson(final File file, final String goal, final String projectId) throws IOException {
+		StringBuilder json = new StringBuilder();
+		json.append("{\n");
+		json.append("  \"goal\": ").append(quote(goal)).append(",\n");
+		json.append("  \"project\": ").append(quote(projectId)).append(",\n");
+		json.append("  \"timestamp\": ").append(System.currentTimeMillis()).append(",\n");
+		json.append("  \"timesMillis\": {");
+		appendValues(json, PHASES, true);
+		json.append("},\n");
+		json.append("  \"counters\": {");
+		appendValues(json, COUNTERS, false);
+		json.append("}\n");
+		json.append("}\n");
+		file.getParentFile().mkdirs();
+		BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, false),
+				"UTF-8"));
+		try {
+			writer.write(json.toString());
+		} finally {
+			writer.close();
+		}
+	}
+
+	private void appendValues(final StringBuilder json, final String[][] names, final boolean phases) {
+		for (int i = 0; i < names.length; i++) {
+			String name = names[i][0];
+			json.append(i == 0 ? "\n" : ",\n");
+			json.append("    ").append(quote(name)).append(": ");
+			json.append(phases ? getTimeMillis(name) : getCount(name));
+		}
+		json.append("\n  ");
+	}
+
+	private static String quote(final String value) {
+		if (value == null) {
+			return "null";
+		}
+		StringBuilder quoted = new StringBuilder("\"");
+		for (char c : value.toCharArray()) {
+			if (c == '"' || c == '\\') {
+				quoted.append('\\');
+			}
+			quoted.append(c);
+		}
+		return quoted.append('"').toString();
+	}
+
+}
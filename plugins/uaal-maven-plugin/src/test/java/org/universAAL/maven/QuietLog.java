@@ -0,0 +1,41 @@
+/*
+See the NOTICE file distributed with this work for additional
+information regarding copyright ownership
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.universAAL.maven;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+/**
+ * Log which drops debug and info messages. Used when resolving large
+ * synthetic graphs, so that console output is neither measured nor flooded.
+ */
+public class QuietLog extends SystemStreamLog {
+
+	public boolean isDebugEnabled() {
+		return false;
+	}
+
+	public boolean isInfoEnabled() {
+		return false;
+	}
+
+	public void debug(final CharSequence content) {
+	}
+
+	public void info(final CharSequence content) {
+	}
+
+}
@@ -0,0 +1,648 @@
+/*
+See the NOTICE file distributed with this work for additional
+information regarding copyright ownership
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.universAAL.maven;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.Manifest;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.factory.ArtifactFactory;
+import org.apache.maven.artifact.factory.DefaultArtifactFactory;
+import org.apache.maven.artifact.handler.manager.DefaultArtifactHandlerManager;
+import org.apache.maven.artifact.metadata.ArtifactMetadataRetrievalException;
+import org.apache.maven.artifact.metadata.ArtifactMetadataSource;
+import org.apache.maven.artifact.metadata.ResolutionGroup;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.repository.DefaultArtifactRepository;
+import org.apache.maven.artifact.repository.layout.DefaultRepositoryLayout;
+import org.apache.maven.artifact.resolver.ArtifactNotFoundException;
+import org.apache.maven.artifact.resolver.ArtifactResolutionException;
+import org.apache.maven.artifact.resolver.ArtifactResolutionResult;
+import org.apache.maven.artifact.resolver.ArtifactResolver;
+import org.apache.maven.artifact.resolver.filter.ArtifactFilter;
+import org.apache.maven.artifact.versioning.ArtifactVersion;
+import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
+import org.apache.maven.artifact.versioning.InvalidVersionSpecificationException;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Profile;
+import org.apache.maven.profiles.ProfileManager;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.MavenProjectBuilder;
+import org.apache.maven.project.ModelUtils;
+import org.apache.maven.project.ProjectBuilderConfiguration;
+import org.apache.maven.project.ProjectBuildingException;
+import org.apache.maven.wagon.events.TransferListener;
+
+/**
+ * Offline stand-in for the maven components used by ExecutionListCreator:
+ * ArtifactMetadataSource, MavenProjectBuilder and ArtifactResolver. POM
+ * models are kept in memory, bundle jars are created in the local repository
+ * directory when they are resolved for the first time. Thanks to that large
+ * dependency graphs can be resolved in tests and benchmarks without network
+ * access and without a populated local repository.
+ *
+ * Graphs can be generated with the generate method or put together with
+ * addProject and addDependency. Calls of the components are counted, so that
+ * tests can check how much work was avoided by caches.
+ */
+public class SyntheticRepository implements ArtifactMetadataSource, MavenProjectBuilder, ArtifactResolver {
+
+	public static final String MIDDLEWARE_GROUP_ID = "org.universAAL.middleware";
+
+	public static final String GROUP_ID = "org.universAAL.synthetic";
+
+	public static final String OLD_VERSION = "1.0.0";
+
+	public static final String NEW_VERSION = "1.1.0";
+
+	/**
+	 * Number of dependencies declared by each generated artifact which is not
+	 * on the lowest level of the graph.
+	 */
+	public static final int FAN_OUT = 3;
+
+	private static final String[] VERSIONS = { OLD_VERSION, NEW_VERSION };
+
+	/**
+	 * Middleware artifacts are released together, so they are never in
+	 * conflict.
+	 */
+	private static final String[] MIDDLEWARE_VERSIONS = { NEW_VERSION };
+
+	private Map<String, Model> models = new HashMap<String, Model>();
+
+	/**
+	 * Versions of each artifact indexed by groupId:artifactId.
+	 */
+	private Map<String, List<String>> versions = new LinkedHashMap<String, List<String>>();
+
+	private Set<String> nonBundles = new HashSet<String>();
+
+	private AtomicInteger projectBuilds = new AtomicInteger();
+
+	private AtomicInteger activeProjectBuilds = new AtomicInteger();
+
+	private AtomicInteger maxActiveProjectBuilds = new AtomicInteger();
+
+	private AtomicInteger metadataRetrievals = new AtomicInteger();
+
+	private AtomicInteger resolutions = new AtomicInteger();
+
+	private AtomicInteger activeResolutions = new AtomicInteger();
+
+	private AtomicInteger maxActiveResolutions = new AtomicInteger();
+
+	private volatile long resolutionDelay = 0;
+
+	private ArtifactFactory artifactFactory;
+
+	private ArtifactRepository localRepository;
+
+	/**
+	 * Creates repository which keeps created jars in given directory.
+	 *
+	 * @param basedir
+	 *            directory of the local repository.
+	 * @throws IOException
+	 *             if the directory cannot be used as a repository.
+	 */
+	public SyntheticRepository(final File basedir) throws IOException {
+		this.artifactFactory = createArtifactFactory();
+		this.localRepository = new DefaultArtifactRepository("local", basedir.toURI().toURL().toString(),
+				new DefaultRepositoryLayout());
+	}
+
+	/**
+	 * Creates artifact factory outside of plexus container. Its handler
+	 * manager is injected the same way as plexus does it, handlers are
+	 * created on demand for each type.
+	 */
+	private static ArtifactFactory createArtifactFactory() {
+		try {
+			DefaultArtifactHandlerManager handlerManager = new DefaultArtifactHandlerManager();
+			Field handlers = DefaultArtifactHandlerManager.class.getDeclaredField("artifactHandlers");
+			handlers.setAccessible(true);
+			handlers.set(handlerManager, new HashMap());
+			DefaultArtifactFactory factory = new DefaultArtifactFactory();
+			Field manager = DefaultArtifactFactory.class.getDeclaredField("artifactHandlerManager");
+			manager.setAccessible(true);
+			manager.set(factory, handlerManager);
+			return factory;
+		} catch (Exception e) {
+			throw new IllegalStateException("Cannot create artifact factory", e);
+		}
+	}
+
+	/**
+	 * Generates layered dependency graph. Artifacts on each level depend only
+	 * on artifacts from lower levels, so the graph is acyclic. The lowest
+	 * level consists of middleware artifacts. Other artifacts are published
+	 * in two versions and dependencies usually point to the newer one. Only
+	 * newer versions declare dependencies, older ones are leaves, so an
+	 * artifact omitted for conflict never takes away a subtree referred to
+	 * from other parts of the tree. Generated project which depends on all
+	 * artifacts of the top level is returned.
+	 *
+	 * @param depth
+	 *            number of levels.
+	 * @param width
+	 *            number of artifacts on each level.
+	 * @param conflictDensity
+	 *            probability that a dependency points to the older version of
+	 *            an artifact, which causes a version conflict.
+	 * @param seed
+	 *            seed of the generator, the same seed gives the same graph.
+	 * @return pom artifact of the generated root project.
+	 */
+	public Artifact generate(final int depth, final int width, final double conflictDensity, final long seed) {
+		Random random = new Random(seed);
+		for (int level = 0; level < depth; level++) {
+			String groupId = level == 0 ? MIDDLEWARE_GROUP_ID : GROUP_ID;
+			for (int i = 0; i < width; i++) {
+				String artifactId = artifactId(level, i);
+				if (level > 0 && random.nextInt(10) == 0) {
+					addNonBundle(groupId, artifactId);
+				}
+				for (String version : level == 0 ? MIDDLEWARE_VERSIONS : VERSIONS) {
+					Model model = addProject(groupId, artifactId, version);
+					for (int d = 0; level > 0 && NEW_VERSION.equals(version) && d < FAN_OUT; d++) {
+						int depLevel = random.nextInt(level);
+						String depVersion = NEW_VERSION;
+						if (depLevel > 0 && random.nextDouble() < conflictDensity) {
+							depVersion = OLD_VERSION;
+						}
+						Dependency dependency = createDependency(depLevel == 0 ? MIDDLEWARE_GROUP_ID : GROUP_ID,
+								artifactId(depLevel, random.nextInt(width)), depVersion);
+						addDependency(model, dependency, random.nextInt(5) == 0);
+					}
+				}
+			}
+		}
+		Model root = addProject(GROUP_ID, "root", NEW_VERSION);
+		for (int i = 0; i < width; i++) {
+			root.addDependency(createDependency(depth > 1 ? GROUP_ID : MIDDLEWARE_GROUP_ID, artifactId(depth - 1, i),
+					NEW_VERSION));
+		}
+		return artifactFactory.createProjectArtifact(GROUP_ID, "root", NEW_VERSION);
+	}
+
+	private static String artifactId(final int level, final int index) {
+		return "artifact" + level + "." + index;
+	}
+
+	/**
+	 * Adds project with bundle packaging to the repository.
+	 *
+	 * @param groupId
+	 *            group id of the project.
+	 * @param artifactId
+	 *            artifact id of the project.
+	 * @param version
+	 *            version of the project.
+	 * @return model of the project which can be extended with dependencies.
+	 */
+	public Model addProject(final String groupId, final String artifactId, final String version) {
+		Model model = new Model();
+		model.setGroupId(groupId);
+		model.setArtifactId(artifactId);
+		model.setVersion(version);
+		model.setPackaging("bundle");
+		models.put(groupId + ":" + artifactId + ":" + version, model);
+		String key = groupId + ":" + artifactId;
+		List<String> artifactVersions = versions.get(key);
+		if (artifactVersions == null) {
+			artifactVersions = new ArrayList<String>();
+			versions.put(key, artifactVersions);
+		}
+		artifactVersions.add(version);
+		return model;
+	}
+
+	/**
+	 * Marks artifact as a plain jar. Jars of such artifact are created without
+	 * OSGi headers.
+	 *
+	 * @param groupId
+	 *            group id of the artifact.
+	 * @param artifactId
+	 *            artifact id of the artifact.
+	 */
+	public void addNonBundle(final String groupId, final String artifactId) {
+		nonBundles.add(groupId + ":" + artifactId);
+	}
+
+	/**
+	 * Adds dependency to the model.
+	 *
+	 * @param model
+	 *            model of a project from this repository.
+	 * @param dependency
+	 *            the dependency.
+	 * @param runtime
+	 *            true if the dependency should be declared in the
+	 *            uAAL-Runtime profile instead of regular dependencies.
+	 */
+	public static void addDependency(final Model model, final Dependency dependency, final boolean runtime) {
+		if (runtime) {
+			addRuntimeDependency(model, dependency);
+		} else {
+			model.addDependency(dependency);
+		}
+	}
+
+	/**
+	 * Creates dependency of jar type and default scope.
+	 *
+	 * @param groupId
+	 *            group id of the dependency.
+	 * @param artifactId
+	 *            artifact id of the dependency.
+	 * @param version
+	 *            version or version range of the dependency.
+	 * @return the dependency.
+	 */
+	public static Dependency createDependency(final String groupId, final String artifactId, final String version) {
+		Dependency dependency = new Dependency();
+		dependency.setGroupId(groupId);
+		dependency.setArtifactId(artifactId);
+		dependency.setVersion(version);
+		dependency.setType("jar");
+		return dependency;
+	}
+
+	/**
+	 * Adds dependency to the uAAL-Runtime profile of the model.
+	 */
+	private static void addRuntimeDependency(final Model model, final Dependency dependency) {
+		Profile runtime = null;
+		for (Object profileObj : model.getProfiles()) {
+			if ("uAAL-Runtime".equals(((Profile) profileObj).getId())) {
+				runtime = (Profile) profileObj;
+			}
+		}
+		if (runtime == null) {
+			runtime = new Profile();
+			runtime.setId("uAAL-Runtime");
+			model.addProfile(runtime);
+		}
+		runtime.addDependency(dependency);
+	}
+
+	private Model getModel(final Artifact artifact) throws ProjectBuildingException {
+		Model model = getProject(artifact.getGroupId(), artifact.getArtifactId(), artifact.getVersion());
+		if (model == null) {
+			throw new ProjectBuildingException(artifact.getId(), "No synthetic POM for " + artifact.getId());
+		}
+		return model;
+	}
+
+	/**
+	 * Gets model of a project from this repository.
+	 *
+	 * @param groupId
+	 *            group id of the project.
+	 * @param artifactId
+	 *            artifact id of the project.
+	 * @param version
+	 *            version of the project.
+	 * @return the model or null if there is no such project.
+	 */
+	public Model getProject(final String groupId, final String artifactId, final String version) {
+		return models.get(groupId + ":" + artifactId + ":" + version);
+	}
+
+	/**
+	 * Checks whether jars of the artifact are created with OSGi headers.
+	 *
+	 * @param groupId
+	 *            group id of the artifact.
+	 * @param artifactId
+	 *            artifact id of the artifact.
+	 * @return false if the artifact was marked as a plain jar.
+	 */
+	public boolean isBundle(final String groupId, final String artifactId) {
+		return !nonBundles.contains(groupId + ":" + artifactId);
+	}
+
+	public ArtifactFactory getArtifactFactory() {
+		return artifactFactory;
+	}
+
+	public ArtifactRepository getLocalRepository() {
+		return localRepository;
+	}
+
+	/**
+	 * Gets number of projects built with buildFromRepository.
+	 *
+	 * @return the number of builds.
+	 */
+	public int getProjectBuilds() {
+		return projectBuilds.get();
+	}
+
+	/**
+	 * Gets the highest number of projects which were being built with
+	 * buildFromRepository at the same time.
+	 *
+	 * @return the number of concurrent builds.
+	 */
+	public int getMaxActiveProjectBuilds() {
+		return maxActiveProjectBuilds.get();
+	}
+
+	/**
+	 * Gets the highest number of artifacts which were being resolved at the
+	 * same time.
+	 *
+	 * @return the number of concurrent resolutions.
+	 */
+	public int getMaxActiveResolutions() {
+		return maxActiveResolutions.get();
+	}
+
+	/**
+	 * Makes each resolution of an artifact take at least given time, like a
+	 * download from a remote repository would.
+	 *
+	 * @param resolutionDelay
+	 *            delay in milliseconds.
+	 */
+	public void setResolutionDelay(final long resolutionDelay) {
+		this.resolutionDelay = resolutionDelay;
+	}
+
+	private static void recordActive(final int active, final AtomicInteger maxActive) {
+		int max;
+		while ((max = maxActive.get()) < active) {
+			maxActive.compareAndSet(max, active);
+		}
+	}
+
+	/**
+	 * Gets number of metadata retrievals, including retrievals of available
+	 * versions.
+	 *
+	 * @return the number of retrievals.
+	 */
+	public int getMetadataRetrievals() {
+		return metadataRetrievals.get();
+	}
+
+	/**
+	 * Gets number of resolved artifacts.
+	 *
+	 * @return the number of resolutions.
+	 */
+	public int getResolutions() {
+		return resolutions.get();
+	}
+
+	/* ArtifactMetadataSource */
+
+	public ResolutionGroup retrieve(final Artifact artifact, final ArtifactRepository localRepository,
+			final List remoteRepositories) throws ArtifactMetadataRetrievalException {
+		metadataRetrievals.incrementAndGet();
+		Model model;
+		try {
+			model = getModel(artifact);
+		} catch (ProjectBuildingException e) {
+			throw new ArtifactMetadataRetrievalException(e.getMessage(), e);
+		}
+		Set<Artifact> artifacts = new LinkedHashSet<Artifact>();
+		for (Object dependencyObj : model.getDependencies()) {
+			Dependency d = (Dependency) dependencyObj;
+			try {
+				Artifact dependencyArtifact = artifactFactory.createDependencyArtifact(d.getGroupId(),
+						d.getArtifactId(), VersionRange.createFromVersionSpec(d.getVersion()), d.getType(),
+						d.getClassifier(), d.getScope(), artifact.getScope(), d.isOptional());
+				if (dependencyArtifact == null) {
+					continue;
+				}
+				ArtifactFilter filter = artifact.getDependencyFilter();
+				if (filter != null && !filter.include(dependencyArtifact)) {
+					continue;
+				}
+				dependencyArtifact.setDependencyFilter(filter);
+				artifacts.add(dependencyArtifact);
+			} catch (InvalidVersionSpecificationException e) {
+				throw new ArtifactMetadataRetrievalException(e.getMessage(), e);
+			}
+		}
+		Artifact pomArtifact = artifactFactory.createProjectArtifact(artifact.getGroupId(), artifact.getArtifactId(),
+				artifact.getVersion());
+		return new ResolutionGroup(pomArtifact, artifacts, remoteRepositories);
+	}
+
+	public Artifact retrieveRelocatedArtifact(final Artifact artifact, final ArtifactRepository localRepository,
+			final List remoteRepositories) {
+		return artifact;
+	}
+
+	public List retrieveAvailableVersions(final Artifact artifact, final ArtifactRepository localRepository,
+			final List remoteRepositories) {
+		metadataRetrievals.incrementAndGet();
+		List<ArtifactVersion> availableVersions = new ArrayList<ArtifactVersion>();
+		List<String> artifactVersions = versions.get(artifact.getGroupId() + ":" + artifact.getArtifactId());
+		if (artifactVersions != null) {
+			for (String version : artifactVersions) {
+				availableVersions.add(new DefaultArtifactVersion(version));
+			}
+		}
+		return availableVersions;
+	}
+
+	/* MavenProjectBuilder */
+
+	public MavenProject buildFromRepository(final Artifact artifact, final List remoteRepositories,
+			final ArtifactRepository localRepository) throws ProjectBuildingException {
+		projectBuilds.incrementAndGet();
+		recordActive(activeProjectBuilds.incrementAndGet(), maxActiveProjectBuilds);
+		try {
+			Model model = getModel(artifact);
+			MavenProject project = new MavenProject(ModelUtils.cloneModel(model));
+			project.setArtifact(artifactFactory.createBuildArtifact(model.getGroupId(), model.getArtifactId(),
+					model.getVersion(), model.getPackaging()));
+			project.setRemoteArtifactRepositories(new ArrayList());
+			return project;
+		} finally {
+			activeProjectBuilds.decrementAndGet();
+		}
+	}
+
+	public MavenProject buildFromRepository(final Artifact artifact, final List remoteRepositories,
+			final ArtifactRepository localRepository, final boolean allowStubModel) throws ProjectBuildingException {
+		return buildFromRepository(artifact, remoteRepositories, localRepository);
+	}
+
+	public MavenProject build(final File pom, final ArtifactRepository localRepository,
+			final ProfileManager profileManager) {
+		throw new UnsupportedOperationException();
+	}
+
+	public MavenProject build(final File pom, final ArtifactRepository localRepository,
+			final ProfileManager profileManager, final boolean checkDistributionManagementStatus) {
+		throw new UnsupportedOperationException();
+	}
+
+	public MavenProject build(final File pom, final ProjectBuilderConfiguration configuration) {
+		throw new UnsupportedOperationException();
+	}
+
+	public MavenProject build(final File pom, final ProjectBuilderConfiguration configuration,
+			final boolean checkDistributionManagementStatus) {
+		throw new UnsupportedOperationException();
+	}
+
+	public MavenProject buildWithDependencies(final File pom, final ArtifactRepository localRepository,
+			final ProfileManager profileManager, final TransferListener transferListener) {
+		throw new UnsupportedOperationException();
+	}
+
+	public MavenProject buildWithDependencies(final File pom, final ArtifactRepository localRepository,
+			final ProfileManager profileManager) {
+		throw new UnsupportedOperationException();
+	}
+
+	public MavenProject buildStandaloneSuperProject(final ArtifactRepository localRepository) {
+		throw new UnsupportedOperationException();
+	}
+
+	public MavenProject buildStandaloneSuperProject(final ArtifactRepository localRepository,
+			final ProfileManager profileManager) {
+		throw new UnsupportedOperationException();
+	}
+
+	public MavenProject buildStandaloneSuperProject(final ProjectBuilderConfiguration configuration) {
+		throw new UnsupportedOperationException();
+	}
+
+	public void calculateConcreteState(final MavenProject project, final ProjectBuilderConfiguration configuration) {
+		throw new UnsupportedOperationException();
+	}
+
+	public void calculateConcreteState(final MavenProject project, final ProjectBuilderConfiguration configuration,
+			final boolean processResources) {
+		throw new UnsupportedOperationException();
+	}
+
+	/* ArtifactResolver */
+
+	public void resolve(final Artifact artifact, final List remoteRepositories,
+			final ArtifactRepository localRepository) throws ArtifactResolutionException, ArtifactNotFoundException {
+		resolutions.incrementAndGet();
+		recordActive(activeResolutions.incrementAndGet(), maxActiveResolutions);
+		try {
+			File jar = new File(localRepository.getBasedir(), localRepository.pathOf(artifact));
+			synchronized (this) {
+				if (!jar.exists()) {
+					try {
+						writeJar(jar, artifact);
+					} catch (IOException e) {
+						throw new ArtifactResolutionException(e.getMessage(), artifact);
+					}
+				}
+			}
+			artifact.setFile(jar);
+			artifact.setResolved(true);
+			if (resolutionDelay > 0) {
+				Thread.sleep(resolutionDelay);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			activeResolutions.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Writes empty jar with OSGi headers, unless the artifact was generated as
+	 * a plain jar.
+	 */
+	private void writeJar(final File jar, final Artifact artifact) throws IOException {
+		jar.getParentFile().mkdirs();
+		Manifest manifest = new Manifest();
+		Attributes attributes = manifest.getMainAttributes();
+		attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		if (isBundle(artifact.getGroupId(), artifact.getArtifactId())) {
+			attributes.putValue("Bundle-ManifestVersion", "2");
+			attributes.putValue("Bundle-SymbolicName", artifact.getGroupId() + "." + artifact.getArtifactId());
+			attributes.putValue("Bundle-Version", artifact.getVersion());
+		}
+		JarOutputStream out = new JarOutputStream(new FileOutputStream(jar), manifest);
+		out.close();
+	}
+
+	public void resolveAlways(final Artifact artifact, final List remoteRepositories,
+			final ArtifactRepository localRepository) throws ArtifactResolutionException, ArtifactNotFoundException {
+		resolve(artifact, remoteRepositories, localRepository);
+	}
+
+	public ArtifactResolutionResult resolveTransitively(final Set artifacts, final Artifact originatingArtifact,
+			final List remoteRepositories, final ArtifactRepository localRepository,
+			final ArtifactMetadataSource source) {
+		throw new UnsupportedOperationException();
+	}
+
+	public ArtifactResolutionResult resolveTransitively(final Set artifacts, final Artifact originatingArtifact,
+			final List remoteRepositories, final ArtifactRepository localRepository,
+			final ArtifactMetadataSource source, final List listeners) {
+		throw new UnsupportedOperationException();
+	}
+
+	public ArtifactResolutionResult resolveTransitively(final Set artifacts, final Artifact originatingArtifact,
+			final ArtifactRepository localRepository, final List remoteRepositories,
+			final ArtifactMetadataSource source, final ArtifactFilter filter) {
+		throw new UnsupportedOperationException();
+	}
+
+	public ArtifactResolutionResult resolveTransitively(final Set artifacts, final Artifact originatingArtifact,
+			final Map managedVersions, final ArtifactRepository localRepository, final List remoteRepositories,
+			final ArtifactMetadataSource source) {
+		throw new UnsupportedOperationException();
+	}
+
+	public ArtifactResolutionResult resolveTransitively(final Set artifacts, final Artifact originatingArtifact,
+			final Map managedVersions, final ArtifactRepository localRepository, final List remoteRepositories,
+			final ArtifactMetadataSource source, final ArtifactFilter filter) {
+		throw new UnsupportedOperationException();
+	}
+
+	public ArtifactResolutionResult resolveTransitively(final Set artifacts, final Artifact originatingArtifact,
+			final Map managedVersions, final ArtifactRepository localRepository, final List remoteRepositories,
+			final ArtifactMetadataSource source, final ArtifactFilter filter, final List listeners) {
+		throw new UnsupportedOperationException();
+	}
+
+}
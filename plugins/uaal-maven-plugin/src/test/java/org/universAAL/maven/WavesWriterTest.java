@@ -0,0 +1,89 @@
+/*
+See the NOTICE file distributed with this work for additional
+information regarding copyright ownership
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.universAAL.maven;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks start levels assigned to dependency waves by WavesWriter.
+ */
+public class WavesWriterTest extends TestCase {
+
+	public void testStartLevelIsAppended() {
+		assertEquals("mvn:g/a/1.0@5", WavesWriter.withStartLevel("mvn:g/a/1.0", 5));
+		assertEquals("wrap:mvn:g/a/1.0@5", WavesWriter.withStartLevel("wrap:mvn:g/a/1.0", 5));
+	}
+
+	public void testStartLevelIsInsertedBeforeNostart() {
+		assertEquals("mvn:g/a/1.0@5@nostart", WavesWriter.withStartLevel("mvn:g/a/1.0@nostart", 5));
+	}
+
+	public void testConfiguredStartLevelIsKept() {
+		assertEquals("mvn:g/a/1.0@3", WavesWriter.withStartLevel("mvn:g/a/1.0@3", 5));
+		assertEquals("mvn:g/a/1.0@3@nostart", WavesWriter.withStartLevel("mvn:g/a/1.0@3@nostart", 5));
+	}
+
+	public void testCompositeIsWrittenWithoutStartLevel() {
+		assertEquals("mvn:g/mw.composite/1.0/composite",
+				WavesWriter.withStartLevel("mvn:g/mw.composite/1.0/composite", 5));
+	}
+
+	public void testElementsAreGroupedByWave() throws Exception {
+		File wavesFile = File.createTempFile("artifact", ".waves");
+		try {
+			new WavesWriter(wavesFile, 10).write(
+					Arrays.asList("mvn:g/mw.composite/1.0/composite", "mvn:g/b/1.0", "mvn:g/c/1.0@nostart",
+							"mvn:g/a/1.0"),
+					Arrays.asList(1, 2, 3, 2));
+			List<String> lines = new ArrayList<String>();
+			BufferedReader reader = new BufferedReader(new FileReader(wavesFile));
+			try {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					lines.add(line);
+				}
+			} finally {
+				reader.close();
+			}
+			assertEquals(Arrays.asList("scan-composite:mvn:g/mw.composite/1.0/composite",
+					"scan-bundle:mvn:g/b/1.0@11", "scan-bundle:mvn:g/a/1.0@11", "scan-bundle:mvn:g/c/1.0@12@nostart"),
+					lines);
+		} finally {
+			wavesFile.delete();
+		}
+	}
+
+	public void testWavesMustMatchExecutionList() throws Exception {
+		File wavesFile = File.createTempFile("artifact", ".waves");
+		try {
+			new WavesWriter(wavesFile, 10).write(Arrays.asList("mvn:g/a/1.0"), Arrays.asList(1, 2));
+			fail("Waves of missing elements should be rejected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		} finally {
+			wavesFile.delete();
+		}
+	}
+
+}
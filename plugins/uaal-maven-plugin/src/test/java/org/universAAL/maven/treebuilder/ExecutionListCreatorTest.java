@@ -0,0 +1,264 @@
+/*
+See the NOTICE file distributed with this work for additional
+information regarding copyright ownership
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.universAAL.maven.treebuilder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Profile;
+import org.apache.maven.project.MavenProject;
+import org.universAAL.maven.QuietLog;
+import org.universAAL.maven.SyntheticRepository;
+
+/**
+ * Creates execution lists for synthetic dependency graphs served by
+ * SyntheticRepository.
+ */
+public class ExecutionListCreatorTest extends TestCase {
+
+	private static final long SEED = 20140101L;
+
+	private File repositoryDir;
+
+	private SyntheticRepository repository;
+
+	private MavenProject rootProject;
+
+	protected void setUp() throws Exception {
+		repositoryDir = File.createTempFile("uaal-repository", "");
+		repositoryDir.delete();
+		repositoryDir.mkdirs();
+		repository = new SyntheticRepository(repositoryDir);
+		Artifact rootArtifact = repository.generate(6, 40, 0.2, SEED);
+		rootProject = repository.buildFromRepository(rootArtifact, new ArrayList(),
+				repository.getLocalRepository());
+	}
+
+	protected void tearDown() throws Exception {
+		delete(repositoryDir);
+	}
+
+	private static void delete(final File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	private ExecutionListCreator createCreator() {
+		return new ExecutionListCreator(new QuietLog(), repository, repository.getArtifactFactory(), repository,
+				repository.getLocalRepository(), new ArrayList(), repository, "true", null);
+	}
+
+	private List<String> createExecutionList(final ExecutionListCreator creator) throws Exception {
+		return creator.createArtifactExecutionList(rootProject, new TreeSet<String>(), false, false);
+	}
+
+	/**
+	 * Splits mvn url of the execution list into groupId, artifactId and
+	 * version.
+	 */
+	private static String[] parse(final String mvnUrl) {
+		String url = mvnUrl;
+		if (url.startsWith("wrap:")) {
+			url = url.substring("wrap:".length());
+		}
+		return url.substring("mvn:".length()).split("/");
+	}
+
+	public void testDependenciesAreLaunchedFirst() throws Exception {
+		List<String> mvnUrls = createExecutionList(createCreator());
+		assertFalse(mvnUrls.isEmpty());
+		Map<String, Integer> positions = new HashMap<String, Integer>();
+		for (int i = 0; i < mvnUrls.size(); i++) {
+			String[] gav = parse(mvnUrls.get(i));
+			assertNull("Duplicated artifact " + mvnUrls.get(i), positions.put(gav[0] + ":" + gav[1], i));
+		}
+		for (String mvnUrl : mvnUrls) {
+			String[] gav = parse(mvnUrl);
+			Model model = repository.getProject(gav[0], gav[1], gav[2]);
+			assertNotNull(mvnUrl, model);
+			List<Dependency> dependencies = new ArrayList<Dependency>(model.getDependencies());
+			for (Object profileObj : model.getProfiles()) {
+				dependencies.addAll(((Profile) profileObj).getDependencies());
+			}
+			int position = positions.get(gav[0] + ":" + gav[1]);
+			for (Dependency dependency : dependencies) {
+				Integer dependencyPosition = positions.get(dependency.getGroupId() + ":"
+						+ dependency.getArtifactId());
+				assertNotNull(dependency + " of " + mvnUrl + " is not launched", dependencyPosition);
+				assertTrue(dependency + " is launched after " + mvnUrl, dependencyPosition < position);
+			}
+		}
+	}
+
+	public void testDependenciesAreInEarlierWaves() throws Exception {
+		ExecutionListCreator creator = createCreator();
+		List<String> mvnUrls = createExecutionList(creator);
+		List<Integer> waves = creator.getLaunchWaves();
+		assertEquals(mvnUrls.size(), waves.size());
+		Map<String, Integer> wavesByArtifact = new HashMap<String, Integer>();
+		for (int i = 0; i < mvnUrls.size(); i++) {
+			String[] gav = parse(mvnUrls.get(i));
+			wavesByArtifact.put(gav[0] + ":" + gav[1], waves.get(i));
+		}
+		for (int i = 0; i < mvnUrls.size(); i++) {
+			String[] gav = parse(mvnUrls.get(i));
+			Model model = repository.getProject(gav[0], gav[1], gav[2]);
+			List<Dependency> dependencies = new ArrayList<Dependency>(model.getDependencies());
+			for (Object profileObj : model.getProfiles()) {
+				dependencies.addAll(((Profile) profileObj).getDependencies());
+			}
+			int highestDependencyWave = 0;
+			for (Dependency dependency : dependencies) {
+				int dependencyWave = wavesByArtifact.get(dependency.getGroupId() + ":" + dependency.getArtifactId());
+				assertTrue(dependency + " is not in a wave preceding " + mvnUrls.get(i),
+						dependencyWave < waves.get(i));
+				highestDependencyWave = Math.max(highestDependencyWave, dependencyWave);
+			}
+			assertEquals(mvnUrls.get(i), highestDependencyWave + 1, waves.get(i).intValue());
+		}
+	}
+
+	public void testPomsAndCompositesPassWavesThrough() throws Exception {
+		String groupId = "org.universAAL.passthrough";
+		String version = SyntheticRepository.NEW_VERSION;
+		repository.addProject(groupId, "leaf", version);
+		repository.addProject(groupId, "composed", version);
+		Model pom = repository.addProject(groupId, "parent.pom", version);
+		pom.setPackaging("pom");
+		pom.addDependency(SyntheticRepository.createDependency(groupId, "leaf", version));
+		Model composite = repository.addProject(groupId, "feature.composite", version);
+		composite.addDependency(SyntheticRepository.createDependency(groupId, "composed", version));
+		Model bundle = repository.addProject(groupId, "bundle", version);
+		Dependency pomDependency = SyntheticRepository.createDependency(groupId, "parent.pom", version);
+		pomDependency.setType("pom");
+		bundle.addDependency(pomDependency);
+		bundle.addDependency(SyntheticRepository.createDependency(groupId, "feature.composite", version));
+		Model root = repository.addProject(groupId, "root", version);
+		root.addDependency(SyntheticRepository.createDependency(groupId, "bundle", version));
+		MavenProject project = repository.buildFromRepository(
+				repository.getArtifactFactory().createProjectArtifact(groupId, "root", version), new ArrayList(),
+				repository.getLocalRepository());
+
+		ExecutionListCreator creator = createCreator();
+		List<String> mvnUrls = creator.createArtifactExecutionList(project, new TreeSet<String>(), false, false);
+		List<Integer> waves = creator.getLaunchWaves();
+		Map<String, Integer> wavesByArtifact = new HashMap<String, Integer>();
+		for (int i = 0; i < mvnUrls.size(); i++) {
+			wavesByArtifact.put(parse(mvnUrls.get(i))[1], waves.get(i));
+		}
+		assertFalse(wavesByArtifact.containsKey("parent.pom"));
+		assertFalse(wavesByArtifact.containsKey("feature.composite"));
+		assertEquals(Integer.valueOf(1), wavesByArtifact.get("leaf"));
+		assertEquals(Integer.valueOf(1), wavesByArtifact.get("composed"));
+		assertEquals(Integer.valueOf(2), wavesByArtifact.get("bundle"));
+		assertEquals(Integer.valueOf(3), wavesByArtifact.get("root"));
+	}
+
+	public void testNonBundlesAreWrapped() throws Exception {
+		List<String> mvnUrls = createExecutionList(createCreator());
+		int wrapped = 0;
+		for (String mvnUrl : mvnUrls) {
+			String[] gav = parse(mvnUrl);
+			if (gav[1].equals(rootProject.getArtifactId())) {
+				// the project itself is not resolved
+				continue;
+			}
+			assertEquals(mvnUrl, !repository.isBundle(gav[0], gav[1]), mvnUrl.startsWith("wrap:"));
+			if (mvnUrl.startsWith("wrap:")) {
+				wrapped++;
+			}
+		}
+		assertTrue(wrapped > 0);
+	}
+
+	public void testCachesAndThreadsDoNotChangeExecutionList() throws Exception {
+		List<String> expected = createExecutionList(createCreator());
+
+		ResolutionSession session = new ResolutionSession(new QuietLog(), repository.getLocalRepository());
+		ExecutionListCreator creator = createCreator();
+		creator.setResolutionThreads(4);
+		creator.setUseTreeCache(true);
+		repository.setResolutionDelay(1);
+		creator.setResolutionSession(session);
+		assertEquals(expected, createExecutionList(creator));
+		assertEquals("Project builder is not thread-safe", 1, repository.getMaxActiveProjectBuilds());
+		assertEquals("Artifact resolver is not thread-safe", 1, repository.getMaxActiveResolutions());
+
+		int projectBuilds = repository.getProjectBuilds();
+		int resolutions = repository.getResolutions();
+		creator = createCreator();
+		creator.setResolutionSession(session);
+		assertEquals(expected, createExecutionList(creator));
+		assertEquals("Released projects should be taken from the session", projectBuilds,
+				repository.getProjectBuilds());
+		assertEquals("Released bundles should be taken from the session", resolutions,
+				repository.getResolutions());
+	}
+
+	public void testSnapshotsMakeResolutionNotReproducible() throws Exception {
+		ExecutionListCreator creator = createCreator();
+		createExecutionList(creator);
+		assertTrue(creator.isResolutionReproducible());
+
+		repository.addProject(SyntheticRepository.GROUP_ID, "snapshot", "1.0.0-SNAPSHOT");
+		Model rootModel = repository.getProject(rootProject.getGroupId(), rootProject.getArtifactId(),
+				rootProject.getVersion());
+		SyntheticRepository.addDependency(rootModel,
+				SyntheticRepository.createDependency(SyntheticRepository.GROUP_ID, "snapshot", "1.0.0-SNAPSHOT"),
+				false);
+		rootProject = repository.buildFromRepository(rootProject.getArtifact(), new ArrayList(),
+				repository.getLocalRepository());
+		creator = createCreator();
+		assertTrue(createExecutionList(creator).contains("mvn:" + SyntheticRepository.GROUP_ID
+				+ "/snapshot/1.0.0-SNAPSHOT"));
+		assertFalse(creator.isResolutionReproducible());
+	}
+
+	public void testResolutionStatsAreCollected() throws Exception {
+		int projectBuilds = repository.getProjectBuilds();
+		int metadataRetrievals = repository.getMetadataRetrievals();
+		ExecutionListCreator creator = createCreator();
+		List<String> mvnUrls = createExecutionList(creator);
+
+		ResolutionStats stats = creator.getResolutionStats();
+		assertEquals(repository.getProjectBuilds() - projectBuilds, stats.getCount(ResolutionStats.POMS_BUILT));
+		assertEquals(repository.getMetadataRetrievals() - metadataRetrievals,
+				stats.getCount(ResolutionStats.METADATA_LOOKUPS));
+		assertTrue(stats.getCount(ResolutionStats.CONFLICTS) > 0);
+		assertTrue(stats.getCount(ResolutionStats.NODES_VISITED) >= mvnUrls.size());
+		assertEquals(mvnUrls.size() - 1, stats.getCount(ResolutionStats.JARS_OPENED));
+
+		File json = new File(repositoryDir, "target/resolution-stats.json");
+		stats.writeJson(json, "composite", rootProject.getId());
+		assertTrue(json.length() > 0);
+	}
+
+}
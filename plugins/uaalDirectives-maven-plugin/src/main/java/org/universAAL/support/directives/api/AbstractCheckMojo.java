@@ -15,11 +15,16 @@
  ******************************************************************************/
 package org.universAAL.support.directives.api;
 
+import java.io.File;
+import java.io.IOException;
+
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.AbstractMojoExecutionException;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.project.MavenProject;
+import org.universAAL.support.directives.util.CheckResultCache;
+import org.universAAL.support.directives.util.SourceScan;
 
 /**
  * Abstract Mojo that performs a {@link APICheck}.
@@ -44,6 +49,45 @@ public abstract class AbstractCheckMojo extends AbstractMojo {
 	 */
 	private boolean failOnMissMatch;
 
+	/**
+	 * Number of threads testing source files, set with the
+	 * <code>-Ddirective.threads</code> maven option. Files are tested
+	 * sequentially by default, values lower than 1 mean the number of
+	 * available processors.
+	 *
+	 * @parameter expression="${directive.threads}" default-value="1"
+	 */
+	private int threads;
+
+	/**
+	 * Encoding of the source files.
+	 *
+	 * @parameter expression="${project.build.sourceEncoding}" default-value="UTF-8"
+	 */
+	private String encoding;
+
+	/**
+	 * File keeping results of source checks between runs, so that only
+	 * changed files are tested again. Caching is disabled with the
+	 * <code>-Ddirective.cache=false</code> maven option.
+	 *
+	 * @parameter expression="${project.build.directory}/directives.cache"
+	 */
+	private File cacheFile;
+
+	/**
+	 * @parameter expression="${directive.cache}" default-value="true"
+	 */
+	private boolean cache;
+
+	/**
+	 * Version of this plugin, cached results of other versions are discarded.
+	 *
+	 * @parameter default-value="${plugin.version}"
+	 * @readonly
+	 */
+	private String pluginVersion;
+
 	/**
 	 * The maven project.
 	 *
@@ -63,6 +107,22 @@ public abstract class AbstractCheckMojo extends AbstractMojo {
 		failed = false;
 		AbstractMojoExecutionException failedE = null;
 
+		CheckResultCache results = null;
+		if (check instanceof SharedSourceCheck) {
+			SourceScan scan = new SourceScan();
+			scan.setThreads(threads);
+			try {
+				scan.setEncoding(encoding);
+			} catch (IllegalArgumentException e) {
+				throw new MojoExecutionException("Unsupported source encoding " + encoding, e);
+			}
+			if (cache && cacheFile != null) {
+				results = new CheckResultCache(cacheFile, pluginVersion);
+				scan.setCache(results);
+			}
+			((SharedSourceCheck) check).registerSources(scan, mavenProject);
+		}
+
 		try {
 			if (!check.check(mavenProject, getLog())) {
 				failed = true;
@@ -71,6 +131,13 @@ public abstract class AbstractCheckMojo extends AbstractMojo {
 			failed = true;
 			failedE = e;
 		}
+		if (results != null) {
+			try {
+				results.save();
+			} catch (IOException e) {
+				getLog().warn("Unable to save results of source checks: " + e.getMessage());
+			}
+		}
 
 		if (failed && failOnMissMatch) {
 			if (failedE == null) {
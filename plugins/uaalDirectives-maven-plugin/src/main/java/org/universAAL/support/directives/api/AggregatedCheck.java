@@ -21,21 +21,39 @@ import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.project.MavenProject;
+import org.universAAL.support.directives.util.SourceScan;
 
-public abstract class AggregatedCheck implements APIFixableCheck {
+public abstract class AggregatedCheck implements APIFixableCheck, SharedSourceCheck {
 
 	private List<APICheck> checks;
 
+	private SourceScan sourceScan;
+
 	public AggregatedCheck() {
 		checks = getCheckList();
 	}
 
 	public abstract List<APICheck> getCheckList();
 
+	/** {@inheritDoc} */
+	public void registerSources(SourceScan scan, MavenProject mavenProject) {
+		sourceScan = scan;
+		for (APICheck c : checks) {
+			if (c instanceof SharedSourceCheck) {
+				((SharedSourceCheck) c).registerSources(scan, mavenProject);
+			}
+		}
+	}
+
 	/** {@inheritDoc} */
 	public boolean check(MavenProject mavenproject, Log log) throws MojoExecutionException, MojoFailureException {
 		String fMessage = "";
 		String eMessage = "";
+		// all source checks share a single walk over the sources
+		if (sourceScan == null) {
+			registerSources(new SourceScan(), mavenproject);
+		}
+		sourceScan = null;
 		for (APICheck c : checks) {
 			try {
 				c.check(mavenproject, log);
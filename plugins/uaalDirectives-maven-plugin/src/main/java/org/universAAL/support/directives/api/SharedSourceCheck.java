@@ -0,0 +1,37 @@
+/*******************************************************************************
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.universAAL.support.directives.api;
+
+import org.apache.maven.project.MavenProject;
+import org.universAAL.support.directives.util.SourceScan;
+
+/**
+ * {@link APICheck} testing source files which can take its results from a
+ * {@link SourceScan} shared with other checks, instead of walking the sources
+ * by itself.
+ */
+public interface SharedSourceCheck extends APICheck {
+
+	/**
+	 * Registers the sources tested by this check in the scan. The next
+	 * {@link APICheck#check(MavenProject, org.apache.maven.plugin.logging.Log)}
+	 * takes its results from the scan.
+	 *
+	 * @param scan
+	 *            the shared scan.
+	 * @param mavenProject
+	 *            the project which will be checked.
+	 */
+	void registerSources(SourceScan scan, MavenProject mavenProject);
+}
@@ -23,10 +23,11 @@ import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.project.MavenProject;
-import org.universAAL.support.directives.api.APICheck;
-import org.universAAL.support.directives.util.SourceChecker;
-import org.universAAL.support.directives.util.SourceExplorer;
+import org.universAAL.support.directives.api.SharedSourceCheck;
+import org.universAAL.support.directives.util.CacheableSourceChecker;
+import org.universAAL.support.directives.util.SourceContentChecker;
 import org.universAAL.support.directives.util.SourceFileReader;
+import org.universAAL.support.directives.util.SourceScan;
 
 /**
  * This checker will test whether the uAAL projects are being properly decoupled
@@ -35,14 +36,27 @@ import org.universAAL.support.directives.util.SourceFileReader;
  * @author amedrano
  *
  */
-public class DecoupleCheck implements APICheck, SourceChecker {
+public class DecoupleCheck implements SharedSourceCheck, SourceContentChecker, CacheableSourceChecker {
 
 	static private String OSGI_MATCH = ".*osgi.*";
 
+	private SourceScan sourceScan;
+
+	/** {@inheritDoc} */
+	public String getConfiguration() {
+		return OSGI_MATCH;
+	}
+
+	/** {@inheritDoc} */
+	public void registerSources(SourceScan scan, MavenProject mavenProject) {
+		sourceScan = scan;
+		scan.register(this, mavenProject.getBasedir() + "/src/main/java/");
+	}
+
 	/** {@inheritDoc} */
 	public boolean check(MavenProject mavenProject, Log log) throws MojoFailureException, MojoExecutionException {
-		SourceExplorer se = new SourceExplorer(this);
-		ArrayList<File> conflicted = se.walk(mavenProject.getBasedir() + "/src/main/java/");
+		ArrayList<File> conflicted = SourceScan.walk(sourceScan, this, mavenProject.getBasedir() + "/src/main/java/");
+		sourceScan = null;
 		if (conflicted.size() > 0) {
 			String m = "The following Files are not Container Decoupled:\n";
 			for (java.util.Iterator<File> iterator = conflicted.iterator(); iterator.hasNext();) {
@@ -57,28 +71,40 @@ public class DecoupleCheck implements APICheck, SourceChecker {
 
 	public boolean passesTest(File f) {
 		String pack = SourceFileReader.readPackage(f);
-		if (!pack.matches(OSGI_MATCH)) {
+		if (pack == null || !pack.matches(OSGI_MATCH)) {
 			/*
 			 * If package does not match OSGI_MATCH then check if any of the
 			 * imports matches OSGI_MATCH
 			 */
-			ArrayList<String> imports = SourceFileReader.readImports(f);
-			Iterator<String> I = imports.iterator();
-			if (I.hasNext()) {
-				String imp = I.next();
-				while (I.hasNext() && !imp.matches(OSGI_MATCH)) {
-					imp = I.next();
-				}
-				return !imp.matches(OSGI_MATCH);
-			} else {
-				// If file has no imports then it passes
-				return true;
-			}
+			return passesImports(SourceFileReader.readImports(f));
 		} else {
 			// If the package name matches OSGI_MATCH then it passes
 			return true;
 		}
+	}
 
+	/** {@inheritDoc} */
+	public boolean passesTest(File f, CharSequence content) {
+		String pack = SourceFileReader.readPackage(content);
+		if (pack == null || !pack.matches(OSGI_MATCH)) {
+			return passesImports(SourceFileReader.readImports(content));
+		} else {
+			return true;
+		}
+	}
+
+	private boolean passesImports(ArrayList<String> imports) {
+		Iterator<String> I = imports.iterator();
+		if (I.hasNext()) {
+			String imp = I.next();
+			while (I.hasNext() && !imp.matches(OSGI_MATCH)) {
+				imp = I.next();
+			}
+			return !imp.matches(OSGI_MATCH);
+		} else {
+			// If file has no imports then it passes
+			return true;
+		}
 	}
 
 }
@@ -15,11 +15,29 @@
  ******************************************************************************/
 package org.universAAL.support.directives.checks;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
 import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.maven.plugin.MojoExecutionException;
@@ -27,19 +45,27 @@ import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.project.MavenProject;
 import org.universAAL.support.directives.api.APIFixableCheck;
-import org.universAAL.support.directives.util.SourceChecker;
+import org.universAAL.support.directives.api.SharedSourceCheck;
+import org.universAAL.support.directives.util.CacheableSourceChecker;
+import org.universAAL.support.directives.util.SourceContentChecker;
 import org.universAAL.support.directives.util.SourceExplorer;
+import org.universAAL.support.directives.util.SourceScan;
 
 /**
- * Check all the code has a valid ASL header.
+ * Check all the code has a valid ASL header. The fix adds the header to files
+ * without it, or normalizes their ASL header, keeping its copyright lines.
+ * Files with other licenses are reported and left untouched.
+ * The copyright owner and year are taken from the <code>licenseOwner</code>
+ * and <code>licenseYear</code> properties of the POM, or else from the
+ * organization and inception year of the project. Both the check and the fix
+ * decode files with the source encoding of the {@link SourceScan}, UTF-8 by
+ * default.
  *
  * @author amedrano
  *
  */
-public class LicenseHeaderCheckFix implements APIFixableCheck, SourceChecker {
+public class LicenseHeaderCheckFix implements APIFixableCheck, SharedSourceCheck, SourceContentChecker, CacheableSourceChecker {
 
-	private static final Pattern PATTERN_SPACE = Pattern.compile("\\s\\s*");
-	private static final Pattern PATTERN_DELETE = Pattern.compile("(^//*|/$|\\n\\s*//|\\*|;)");
 	private static final Pattern PATTERN_LICENSED_UNDER = Pattern
 			.compile("[Ll]icensed under .* Apache License.*[Vv]ersion 2\\.0");
 
@@ -53,10 +79,62 @@ public class LicenseHeaderCheckFix implements APIFixableCheck, SourceChecker {
 			+ " You may obtain a copy of the License at" + " http://www.apache.org/licenses/LICENSE-2.0"
 			+ APACHE_ENDING;
 
+	private static final ThreadLocal<HeaderScanner> SCANNER = new ThreadLocal<HeaderScanner>() {
+		@Override
+		protected HeaderScanner initialValue() {
+			return new HeaderScanner();
+		}
+	};
+
+	private static final String OWNER_PROP = "licenseOwner";
+	private static final String YEAR_PROP = "licenseYear";
+	private static final String DEFAULT_ENCODING = "UTF-8";
+
+	private static final Pattern PATTERN_LICENSE_COMMENT = Pattern.compile("(?i)copyright|licen[cs]e");
+	private static final Pattern PATTERN_APACHE = Pattern.compile("Apache");
+	private static final Pattern PATTERN_COPYRIGHT_LINE = Pattern.compile("(?i)(copyright\\b.*?)[\\s*/]*$");
+
+	private static final String HEADER_BORDER = "*****************************************************************************";
+	private static final String[] HEADER_LICENSE = { "Licensed under the Apache License, Version 2.0 (the \"License\");",
+			"you may not use this file except in compliance with the License.",
+			"You may obtain a copy of the License at", "", "  http://www.apache.org/licenses/LICENSE-2.0", "",
+			"Unless required by applicable law or agreed to in writing, software",
+			"distributed under the License is distributed on an \"AS IS\" BASIS,",
+			"WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.",
+			"See the License for the specific language governing permissions and",
+			"limitations under the License." };
+
+	private SourceScan sourceScan;
+
+	private int threads = 1;
+
+	private Charset charset = Charset.forName(DEFAULT_ENCODING);
+
+	/**
+	 * Files which failed the last check, fixed without walking the sources
+	 * again.
+	 */
+	private List<File> failedFiles = null;
+
+	/** {@inheritDoc} */
+	public String getConfiguration() {
+		return charset.name();
+	}
+
+	/** {@inheritDoc} */
+	public void registerSources(SourceScan scan, MavenProject mavenProject) {
+		sourceScan = scan;
+		threads = scan.getThreads();
+		charset = scan.getEncoding();
+		scan.register(this, mavenProject.getBasedir().getAbsolutePath() + "/src/main/java/");
+	}
+
 	/** {@inheritDoc} */
 	public boolean check(MavenProject mavenproject, Log log) throws MojoExecutionException, MojoFailureException {
-		SourceExplorer se = new SourceExplorer(this);
-		ArrayList<File> conflicted = se.walk(mavenproject.getBasedir().getAbsolutePath() + "/src/main/java/");
+		ArrayList<File> conflicted = SourceScan.walk(sourceScan, this,
+				mavenproject.getBasedir().getAbsolutePath() + "/src/main/java/");
+		sourceScan = null;
+		failedFiles = conflicted;
 		if (conflicted.size() > 0) {
 			String m = "The following Files seem not to have a proper License Header:\n";
 			for (File f : conflicted) {
@@ -71,28 +149,240 @@ public class LicenseHeaderCheckFix implements APIFixableCheck, SourceChecker {
 
 	/** {@inheritDoc} */
 	public void fix(MavenProject mavenProject, Log log) throws MojoExecutionException, MojoFailureException {
-		// TODO needs owner and year to be able to add the header.
+		String owner = mavenProject.getProperties().getProperty(OWNER_PROP);
+		if (owner == null && mavenProject.getOrganization() != null) {
+			owner = mavenProject.getOrganization().getName();
+		}
+		if (owner == null || owner.trim().length() == 0) {
+			throw new MojoFailureException("Unable to add License Headers, the copyright owner is unknown.\n"
+					+ "Set the " + OWNER_PROP + " property, or the organization name, in the POM.");
+		}
+		String year = mavenProject.getProperties().getProperty(YEAR_PROP, mavenProject.getInceptionYear());
+		if (year == null) {
+			year = Integer.toString(Calendar.getInstance().get(Calendar.YEAR));
+		}
+		final String copyright = "Copyright " + year.trim() + " " + owner.trim();
+		final Charset charset = this.charset;
 
+		List<File> conflicted = failedFiles;
+		failedFiles = null;
+		if (conflicted == null) {
+			// fix without a preceding check
+			conflicted = new SourceExplorer(this, threads)
+					.walk(mavenProject.getBasedir().getAbsolutePath() + "/src/main/java/");
+		}
+		String failures = "";
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+		try {
+			List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+			for (final File f : conflicted) {
+				futures.add(executor.submit(new Callable<Boolean>() {
+					public Boolean call() throws IOException {
+						return Boolean.valueOf(fixHeader(f, copyright, charset));
+					}
+				}));
+			}
+			for (int i = 0; i < conflicted.size(); i++) {
+				String path = conflicted.get(i).getAbsolutePath();
+				try {
+					if (futures.get(i).get().booleanValue()) {
+						log.info("License Header fixed for: " + path);
+					} else {
+						failures += "\t" + path + ": has a license header which is not ASL, it was left untouched.\n";
+					}
+				} catch (ExecutionException e) {
+					failures += "\t" + path + ": " + e.getCause().getMessage() + "\n";
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MojoExecutionException("Interrupted while fixing License Headers", e);
+		} finally {
+			executor.shutdownNow();
+		}
+		if (failures.length() > 0) {
+			throw new MojoFailureException("Unable to fix the License Header of the following Files:\n" + failures);
+		}
 	}
 
-	public boolean passesTest(File sourceFile) {
+	/**
+	 * Adds the ASL header to the file, or normalizes its leading ASL header
+	 * keeping its copyright lines. Only a block comment (not a javadoc) at the
+	 * start of the file which mentions the Apache License is taken as a
+	 * header to normalize. Files starting with any other license comment are
+	 * left untouched. The file is rewritten through a temporary file, so it is
+	 * never left half written.
+	 *
+	 * @param sourceFile
+	 *            the file to fix.
+	 * @param copyright
+	 *            the copyright line used when the file has none.
+	 * @param charset
+	 *            the encoding of the file.
+	 * @return false if the file has a license header which is not ASL.
+	 * @throws IOException
+	 *             if the file can not be read, decoded or replaced.
+	 */
+	static boolean fixHeader(File sourceFile, String copyright, Charset charset) throws IOException {
+		String source = readFile(sourceFile, charset);
+		String newLine = source.indexOf("\r\n") >= 0 ? "\r\n" : "\n";
+		List<String> copyrights = new ArrayList<String>();
+		int start = 0;
+		while (start < source.length() && Character.isWhitespace(source.charAt(start))) {
+			start++;
+		}
+		int end = leadingCommentEnd(source, start);
+		String rest = source;
+		if (end > 0 && !isJavadoc(source, start)) {
+			String comment = source.substring(start, end);
+			if (PATTERN_LICENSE_COMMENT.matcher(comment).find()) {
+				if (!source.startsWith("/*", start) || !PATTERN_APACHE.matcher(comment).find()) {
+					return false;
+				}
+				for (String line : comment.split("\r?\n")) {
+					Matcher m = PATTERN_COPYRIGHT_LINE.matcher(line);
+					if (m.find()) {
+						copyrights.add(m.group(1).trim());
+					}
+				}
+				if (source.startsWith("\r\n", end)) {
+					end += 2;
+				} else if (source.startsWith("\n", end)) {
+					end++;
+				}
+				rest = source.substring(end);
+			}
+		}
+		if (copyrights.isEmpty()) {
+			copyrights.add(copyright);
+		}
+
+		StringBuilder fixed = new StringBuilder();
+		fixed.append("/").append(HEADER_BORDER).append("**").append(newLine);
+		for (String c : copyrights) {
+			fixed.append(" * ").append(c).append(newLine);
+		}
+		fixed.append(" *").append(newLine);
+		for (String l : HEADER_LICENSE) {
+			fixed.append(l.length() > 0 ? " * " + l : " *").append(newLine);
+		}
+		fixed.append(" ").append(HEADER_BORDER).append("*/").append(newLine);
+		fixed.append(rest);
+		writeFile(sourceFile, fixed.toString(), charset);
+		return true;
+	}
+
+	/**
+	 * Whether the comment at the index is a javadoc, headers usually start
+	 * with a line of asterisks instead.
+	 */
+	private static boolean isJavadoc(String source, int start) {
+		return source.startsWith("/**", start) && !source.startsWith("/***", start)
+				&& !source.startsWith("/**/", start);
+	}
+
+	/**
+	 * Finds the end of the comment starting at the index, consecutive line
+	 * comments are taken as one.
+	 *
+	 * @return the index after the comment, or -1 if no comment starts at the
+	 *         index.
+	 */
+	private static int leadingCommentEnd(String source, int start) {
+		if (source.startsWith("/*", start)) {
+			int end = source.indexOf("*/", start + 2);
+			return end < 0 ? -1 : end + 2;
+		}
+		if (!source.startsWith("//", start)) {
+			return -1;
+		}
+		int end = start;
+		int next = start;
+		while (source.startsWith("//", next)) {
+			end = source.indexOf('\n', next);
+			if (end < 0) {
+				return source.length();
+			}
+			if (end > 0 && source.charAt(end - 1) == '\r') {
+				end--;
+			}
+			next = source.indexOf('\n', end) + 1;
+			while (next < source.length() && (source.charAt(next) == ' ' || source.charAt(next) == '\t')) {
+				next++;
+			}
+		}
+		return end;
+	}
+
+	/**
+	 * Reads the whole file, failing instead of replacing bytes which are not
+	 * valid in the charset.
+	 */
+	private static String readFile(File file, Charset charset) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		InputStream is = new FileInputStream(file);
 		try {
-			CommentParserState cps = new CommentParserState();
-			FileInputStream is = new FileInputStream(sourceFile);
-			int c = is.read();
-			while (c != 65535 && c != -1 && cps.next((char) c)) {
-				c = (char) is.read();
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = is.read(buffer)) != -1) {
+				bytes.write(buffer, 0, read);
 			}
+		} finally {
 			is.close();
-			if (c != -1) {
-				// the first comment is read
-				String comment = PATTERN_DELETE.matcher(cps.getString()).replaceAll("");
-				comment = PATTERN_SPACE.matcher(comment).replaceAll(" ").replace("\n", "");
-				// System.out.println(comment);
-				return comment.contains(APACHE_LICENSE_HEADER)
-						|| (PATTERN_LICENSED_UNDER.matcher(comment).find() && comment.contains(APACHE_ENDING));
+		}
+		return charset.newDecoder().onMalformedInput(CodingErrorAction.REPORT)
+				.onUnmappableCharacter(CodingErrorAction.REPORT).decode(ByteBuffer.wrap(bytes.toByteArray()))
+				.toString();
+	}
+
+	private static void writeFile(File file, String content, Charset charset) throws IOException {
+		ByteBuffer encoded = charset.newEncoder().onMalformedInput(CodingErrorAction.REPORT)
+				.onUnmappableCharacter(CodingErrorAction.REPORT).encode(CharBuffer.wrap(content));
+		File tmp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+		try {
+			OutputStream os = new FileOutputStream(tmp);
+			try {
+				os.write(encoded.array(), encoded.arrayOffset() + encoded.position(), encoded.remaining());
+			} finally {
+				os.close();
+			}
+			if (!tmp.renameTo(file)) {
+				// platforms which do not replace existing files on rename
+				if (!file.delete() || !tmp.renameTo(file)) {
+					throw new IOException("unable to replace " + file.getAbsolutePath());
+				}
 			}
+		} finally {
+			tmp.delete();
+		}
+	}
 
+	/**
+	 * Reads the file, with the source encoding, only until the end of its
+	 * first comment.
+	 */
+	public boolean passesTest(File sourceFile) {
+		HeaderScanner scanner = SCANNER.get();
+		try {
+			CommentParserState cps = new CommentParserState();
+			Reader reader = new InputStreamReader(new FileInputStream(sourceFile), charset);
+			boolean empty = true;
+			try {
+				boolean inComment = true;
+				int read;
+				while (inComment && (read = reader.read(scanner.buffer)) != -1) {
+					empty &= read == 0;
+					for (int i = 0; inComment && i < read; i++) {
+						inComment = cps.next(scanner.buffer[i]);
+					}
+				}
+			} finally {
+				reader.close();
+			}
+			if (!empty) {
+				// the first comment is read, or the file ends within it
+				return scanner.isApacheHeader(cps.getComment());
+			}
 		} catch (FileNotFoundException e) {
 			return false;
 		} catch (IOException e) {
@@ -101,16 +391,113 @@ public class LicenseHeaderCheckFix implements APIFixableCheck, SourceChecker {
 		return false;
 	}
 
+	/** {@inheritDoc} */
+	public boolean passesTest(File sourceFile, CharSequence content) {
+		CommentParserState cps = new CommentParserState();
+		int i = 0;
+		while (i < content.length() && cps.next(content.charAt(i))) {
+			i++;
+		}
+		if (content.length() > 0) {
+			// the first comment is read, or the file ends within it
+			return SCANNER.get().isApacheHeader(cps.getComment());
+		}
+		return false;
+	}
+
+	/**
+	 * Buffers reused by each thread to read and test headers.
+	 */
+	private static class HeaderScanner {
+
+		private char[] buffer = new char[4096];
+
+		private StringBuilder normalized = new StringBuilder();
+
+		private Matcher licensedUnder = PATTERN_LICENSED_UNDER.matcher(normalized);
+
+		/**
+		 * Normalizes the comment and looks for the Apache header in it. The
+		 * comment marks (leading slashes, the trailing slash, line comment
+		 * slashes and asterisks) and semicolons are dropped, and runs of
+		 * white space are replaced by a single space.
+		 */
+		boolean isApacheHeader(CharSequence comment) {
+			normalized.setLength(0);
+			int length = comment.length();
+			int i = 0;
+			boolean space = false;
+			while (i < length && comment.charAt(i) == '/') {
+				i++;
+			}
+			while (i < length) {
+				char c = comment.charAt(i);
+				int lineComment = c == '\n' ? lineCommentEnd(comment, i + 1) : -1;
+				if (lineComment > 0) {
+					i = lineComment;
+				} else if ((c == '/' && isEnd(comment, i + 1)) || c == '*' || c == ';') {
+					i++;
+				} else {
+					if (!isSpace(c)) {
+						normalized.append(c);
+						space = false;
+					} else if (!space) {
+						normalized.append(' ');
+						space = true;
+					}
+					i++;
+				}
+			}
+			return normalized.indexOf(APACHE_LICENSE_HEADER) >= 0
+					|| (licensedUnder.reset().find() && normalized.indexOf(APACHE_ENDING) >= 0);
+		}
+
+		/**
+		 * Skips white space followed by "//" from the index.
+		 *
+		 * @return the index after "//", or -1 if it does not follow.
+		 */
+		private static int lineCommentEnd(CharSequence s, int i) {
+			while (i < s.length() && isSpace(s.charAt(i))) {
+				i++;
+			}
+			if (i + 1 < s.length() && s.charAt(i) == '/' && s.charAt(i + 1) == '/') {
+				return i + 2;
+			}
+			return -1;
+		}
+
+		/**
+		 * Whether the index is the end of the comment or its final line
+		 * terminator.
+		 */
+		private static boolean isEnd(CharSequence s, int i) {
+			int rest = s.length() - i;
+			if (rest == 0) {
+				return true;
+			}
+			char c = s.charAt(i);
+			if (rest == 1) {
+				return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+			}
+			return rest == 2 && c == '\r' && s.charAt(i + 1) == '\n';
+		}
+
+		private static boolean isSpace(char c) {
+			return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+		}
+	}
+
 	static public class CommentParserState {
 		private static final int F = 9;
-		private StringBuffer string;
+		private StringBuilder string;
 		private char state;
 		private static final char[][] table = { { 1, 0, 0, 0, 0 }, { 2, 5, 0, 0, 0 }, { 2, 2, 8, 2, 2 },
 				{ 4, F, F, 3, F }, { 2, F, F, F, F }, { 5, 6, 5, 5, 5 }, { 7, 5, 5, 5, 5 }, { F, F, F, F, F },
 				{ 4, F, 8, 3, F }, };
 
 		public CommentParserState() {
-			string = new StringBuffer();
+			string = new StringBuilder();
 			state = 0;
 		}
 
@@ -143,6 +530,13 @@ public class LicenseHeaderCheckFix implements APIFixableCheck, SourceChecker {
 			return string.toString();
 		}
 
+		/**
+		 * The comment read so far, without copying it.
+		 */
+		public CharSequence getComment() {
+			return string;
+		}
+
 	}
 
 }
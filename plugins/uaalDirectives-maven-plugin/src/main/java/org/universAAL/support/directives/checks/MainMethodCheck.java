@@ -27,24 +27,38 @@ import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.project.MavenProject;
-import org.universAAL.support.directives.api.APICheck;
-import org.universAAL.support.directives.util.SourceChecker;
-import org.universAAL.support.directives.util.SourceExplorer;
+import org.universAAL.support.directives.api.SharedSourceCheck;
+import org.universAAL.support.directives.util.CacheableSourceChecker;
+import org.universAAL.support.directives.util.SourceContentChecker;
+import org.universAAL.support.directives.util.SourceScan;
 
 /**
  * @author amedrano
  *
  */
-public class MainMethodCheck implements SourceChecker, APICheck {
+public class MainMethodCheck implements SourceContentChecker, SharedSourceCheck, CacheableSourceChecker {
 
 	public static String MAIN_REGEXP = "(public\\s+)?static\\s+(public\\s+)?void\\s+main\\s*\\(\\s*String(\\s*\\[\\])?\\s+\\w+(\\s*\\[\\])?\\s*\\)";
 
 	private static Pattern MAIN_PATTERN = Pattern.compile(MAIN_REGEXP);
 
+	private SourceScan sourceScan;
+
+	/** {@ inheritDoc} */
+	public String getConfiguration() {
+		return "";
+	}
+
+	/** {@ inheritDoc} */
+	public void registerSources(SourceScan scan, MavenProject mavenProject) {
+		sourceScan = scan;
+		scan.register(this, mavenProject.getBasedir() + "/src/main/java/");
+	}
+
 	/** {@ inheritDoc} */
 	public boolean check(MavenProject mavenproject, Log log) throws MojoExecutionException, MojoFailureException {
-		SourceExplorer se = new SourceExplorer(this);
-		ArrayList<File> conflicted = se.walk(mavenproject.getBasedir() + "/src/main/java/");
+		ArrayList<File> conflicted = SourceScan.walk(sourceScan, this, mavenproject.getBasedir() + "/src/main/java/");
+		sourceScan = null;
 		if (conflicted.size() > 0) {
 			String m = "The following Files contain a main method:\n";
 			for (java.util.Iterator<File> iterator = conflicted.iterator(); iterator.hasNext();) {
@@ -59,16 +73,20 @@ public class MainMethodCheck implements SourceChecker, APICheck {
 	/** {@ inheritDoc} */
 	public boolean passesTest(File sourceFile) {
 		try {
-			String code = FileUtils.readFileToString(sourceFile);
-			code = new CommentRemoverStateMachine().removeComments(code);
-			Matcher m = MAIN_PATTERN.matcher(code);
-			return !m.find();
+			return passesTest(sourceFile, FileUtils.readFileToString(sourceFile));
 		} catch (IOException e) {
 			e.printStackTrace();
 			return false;
 		}
 	}
 
+	/** {@ inheritDoc} */
+	public boolean passesTest(File sourceFile, CharSequence content) {
+		String code = new CommentRemoverStateMachine().removeComments(content);
+		Matcher m = MAIN_PATTERN.matcher(code);
+		return !m.find();
+	}
+
 	public static class CommentRemoverStateMachine {
 
 		int state = 0;
@@ -112,7 +130,7 @@ public class MainMethodCheck implements SourceChecker, APICheck {
 			return 0;
 		}
 
-		String removeComments(String s) {
+		String removeComments(CharSequence s) {
 			StringBuffer sb = new StringBuffer();
 			for (int i = 0; i < s.length(); i++) {
 				state = nextState(s.charAt(i));
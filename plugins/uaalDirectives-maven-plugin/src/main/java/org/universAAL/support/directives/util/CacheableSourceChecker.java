@@ -0,0 +1,30 @@
+/*******************************************************************************
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.universAAL.support.directives.util;
+
+/**
+ * {@link SourceChecker} whose results depend only on the content of the
+ * tested file and on its configuration, so they can be kept in a
+ * {@link CheckResultCache} between runs.
+ */
+public interface CacheableSourceChecker extends SourceChecker {
+
+	/**
+	 * Describes the configuration of the checker, cached results are
+	 * discarded when it changes.
+	 *
+	 * @return the configuration, never null.
+	 */
+	String getConfiguration();
+}
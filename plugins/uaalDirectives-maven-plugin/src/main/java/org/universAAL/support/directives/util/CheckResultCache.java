@@ -0,0 +1,234 @@
+/*******************************************************************************
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.universAAL.support.directives.util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.URL;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Results of {@link CacheableSourceChecker}s kept in a file between runs. A
+ * result is valid while the size and the modification time of the tested
+ * file stay the same. Results are stored per checker, under a key derived
+ * from the plugin version, the checker class and its configuration, so
+ * changing any of them discards the results of the checker.
+ * <p>
+ * The cache can be used by several threads at once.
+ */
+public class CheckResultCache {
+
+	private static final String HEADER = "uaal-directives-cache 1";
+
+	private File file;
+
+	private String version;
+
+	/**
+	 * Results read from the file, by checker key and path.
+	 */
+	private Map<String, Result> stored = new ConcurrentHashMap<String, Result>();
+
+	/**
+	 * Results found or tested in this run, only these are saved.
+	 */
+	private Map<String, Result> used = new ConcurrentHashMap<String, Result>();
+
+	private Map<SourceChecker, String> checkerKeys = new ConcurrentHashMap<SourceChecker, String>();
+
+	private volatile boolean modified = false;
+
+	/**
+	 * Loads the cache from the file, a missing or unreadable file gives an
+	 * empty cache.
+	 *
+	 * @param file
+	 *            the file of the cache.
+	 * @param version
+	 *            the version of the plugin.
+	 */
+	public CheckResultCache(File file, String version) {
+		this.file = file;
+		this.version = version;
+		if (file.isFile()) {
+			try {
+				load();
+			} catch (IOException e) {
+				stored.clear();
+			} catch (RuntimeException e) {
+				// corrupt cache
+				stored.clear();
+			}
+		}
+	}
+
+	/**
+	 * Get the cached result of a checker for a file.
+	 *
+	 * @param checker
+	 *            the checker.
+	 * @param sourceFile
+	 *            the tested file.
+	 * @return whether the file passed the test, or null if there is no valid
+	 *         result.
+	 */
+	public Boolean get(CacheableSourceChecker checker, File sourceFile) {
+		String key = key(checker, sourceFile);
+		Result result = stored.get(key);
+		if (result == null || result.size != sourceFile.length() || result.modified != sourceFile.lastModified()) {
+			return null;
+		}
+		used.put(key, result);
+		return Boolean.valueOf(result.passes);
+	}
+
+	/**
+	 * Records the result of a checker for a file.
+	 *
+	 * @param checker
+	 *            the checker.
+	 * @param sourceFile
+	 *            the tested file.
+	 * @param passes
+	 *            whether the file passed the test.
+	 */
+	public void put(CacheableSourceChecker checker, File sourceFile, boolean passes) {
+		Result result = new Result();
+		result.size = sourceFile.length();
+		result.modified = sourceFile.lastModified();
+		result.passes = passes;
+		used.put(key(checker, sourceFile), result);
+		modified = true;
+	}
+
+	/**
+	 * Writes the results of this run to the file, if any was tested.
+	 * Results which were not used in this run are dropped.
+	 *
+	 * @throws IOException
+	 *             if the file can not be written, the results of the
+	 *             previous run may then be lost too.
+	 */
+	public void save() throws IOException {
+		if (!modified && used.size() == stored.size()) {
+			return;
+		}
+		File tmp = new File(file.getPath() + ".tmp");
+		try {
+			file.getAbsoluteFile().getParentFile().mkdirs();
+			Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8"));
+			try {
+				w.write(HEADER + "\n");
+				for (Map.Entry<String, Result> e : used.entrySet()) {
+					Result r = e.getValue();
+					// key is the checker key and the path, separated by a tab
+					w.write(r.size + "\t" + r.modified + "\t" + r.passes + "\t" + e.getKey() + "\n");
+				}
+			} finally {
+				w.close();
+			}
+		} catch (IOException e) {
+			tmp.delete();
+			throw e;
+		}
+		if (!tmp.renameTo(file)) {
+			// platforms which do not replace existing files on rename
+			file.delete();
+			if (!tmp.renameTo(file)) {
+				tmp.delete();
+				throw new IOException("unable to replace " + file.getAbsolutePath());
+			}
+		}
+	}
+
+	private void load() throws IOException {
+		BufferedReader r = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		try {
+			if (!HEADER.equals(r.readLine())) {
+				return;
+			}
+			String line;
+			while ((line = r.readLine()) != null) {
+				String[] fields = line.split("\t", 4);
+				Result result = new Result();
+				result.size = Long.parseLong(fields[0]);
+				result.modified = Long.parseLong(fields[1]);
+				result.passes = Boolean.valueOf(fields[2]).booleanValue();
+				stored.put(fields[3], result);
+			}
+		} finally {
+			r.close();
+		}
+	}
+
+	private String key(CacheableSourceChecker checker, File sourceFile) {
+		String checkerKey = checkerKeys.get(checker);
+		if (checkerKey == null) {
+			checkerKey = md5Hex(version + "\n" + checker.getClass().getName() + "\n" + codeTimestamp(checker) + "\n"
+					+ checker.getConfiguration());
+			checkerKeys.put(checker, checkerKey);
+		}
+		return checkerKey + "\t" + sourceFile.getAbsolutePath();
+	}
+
+	/**
+	 * Modification time of the jar containing the checker, so that results
+	 * are discarded when a snapshot of the plugin is rebuilt.
+	 */
+	private static long codeTimestamp(SourceChecker checker) {
+		CodeSource source = checker.getClass().getProtectionDomain().getCodeSource();
+		if (source == null) {
+			return 0;
+		}
+		URL location = source.getLocation();
+		if (location == null || !"file".equals(location.getProtocol())) {
+			return 0;
+		}
+		return new File(location.getPath()).lastModified();
+	}
+
+	private static String md5Hex(String s) {
+		try {
+			byte[] digest = MessageDigest.getInstance("MD5").digest(s.getBytes("UTF-8"));
+			StringBuffer hex = new StringBuffer();
+			for (int i = 0; i < digest.length; i++) {
+				hex.append(Integer.toHexString((digest[i] >> 4) & 0xf));
+				hex.append(Integer.toHexString(digest[i] & 0xf));
+			}
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static class Result {
+		long size;
+		long modified;
+		boolean passes;
+	}
+}
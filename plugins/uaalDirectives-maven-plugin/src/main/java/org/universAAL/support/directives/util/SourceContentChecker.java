@@ -0,0 +1,34 @@
+/*******************************************************************************
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.universAAL.support.directives.util;
+
+import java.io.File;
+
+/**
+ * {@link SourceChecker} able to test source which was already read by a
+ * {@link SourceScan}, so that the file is not read again for each checker.
+ */
+public interface SourceContentChecker extends SourceChecker {
+
+	/**
+	 * Tests the content of a source file.
+	 *
+	 * @param sourceFile
+	 *            the file from which the content was read.
+	 * @param content
+	 *            the content of the file, it is only valid during the call.
+	 * @return true if the file passes the test.
+	 */
+	boolean passesTest(File sourceFile, CharSequence content);
+}
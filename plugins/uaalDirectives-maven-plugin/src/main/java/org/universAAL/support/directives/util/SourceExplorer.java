@@ -19,6 +19,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 
 import org.apache.commons.io.DirectoryWalker;
 
@@ -26,8 +27,25 @@ public class SourceExplorer extends DirectoryWalker {
 
 	private SourceChecker sc;
 
+	private int threads;
+
 	public SourceExplorer(SourceChecker sourceTest) {
+		this(sourceTest, 1);
+	}
+
+	/**
+	 * Explorer testing files on several threads, the checker must be thread
+	 * safe.
+	 *
+	 * @param sourceTest
+	 *            the checker.
+	 * @param threads
+	 *            the number of threads, values lower than 1 mean the number
+	 *            of available processors.
+	 */
+	public SourceExplorer(SourceChecker sourceTest, int threads) {
 		sc = sourceTest;
+		this.threads = threads;
 	}
 
 	/**
@@ -38,13 +56,27 @@ public class SourceExplorer extends DirectoryWalker {
 		return !directory.getName().matches(".*\\.svn");
 	}
 
+	/**
+	 * Test all java files under a directory.
+	 *
+	 * @param startDir
+	 *            the directory.
+	 * @return the files which did not pass the test, sorted by path.
+	 */
 	public ArrayList<File> walk(String startDir) {
+		if (threads != 1) {
+			SourceScan scan = new SourceScan();
+			scan.setThreads(threads);
+			scan.register(sc, startDir);
+			return scan.getConflicted(sc);
+		}
 		ArrayList<File> conflicted = new ArrayList<File>();
 		try {
 			this.walk(new File(startDir), conflicted);
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
+		Collections.sort(conflicted);
 		return conflicted;
 
 	}
@@ -54,6 +54,39 @@ public class SourceFileReader {
 		return matches;
 	}
 
+	public static ArrayList<String> readImports(CharSequence content) {
+		return lookForLinesWith(content, ".*import.*");
+	}
+
+	public static ArrayList<String> lookForLinesWith(CharSequence content, String regExp) {
+		ArrayList<String> matches = new ArrayList<String>();
+		int length = content.length();
+		int start = 0;
+		while (start < length) {
+			int end = start;
+			while (end < length && content.charAt(end) != '\n' && content.charAt(end) != '\r') {
+				end++;
+			}
+			String s = content.subSequence(start, end).toString();
+			if (s.matches(regExp)) {
+				matches.add(s);
+			}
+			if (end + 1 < length && content.charAt(end) == '\r' && content.charAt(end + 1) == '\n') {
+				end++;
+			}
+			start = end + 1;
+		}
+		return matches;
+	}
+
+	public static String readPackage(CharSequence content) {
+		ArrayList<String> r = lookForLinesWith(content, ".*package.*");
+		if (r.size() > 0) {
+			return r.get(0);
+		}
+		return null;
+	}
+
 	public static String readPackage(File f) {
 		BufferedReader br;
 		try {
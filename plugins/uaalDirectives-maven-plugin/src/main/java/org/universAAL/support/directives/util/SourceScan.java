@@ -0,0 +1,359 @@
+/*******************************************************************************
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.universAAL.support.directives.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.DirectoryWalker;
+
+/**
+ * Walks source directories once for several {@link SourceChecker}s. Each java
+ * file is read once into a reusable buffer and dispatched to all checkers
+ * registered for its directory. {@link SourceContentChecker}s test the read
+ * content, other checkers are given the file. Files are decoded with the
+ * source encoding, UTF-8 unless set otherwise.
+ * <p>
+ * Files can be tested by several threads, in which case the registered
+ * checkers must be thread safe. The conflicted files are sorted by path, so
+ * results do not depend on the number of threads nor on the order in which
+ * the file system lists directories.
+ * <p>
+ * When a {@link CheckResultCache} is set, {@link CacheableSourceChecker}s only
+ * test files which changed since their results were cached.
+ */
+public class SourceScan {
+
+	private static final int INITIAL_BUFFER = 8192;
+
+	private static final String DEFAULT_ENCODING = "UTF-8";
+
+	/**
+	 * Directories registered for each checker.
+	 */
+	private Map<SourceChecker, File> directories = new LinkedHashMap<SourceChecker, File>();
+
+	/**
+	 * Results of the scan, null until the scan is performed.
+	 */
+	private Map<SourceChecker, ArrayList<File>> conflicted = null;
+
+	/**
+	 * Number of threads testing files.
+	 */
+	private int threads = 1;
+
+	/**
+	 * Read buffer of each thread.
+	 */
+	private ThreadLocal<char[]> buffers = new ThreadLocal<char[]>() {
+		@Override
+		protected char[] initialValue() {
+			return new char[INITIAL_BUFFER];
+		}
+	};
+
+	private CheckResultCache cache = null;
+
+	private Charset encoding = Charset.forName(DEFAULT_ENCODING);
+
+	/**
+	 * Set the number of threads testing files.
+	 *
+	 * @param threads
+	 *            the number of threads, values lower than 1 mean the number
+	 *            of available processors.
+	 */
+	public void setThreads(int threads) {
+		if (threads < 1) {
+			threads = Runtime.getRuntime().availableProcessors();
+		}
+		this.threads = threads;
+	}
+
+	/**
+	 * Get the number of threads testing files.
+	 *
+	 * @return the number of threads.
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Set the encoding of the source files.
+	 *
+	 * @param encoding
+	 *            name of the encoding, null for UTF-8.
+	 * @throws IllegalArgumentException
+	 *             if the encoding is not supported.
+	 */
+	public void setEncoding(String encoding) {
+		this.encoding = Charset.forName(encoding == null ? DEFAULT_ENCODING : encoding);
+	}
+
+	/**
+	 * Get the encoding of the source files, checkers reading files themselves
+	 * should use it too.
+	 *
+	 * @return the encoding.
+	 */
+	public Charset getEncoding() {
+		return encoding;
+	}
+
+	/**
+	 * Set the cache of results of {@link CacheableSourceChecker}s.
+	 *
+	 * @param cache
+	 *            the cache, null to test all files.
+	 */
+	public void setCache(CheckResultCache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Registers a checker for all java files under a directory.
+	 *
+	 * @param checker
+	 *            the checker.
+	 * @param startDir
+	 *            the directory.
+	 */
+	public void register(SourceChecker checker, String startDir) {
+		directories.put(checker, new File(startDir));
+		conflicted = null;
+	}
+
+	/**
+	 * Get the files which did not pass the test of the checker, the scan is
+	 * performed at the first call.
+	 *
+	 * @param checker
+	 *            a registered checker.
+	 * @return the files sorted by path, or null if the checker is not
+	 *         registered.
+	 */
+	public ArrayList<File> getConflicted(SourceChecker checker) {
+		if (conflicted == null) {
+			scan();
+		}
+		return conflicted.get(checker);
+	}
+
+	/**
+	 * Get the files which did not pass the test of the checker, from the scan
+	 * if the checker is registered in it, otherwise by walking the directory
+	 * with a {@link SourceExplorer}.
+	 *
+	 * @param scan
+	 *            the scan, may be null.
+	 * @param checker
+	 *            the checker.
+	 * @param startDir
+	 *            the directory walked if the scan can not be used.
+	 * @return the files which did not pass the test.
+	 */
+	public static ArrayList<File> walk(SourceScan scan, SourceChecker checker, String startDir) {
+		if (scan != null && scan.directories.containsKey(checker)) {
+			return scan.getConflicted(checker);
+		}
+		return new SourceExplorer(checker, scan == null ? 1 : scan.threads).walk(startDir);
+	}
+
+	private void scan() {
+		conflicted = new LinkedHashMap<SourceChecker, ArrayList<File>>();
+		// directories are compared by absolute path, but walked as registered
+		Map<File, File> startDirs = new LinkedHashMap<File, File>();
+		Map<File, List<SourceChecker>> checkersByDir = new LinkedHashMap<File, List<SourceChecker>>();
+		for (Entry<SourceChecker, File> e : directories.entrySet()) {
+			conflicted.put(e.getKey(), new ArrayList<File>());
+			File dir = e.getValue().getAbsoluteFile();
+			List<SourceChecker> checkers = checkersByDir.get(dir);
+			if (checkers == null) {
+				checkers = new ArrayList<SourceChecker>();
+				checkersByDir.put(dir, checkers);
+				startDirs.put(dir, e.getValue());
+			}
+			checkers.add(e.getKey());
+		}
+		ExecutorService executor = null;
+		if (threads > 1) {
+			executor = Executors.newFixedThreadPool(threads);
+		}
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (Entry<File, List<SourceChecker>> e : checkersByDir.entrySet()) {
+				final List<SourceChecker> checkers = e.getValue();
+				for (final File file : new JavaFileLister().list(startDirs.get(e.getKey()))) {
+					if (executor == null) {
+						dispatch(file, checkers);
+					} else {
+						futures.add(executor.submit(new Runnable() {
+							public void run() {
+								dispatch(file, checkers);
+							}
+						}));
+					}
+				}
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		} finally {
+			if (executor != null) {
+				executor.shutdownNow();
+			}
+		}
+		for (ArrayList<File> files : conflicted.values()) {
+			Collections.sort(files);
+		}
+	}
+
+	private void dispatch(File file, List<SourceChecker> checkers) {
+		List<SourceChecker> untested = checkers;
+		if (cache != null) {
+			untested = new ArrayList<SourceChecker>();
+			for (SourceChecker checker : checkers) {
+				Boolean passes = null;
+				if (checker instanceof CacheableSourceChecker) {
+					passes = cache.get((CacheableSourceChecker) checker, file);
+				}
+				if (passes == null) {
+					untested.add(checker);
+				} else if (!passes.booleanValue()) {
+					addConflicted(checker, file);
+				}
+			}
+		}
+		CharSequence content = null;
+		for (SourceChecker checker : untested) {
+			if (checker instanceof SourceContentChecker) {
+				content = read(file);
+				break;
+			}
+		}
+		for (SourceChecker checker : untested) {
+			boolean passes;
+			if (content != null && checker instanceof SourceContentChecker) {
+				passes = ((SourceContentChecker) checker).passesTest(file, content);
+			} else {
+				passes = checker.passesTest(file);
+			}
+			if (cache != null && checker instanceof CacheableSourceChecker) {
+				cache.put((CacheableSourceChecker) checker, file, passes);
+			}
+			if (!passes) {
+				addConflicted(checker, file);
+			}
+		}
+	}
+
+	private void addConflicted(SourceChecker checker, File file) {
+		ArrayList<File> files = conflicted.get(checker);
+		synchronized (files) {
+			files.add(file);
+		}
+	}
+
+	/**
+	 * Reads the whole file with the source encoding into the buffer of the
+	 * current thread.
+	 *
+	 * @return the content, or null if the file can not be read.
+	 */
+	private CharSequence read(File file) {
+		try {
+			Reader reader = new InputStreamReader(new FileInputStream(file), encoding);
+			try {
+				char[] buffer = buffers.get();
+				int length = 0;
+				int read;
+				while ((read = reader.read(buffer, length, buffer.length - length)) != -1) {
+					length += read;
+					if (length == buffer.length) {
+						char[] larger = new char[buffer.length * 2];
+						System.arraycopy(buffer, 0, larger, 0, length);
+						buffer = larger;
+						buffers.set(buffer);
+					}
+				}
+				return CharBuffer.wrap(buffer, 0, length);
+			} finally {
+				reader.close();
+			}
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Lists java files the same way as {@link SourceExplorer}.
+	 */
+	private static class JavaFileLister extends DirectoryWalker {
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected boolean handleDirectory(File directory, int depth, Collection results) throws IOException {
+			return !directory.getName().matches(".*\\.svn");
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		@Override
+		protected void handleFile(File file, int depth, Collection results) throws IOException {
+			if (file.getName().endsWith("java")) {
+				results.add(file);
+			}
+		}
+
+		public List<File> list(File startDir) {
+			List<File> files = new ArrayList<File>();
+			try {
+				walk(startDir, files);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			return files;
+		}
+	}
+}
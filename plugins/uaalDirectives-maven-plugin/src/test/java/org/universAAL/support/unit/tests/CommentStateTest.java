@@ -15,6 +15,7 @@
  ******************************************************************************/
 package org.universAAL.support.unit.tests;
 
+import java.io.File;
 import java.util.regex.Pattern;
 
 import org.universAAL.support.directives.checks.LicenseHeaderCheckFix;
@@ -140,4 +141,12 @@ public class CommentStateTest extends TestCase {
 		assertEquals(s2, cps.getString());
 		processComment(cps.getString());
 	}
+
+	public void testHeader() {
+		LicenseHeaderCheckFix lhcf = new LicenseHeaderCheckFix();
+		// header with non ASCII characters
+		assertTrue(lhcf.passesTest(new File("./src/test/java/org/universAAL/support/unit/tests/CommentStateTest.java")));
+		assertTrue(lhcf.passesTest(new File("./src/test/resources/GUIPacketSniffer.java")));
+		assertFalse(lhcf.passesTest(new File("./src/test/resources/WithMain.java")));
+	}
 }
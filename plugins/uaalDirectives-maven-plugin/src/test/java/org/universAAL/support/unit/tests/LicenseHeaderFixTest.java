@@ -0,0 +1,216 @@
+/*******************************************************************************
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.universAAL.support.unit.tests;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+
+import org.apache.maven.model.Model;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
+import org.universAAL.support.directives.checks.LicenseHeaderCheckFix;
+import org.universAAL.support.directives.util.SourceScan;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the fix of {@link LicenseHeaderCheckFix}.
+ */
+public class LicenseHeaderFixTest extends TestCase {
+
+	private static final String BODY = "package org.test;\n\n/**\n * Class comment.\n */\npublic class A {\n}\n";
+
+	private File basedir;
+
+	private File sources;
+
+	@Override
+	protected void setUp() throws Exception {
+		basedir = File.createTempFile("header", "");
+		basedir.delete();
+		sources = new File(basedir, "src/main/java/org/test");
+		sources.mkdirs();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		delete(basedir);
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	private MavenProject project(String owner) {
+		Model model = new Model();
+		model.setInceptionYear("2012");
+		if (owner != null) {
+			model.addProperty("licenseOwner", owner);
+		}
+		MavenProject project = new MavenProject(model);
+		project.setFile(new File(basedir, "pom.xml"));
+		return project;
+	}
+
+	private static void write(File file, String content) throws IOException {
+		write(file, content, "UTF-8");
+	}
+
+	private static void write(File file, String content, String encoding) throws IOException {
+		Writer w = new OutputStreamWriter(new FileOutputStream(file), encoding);
+		w.write(content);
+		w.close();
+	}
+
+	private static String read(File file) throws IOException {
+		return read(file, "UTF-8");
+	}
+
+	private static String read(File file, String encoding) throws IOException {
+		Reader r = new InputStreamReader(new FileInputStream(file), encoding);
+		StringBuffer sb = new StringBuffer();
+		int c;
+		while ((c = r.read()) != -1) {
+			sb.append((char) c);
+		}
+		r.close();
+		return sb.toString();
+	}
+
+	public void testInsertHeader() throws Exception {
+		File f = new File(sources, "A.java");
+		write(f, BODY);
+		LicenseHeaderCheckFix lhcf = new LicenseHeaderCheckFix();
+		assertFalse(lhcf.passesTest(f));
+		lhcf.fix(project("Test Owner"), new SystemStreamLog());
+		String fixed = read(f);
+		assertTrue(lhcf.passesTest(f));
+		assertTrue(fixed.contains(" * Copyright 2012 Test Owner\n"));
+		assertTrue(fixed.endsWith("******/\n" + BODY));
+	}
+
+	public void testNormalizeHeader() throws Exception {
+		File f = new File(sources, "A.java");
+		String old = "/*\n * Copyright 2010 Someone Else\n * Copyright 2011 Universidad Politécnica de Madrid\n"
+				+ " * Licensed under the Apache License 2.0\n */\n" + BODY;
+		write(f, old.replace("\n", "\r\n"));
+		LicenseHeaderCheckFix lhcf = new LicenseHeaderCheckFix();
+		assertFalse(lhcf.passesTest(f));
+		lhcf.fix(project("Test Owner"), new SystemStreamLog());
+		String fixed = read(f);
+		assertTrue(lhcf.passesTest(f));
+		assertTrue(fixed.contains(" * Copyright 2010 Someone Else\r\n"
+				+ " * Copyright 2011 Universidad Politécnica de Madrid\r\n"));
+		assertFalse(fixed.contains("Test Owner"));
+		assertTrue(fixed.endsWith("******/\r\n" + BODY.replace("\n", "\r\n")));
+	}
+
+	public void testForeignLicense() throws Exception {
+		File f = new File(sources, "A.java");
+		String old = "/*\n * Copyright 2010 Someone Else\n * Licensed under the GPL\n */\n" + BODY;
+		write(f, old);
+		try {
+			new LicenseHeaderCheckFix().fix(project("Test Owner"), new SystemStreamLog());
+			fail();
+		} catch (MojoFailureException e) {
+			assertTrue(e.getMessage().contains(f.getAbsolutePath()));
+		}
+		assertEquals(old, read(f));
+	}
+
+	public void testKeepJavadoc() throws Exception {
+		File f = new File(sources, "A.java");
+		String old = "/**\n * Class comment, see the Apache License.\n */\npublic class A {\n}\n";
+		write(f, old);
+		LicenseHeaderCheckFix lhcf = new LicenseHeaderCheckFix();
+		lhcf.fix(project("Test Owner"), new SystemStreamLog());
+		String fixed = read(f);
+		assertTrue(lhcf.passesTest(f));
+		assertTrue(fixed.contains(" * Copyright 2012 Test Owner\n"));
+		assertTrue(fixed.endsWith("******/\n" + old));
+	}
+
+	public void testKeepValidHeader() throws Exception {
+		File f = new File(sources, "A.java");
+		write(f, BODY);
+		LicenseHeaderCheckFix lhcf = new LicenseHeaderCheckFix();
+		lhcf.fix(project("Test Owner"), new SystemStreamLog());
+		String fixed = read(f);
+		lhcf.fix(project("Other Owner"), new SystemStreamLog());
+		assertEquals(fixed, read(f));
+	}
+
+	public void testSourceEncoding() throws Exception {
+		File f = new File(sources, "A.java");
+		String old = "/** Clase de la Universidad Politécnica de Madrid. */\npublic class A {\n}\n";
+		write(f, old, "ISO-8859-1");
+		SourceScan scan = new SourceScan();
+		scan.setEncoding("ISO-8859-1");
+		LicenseHeaderCheckFix lhcf = new LicenseHeaderCheckFix();
+		MavenProject project = project("Test Owner");
+		lhcf.registerSources(scan, project);
+		try {
+			lhcf.check(project, new SystemStreamLog());
+			fail();
+		} catch (MojoFailureException e) {
+			assertTrue(e.getMessage().contains(f.getAbsolutePath()));
+		}
+		lhcf.fix(project, new SystemStreamLog());
+		assertTrue(lhcf.passesTest(f));
+		assertTrue(read(f, "ISO-8859-1").endsWith("******/\n" + old));
+	}
+
+	public void testFixFilesFailedInCheck() throws Exception {
+		File a = new File(sources, "A.java");
+		write(a, BODY);
+		LicenseHeaderCheckFix lhcf = new LicenseHeaderCheckFix();
+		MavenProject project = project("Test Owner");
+		lhcf.registerSources(new SourceScan(), project);
+		try {
+			lhcf.check(project, new SystemStreamLog());
+			fail();
+		} catch (MojoFailureException e) {
+			assertTrue(e.getMessage().contains(a.getAbsolutePath()));
+		}
+		// not walked again, only files which failed the check are fixed
+		File b = new File(sources, "B.java");
+		write(b, BODY);
+		lhcf.fix(project, new SystemStreamLog());
+		assertTrue(lhcf.passesTest(a));
+		assertEquals(BODY, read(b));
+	}
+
+	public void testMissingOwner() throws Exception {
+		write(new File(sources, "A.java"), BODY);
+		try {
+			new LicenseHeaderCheckFix().fix(project(null), new SystemStreamLog());
+			fail();
+		} catch (MojoFailureException e) {
+			// expected
+		}
+	}
+}
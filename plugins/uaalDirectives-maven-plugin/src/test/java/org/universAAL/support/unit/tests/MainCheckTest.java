@@ -18,8 +18,13 @@
 package org.universAAL.support.unit.tests;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 
 import org.universAAL.support.directives.checks.MainMethodCheck;
+import org.universAAL.support.directives.util.CheckResultCache;
+import org.universAAL.support.directives.util.SourceExplorer;
+import org.universAAL.support.directives.util.SourceScan;
 
 import junit.framework.TestCase;
 
@@ -43,4 +48,65 @@ public class MainCheckTest extends TestCase {
 		MainMethodCheck mmc = new MainMethodCheck();
 		assertFalse(mmc.passesTest(new File("./src/test/resources/GUIPacketSniffer.java")));
 	}
+
+	public void testSharedScan() {
+		MainMethodCheck mmc = new MainMethodCheck();
+		SourceScan scan = new SourceScan();
+		scan.register(mmc, "./src/test/resources/");
+		assertEquals(new SourceExplorer(mmc).walk("./src/test/resources/"), scan.getConflicted(mmc));
+		assertEquals(2, scan.getConflicted(mmc).size());
+	}
+
+	public void testParallelScan() {
+		MainMethodCheck mmc = new MainMethodCheck();
+		SourceScan scan = new SourceScan();
+		scan.setThreads(4);
+		scan.register(mmc, "./src/test/resources/");
+		assertEquals(new SourceExplorer(mmc).walk("./src/test/resources/"), scan.getConflicted(mmc));
+		assertEquals(scan.getConflicted(mmc), new SourceExplorer(mmc, 4).walk("./src/test/resources/"));
+	}
+
+	public void testCachedScan() throws IOException {
+		File cacheFile = File.createTempFile("directives", ".cache");
+		cacheFile.delete();
+		try {
+			CountingCheck first = new CountingCheck();
+			CheckResultCache cache = new CheckResultCache(cacheFile, "1");
+			SourceScan scan = new SourceScan();
+			scan.setCache(cache);
+			scan.register(first, "./src/test/resources/");
+			ArrayList<File> conflicted = scan.getConflicted(first);
+			assertTrue(first.tested > 0);
+			cache.save();
+			assertTrue(cacheFile.isFile());
+
+			CountingCheck second = new CountingCheck();
+			scan = new SourceScan();
+			scan.setCache(new CheckResultCache(cacheFile, "1"));
+			scan.register(second, "./src/test/resources/");
+			assertEquals(conflicted, scan.getConflicted(second));
+			assertEquals(0, second.tested);
+
+			CountingCheck other = new CountingCheck();
+			scan = new SourceScan();
+			scan.setCache(new CheckResultCache(cacheFile, "2"));
+			scan.register(other, "./src/test/resources/");
+			assertEquals(conflicted, scan.getConflicted(other));
+			assertEquals(first.tested, other.tested);
+		} finally {
+			cacheFile.delete();
+		}
+	}
+
+	private static class CountingCheck extends MainMethodCheck {
+		int tested = 0;
+
+		@Override
+		public boolean passesTest(File sourceFile, CharSequence content) {
+			synchronized (this) {
+				tested++;
+			}
+			return super.passesTest(sourceFile, content);
+		}
+	}
 }